@@ -3,6 +3,7 @@ package thespeace.springmvc2.account;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
+import thespeace.springmvc2.account.domain.login.PasswordService;
 import thespeace.springmvc2.account.domain.member.Member;
 import thespeace.springmvc2.account.domain.member.MemberRepository;
 
@@ -11,6 +12,7 @@ import thespeace.springmvc2.account.domain.member.MemberRepository;
 public class AccountDataInit {
 
     private final MemberRepository memberRepository;
+    private final PasswordService passwordService;
 
     /**
      * 테스트용 데이터 추가
@@ -19,7 +21,7 @@ public class AccountDataInit {
     public void init() {
         Member member = new Member();
         member.setLoginId("test");
-        member.setPassword("test!");
+        member.setPassword(passwordService.hash("test!"));
         member.setName("테스터");
 
         memberRepository.save(member);
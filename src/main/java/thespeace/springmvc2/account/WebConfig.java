@@ -2,18 +2,30 @@ package thespeace.springmvc2.account;
 
 import jakarta.servlet.DispatcherType;
 import jakarta.servlet.Filter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.servlet.HandlerExceptionResolver;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import thespeace.springmvc2.account.domain.login.LoginRateLimiter;
+import thespeace.springmvc2.account.domain.member.MemberCache;
+import thespeace.springmvc2.account.web.PathPatternTrie;
 import thespeace.springmvc2.account.web.argumentresolver.LoginMemberArgumentResolver;
 import thespeace.springmvc2.account.web.filter.LogFilter;
 import thespeace.springmvc2.account.web.filter.LoginCheckFilter;
 import thespeace.springmvc2.account.web.interceptor.LogInterceptor;
 import thespeace.springmvc2.account.web.interceptor.LoginCheckInterceptor;
+import thespeace.springmvc2.account.web.interceptor.LoginRateLimitInterceptor;
+import thespeace.springmvc2.account.web.session.SessionManager;
+import thespeace.springmvc2.common.accesslog.AccessLog;
+import thespeace.springmvc2.common.metrics.HandlerLatencyRecorder;
+import thespeace.springmvc2.common.requestid.RequestIdFilter;
+import thespeace.springmvc2.common.requestid.RequestIdGenerator;
 import thespeace.springmvc2.exception.filter.LogExFilter;
 import thespeace.springmvc2.exception.interceptor.LogExInterceptor;
 import thespeace.springmvc2.exception.resolver.MyHandlerExceptionResolver;
@@ -22,15 +34,21 @@ import thespeace.springmvc2.exception.resolver.UserHandlerExceptionResolver;
 import java.util.List;
 
 @Configuration
+@RequiredArgsConstructor
 public class WebConfig implements WebMvcConfigurer {
 
+    private final SessionManager sessionManager;
+    private final MemberCache memberCache;
+    private final LoginRateLimiter loginRateLimiter;
+    private final HandlerLatencyRecorder handlerLatencyRecorder;
+    private final AccessLog accessLog;
 
     /**
      * <h2>ArgumentResolvers 등록</h2>
      */
     @Override
     public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
-        resolvers.add(new LoginMemberArgumentResolver());
+        resolvers.add(new LoginMemberArgumentResolver(sessionManager, memberCache));
     }
 
     /**
@@ -47,17 +65,23 @@ public class WebConfig implements WebMvcConfigurer {
      */
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(new LogInterceptor()) //인터셉터를 등록.
+        registry.addInterceptor(new LoginRateLimitInterceptor(loginRateLimiter))
+                .order(0) //로그, 검증보다 먼저 거절해야 비용이 들지 않는다.
+                .addPathPatterns("/login");
+
+        registry.addInterceptor(new LogInterceptor(handlerLatencyRecorder, accessLog)) //인터셉터를 등록.
                 .order(1) //인터셉터의 호출 순서를 지정한다. 낮을 수록 먼저 호출.
                 .addPathPatterns("/account/**","/items/**","/members/**", "login", "/logout") //인터셉터를 적용할 URL 패턴을 지정한다.
                 .excludePathPatterns("/css/**", "/*.ico", "/error/**", "/error-page/**"); //인터셉터에서 제외할 패턴을 지정한다.
         //필터와 비교해보면 인터셉터는 addPathPatterns , excludePathPatterns 로 매우 정밀하게 URL 패턴을 지정 할 수 있다.
 
-        registry.addInterceptor(new LoginCheckInterceptor())
-                .order(2)
-                .addPathPatterns("/items/**") //인터셉터를 적용.
-                .excludePathPatterns("/","/account", "/members/add", "/login", "/logout",
-                        "/css/**", "/*.ico", "/error/**", "/error-page/**"); //인터셉터를 적용 X.
+        //적용 경로가 많아지면 스프링이 요청마다 패턴을 하나씩 비교하므로, 패턴을 트라이로 컴파일해서 인터셉터가 직접 확인한다.
+        PathPatternTrie loginCheckPaths = new PathPatternTrie(
+                List.of("/items/**"), //인터셉터를 적용.
+                List.of("/","/account", "/members/add", "/login", "/logout",
+                        "/css/**", "/*.ico", "/error/**", "/error-page/**")); //인터셉터를 적용 X.
+        registry.addInterceptor(new LoginCheckInterceptor(sessionManager, loginCheckPaths))
+                .order(2);
 
         /**
          * -서블릿 예외 처리 - 인터셉터 중복 호출 제거
@@ -75,7 +99,7 @@ public class WebConfig implements WebMvcConfigurer {
          *      3. WAS 오류 페이지 확인
          *      4. WAS(/error-page/500, dispatchType=ERROR) -> 필터(x) -> 서블릿 -> 인터셉터(x) -> 컨트롤러(/error-page/500) -> View
          */
-        registry.addInterceptor(new LogExInterceptor())
+        registry.addInterceptor(new LogExInterceptor(handlerLatencyRecorder, accessLog))
                 .order(3)
                 .addPathPatterns("/error/*")
                 .excludePathPatterns("/css/**", "/*.ico", "/error","/error-page/**"); //오류 페이지 경로
@@ -86,7 +110,7 @@ public class WebConfig implements WebMvcConfigurer {
      * 필터를 등록하는 방법은 여러가지가 있지만, 스프링 부트를 사용한다면 FilterRegistrationBean 을 사용해서
      * 등록하면 된다.
      * <ul>
-     *     <li>setFilter(new LogFilter()) : 등록할 필터를 지정한다.</li>
+     *     <li>setFilter(new LogFilter(accessLog)) : 등록할 필터를 지정한다.</li>
      *     <li>setOrder(1) : 필터는 체인으로 동작한다. 따라서 순서가 필요하다. 낮을 수록 먼저 동작한다.</li>
      *     <li>addUrlPatterns("/*") : 필터를 적용할 URL 패턴을 지정한다. 한번에 여러 패턴을 지정할 수 있다.</li>
      * </ul>
@@ -103,7 +127,7 @@ public class WebConfig implements WebMvcConfigurer {
     //@Bean
     public FilterRegistrationBean logFilter() {
         FilterRegistrationBean<Filter> filterRegistrationBean = new FilterRegistrationBean<>();
-        filterRegistrationBean.setFilter(new LogFilter());
+        filterRegistrationBean.setFilter(new LogFilter(accessLog));
         filterRegistrationBean.setOrder(1);
         filterRegistrationBean.addUrlPatterns("/*");
 
@@ -113,7 +137,7 @@ public class WebConfig implements WebMvcConfigurer {
     //@Bean
     public FilterRegistrationBean loginCheckFilter() {
         FilterRegistrationBean<Filter> filterRegistrationBean = new FilterRegistrationBean<>();
-        filterRegistrationBean.setFilter(new LoginCheckFilter()); //로그인 필터를 등록한다.
+        filterRegistrationBean.setFilter(new LoginCheckFilter(sessionManager)); //로그인 필터를 등록한다.
         filterRegistrationBean.setOrder(2); //순서를 2번으로 잡았다. 로그 필터 다음에 로그인 필터가 적용된다.
         filterRegistrationBean.addUrlPatterns("/*"); //모든 요청에 로그인 필터를 적용한다.
 
@@ -133,7 +157,7 @@ public class WebConfig implements WebMvcConfigurer {
     //@Bean
     public FilterRegistrationBean logExFilter() {
         FilterRegistrationBean<Filter> filterRegistrationBean = new FilterRegistrationBean<>();
-        filterRegistrationBean.setFilter(new LogExFilter());
+        filterRegistrationBean.setFilter(new LogExFilter(accessLog));
         filterRegistrationBean.setOrder(1);
         filterRegistrationBean.addUrlPatterns("/error/*","/error-page/*");
         filterRegistrationBean.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ERROR);
@@ -141,6 +165,24 @@ public class WebConfig implements WebMvcConfigurer {
         return filterRegistrationBean;
     }
 
+    /**
+     * <h2>요청 id 필터</h2>
+     * 다른 필터보다 먼저 실행해서 모든 로그에 같은 요청 id 가 남게 한다. 오류 페이지 요청에서도 같은 id 를 MDC 에 다시 담도록
+     * DispatcherType.ERROR 에도 적용한다.
+     *
+     * @param node 요청 id 의 노드 이름, 비어 있으면 시작할 때 임의로 정한다.
+     */
+    @Bean
+    public FilterRegistrationBean<Filter> requestIdFilter(@Value("${request-id.node:}") String node) {
+        FilterRegistrationBean<Filter> filterRegistrationBean = new FilterRegistrationBean<>();
+        filterRegistrationBean.setFilter(new RequestIdFilter(new RequestIdGenerator(node)));
+        filterRegistrationBean.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        filterRegistrationBean.addUrlPatterns("/*");
+        filterRegistrationBean.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ERROR);
+
+        return filterRegistrationBean;
+    }
+
     /**
      * <h2>WebMvcConfigurer 를 통해 HandlerExceptionResolver 등록</h2>
      * 기본 설정을 유지하면서 추가<br>
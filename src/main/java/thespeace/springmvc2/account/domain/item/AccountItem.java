@@ -1,14 +1,16 @@
 package thespeace.springmvc2.account.domain.item;
 
 import lombok.Data;
+import thespeace.springmvc2.common.repository.Identifiable;
 
 @Data
-public class AccountItem {
+public class AccountItem implements Identifiable {
 
     private Long id;
     private String itemName;
     private Integer price;
     private Integer quantity;
+    private Long version; //수정할 때마다 1 증가(낙관적 락)
 
     public AccountItem() {
     }
@@ -1,40 +1,71 @@
 package thespeace.springmvc2.account.domain.item;
 
 import org.springframework.stereotype.Repository;
+import thespeace.springmvc2.common.repository.InMemoryRepository;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 
+/**
+ * 저장, 동시성, 스냅샷 조회는 {@link InMemoryRepository}가 담당한다.<br>
+ * 저장된 상품은 직접 수정하지 않고, 수정한 복사본으로 교체한다.(copy-on-write)
+ */
 @Repository
 public class AccountItemRepository {
 
-    private static final Map<Long, AccountItem> store = new HashMap<>(); //static
-    private static long sequence = 0L; //static
+    private final InMemoryRepository<AccountItem> repository = new InMemoryRepository<>(AccountItemRepository::copyOf);
 
     public AccountItem save(AccountItem item) {
-        item.setId(++sequence);
-        store.put(item.getId(), item);
-        return item;
+        item.setVersion(0L);
+        return repository.save(item);
     }
 
     public AccountItem findById(Long id) {
-        return store.get(id);
+        return id == null ? null : repository.findById(id);
     }
 
     public List<AccountItem> findAll() {
-        return new ArrayList<>(store.values());
+        return repository.findAll();
+    }
+
+    /**
+     * afterId 다음 id부터 최대 limit 개의 상품을 id 순서로 조회(키셋 페이징), afterId 가 null 이면 처음부터 조회.
+     */
+    public List<AccountItem> findPage(Long afterId, int limit) {
+        return repository.findPage(afterId, limit);
     }
 
     public void update(Long itemId, AccountItem updateParam) {
-        AccountItem findItem = findById(itemId);
+        repository.update(itemId, findItem -> apply(findItem, updateParam));
+    }
+
+    /**
+     * <h2>조건부 수정(낙관적 락)</h2>
+     * 현재 version 이 expectedVersion 과 같을 때만 수정하고 version 을 1 올린다.
+     *
+     * @return 수정했으면 true, 상품이 없거나 그 사이 다른 요청이 먼저 수정했으면 false
+     */
+    public boolean update(Long itemId, AccountItem updateParam, Long expectedVersion) {
+        return repository.update(itemId,
+                findItem -> Objects.equals(findItem.getVersion(), expectedVersion),
+                findItem -> apply(findItem, updateParam));
+    }
+
+    public void clearStore() {
+        repository.clear();
+    }
+
+    private static void apply(AccountItem findItem, AccountItem updateParam) {
         findItem.setItemName(updateParam.getItemName());
         findItem.setPrice(updateParam.getPrice());
         findItem.setQuantity(updateParam.getQuantity());
+        findItem.setVersion(findItem.getVersion() == null ? 1L : findItem.getVersion() + 1);
     }
 
-    public void clearStore() {
-        store.clear();
+    private static AccountItem copyOf(AccountItem item) {
+        AccountItem copy = new AccountItem(item.getItemName(), item.getPrice(), item.getQuantity());
+        copy.setId(item.getId());
+        copy.setVersion(item.getVersion());
+        return copy;
     }
 }
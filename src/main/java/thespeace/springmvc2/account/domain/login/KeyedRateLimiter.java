@@ -0,0 +1,109 @@
+package thespeace.springmvc2.account.domain.login;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * <h1>키별 토큰 버킷</h1>
+ * 키(로그인 ID, 접속 IP)마다 토큰 버킷을 하나씩 두고, 요청마다 토큰 하나를 꺼낸다. 토큰이 없으면 거절한다.
+ * <ul>
+ *     <li>버킷은 capacity 개까지 담고, interval 마다 하나씩 다시 채워진다. 쉬고 있던 키는 capacity 번까지 연속으로 허용한다.</li>
+ *     <li>버킷 상태는 "버킷이 다시 가득 차는 시각" long 하나다. 토큰 하나를 꺼내면 그 시각이 interval 만큼 뒤로 밀린다.<br>
+ *     남은 토큰 수와 마지막 충전 시각을 따로 두지 않으므로 충전과 차감을 CAS 한 번으로 처리한다.(잠금 없음)</li>
+ *     <li>가득 찬 버킷은 새로 만든 버킷과 같다. 따라서 쉬고 있는 키의 버킷은 지워도 결과가 달라지지 않는다. 주기적으로 지운다.</li>
+ *     <li>키 수는 maxKeys 로 제한한다. 쉬고 있는 버킷을 지워도 자리가 없으면, 새 키는 해시로 고른 넘친 키 전용 버킷
+ *     {@value #OVERFLOW_BUCKETS}개 중 하나를 함께 쓴다.<br>
+ *     키를 계속 바꿔가며 요청해도 메모리가 늘지 않고, 허용되는 요청도 버킷 수 * capacity 로 제한된다.
+ *     버킷 하나를 모두 쓰면 같은 버킷에 걸린 키만 거절되고, 다른 키는 계속 허용된다.</li>
+ * </ul>
+ * 시각은 {@link System#nanoTime()} 기준이므로 뺄셈으로만 비교한다.
+ */
+final class KeyedRateLimiter {
+
+    private static final long MIN_SWEEP_INTERVAL_NANOS = 1_000_000_000L;
+    private static final int OVERFLOW_BUCKETS = 64;
+
+    private final long intervalNanos;
+    private final long burstNanos; //capacity 개가 채워지는 시간
+    private final int maxKeys;
+    private final LongSupplier nanoClock;
+    private final long sweepIntervalNanos;
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong[] overflow = new AtomicLong[OVERFLOW_BUCKETS];
+    private final AtomicLong nextSweep;
+
+    /**
+     * @param capacity  버킷 크기(연속으로 허용하는 요청 수)
+     * @param interval  토큰 하나가 다시 채워지는 시간
+     * @param maxKeys   버킷을 따로 두는 최대 키 수
+     * @param nanoClock 현재 시각(ns), 테스트에서 시간을 직접 움직일 때 사용
+     */
+    KeyedRateLimiter(int capacity, long intervalNanos, int maxKeys, LongSupplier nanoClock) {
+        this.intervalNanos = intervalNanos;
+        this.burstNanos = capacity * intervalNanos;
+        this.maxKeys = maxKeys;
+        this.nanoClock = nanoClock;
+        this.sweepIntervalNanos = Math.max(burstNanos, MIN_SWEEP_INTERVAL_NANOS);
+        long now = nanoClock.getAsLong();
+        for (int i = 0; i < OVERFLOW_BUCKETS; i++) {
+            overflow[i] = new AtomicLong(now);
+        }
+        this.nextSweep = new AtomicLong(now + sweepIntervalNanos);
+    }
+
+    /**
+     * @return 허용하면 0, 거절하면 다음 토큰이 채워질 때까지 남은 시간(ns)
+     */
+    long tryAcquire(String key) {
+        long now = nanoClock.getAsLong();
+        long due = nextSweep.get();
+        if (now - due >= 0 && nextSweep.compareAndSet(due, now + sweepIntervalNanos)) {
+            sweep(now); //한 스레드만 지운다.
+        }
+
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = newBucket(key, now);
+        }
+        return acquire(bucket, now);
+    }
+
+    int size() {
+        return buckets.size();
+    }
+
+    private long acquire(AtomicLong bucket, long now) {
+        while (true) {
+            long fullAt = bucket.get();
+            long next = (fullAt - now > 0 ? fullAt : now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                return wait; //꺼낼 토큰이 없다.
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong newBucket(String key, long now) {
+        if (buckets.size() >= maxKeys) {
+            sweep(now);
+            if (buckets.size() >= maxKeys) {
+                int hash = key.hashCode();
+                return overflow[(hash ^ (hash >>> 16)) & (OVERFLOW_BUCKETS - 1)];
+            }
+        }
+        return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    /**
+     * 가득 찬 버킷을 지운다. 지우는 순간 다른 스레드가 같은 버킷에서 토큰을 꺼내면 그 한 번은 기록되지 않을 수 있다.
+     */
+    private void sweep(long now) {
+        buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+    }
+}
@@ -0,0 +1,92 @@
+package thespeace.springmvc2.account.domain.login;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * <h1>로그인 시도 횟수 제한</h1>
+ * 비밀번호 검증은 일부러 비싸게 만든 연산이다. 무작위 대입(credential stuffing) 요청을 모두 검증하면 CPU 와 회원 저장소가 먼저 포화된다.
+ * <ul>
+ *     <li>로그인 ID 별 버킷 : 한 계정에 대한 비밀번호 대입을 제한한다.</li>
+ *     <li>접속 IP 별 버킷 : 한 곳에서 여러 계정을 돌아가며 시도하는 것을 제한한다.</li>
+ *     <li>IP 를 먼저 확인하고, 통과한 요청만 로그인 ID 버킷에서 꺼낸다. 둘 다 통과해야 검증한다.</li>
+ *     <li>거절한 요청은 입력값 검증과 비밀번호 검증 전에 429 로 응답한다.</li>
+ * </ul>
+ * 로그인 ID 는 앞 {@value #MAX_KEY_LENGTH}자만 키로 사용한다. 긴 로그인 ID 로 버킷 메모리를 늘릴 수 없다.
+ */
+@Slf4j
+@Component
+public class LoginRateLimiter {
+
+    static final int MAX_KEY_LENGTH = 64;
+
+    private final KeyedRateLimiter byLoginId;
+    private final KeyedRateLimiter byAddress;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejectedByLoginId = new LongAdder();
+    private final LongAdder rejectedByAddress = new LongAdder();
+
+    /**
+     * @param loginIdBurst     로그인 ID 하나로 연속해서 시도할 수 있는 횟수
+     * @param loginIdPerMinute 이후 로그인 ID 하나로 1분에 시도할 수 있는 횟수
+     * @param addressBurst     IP 하나에서 연속해서 시도할 수 있는 횟수
+     * @param addressPerMinute 이후 IP 하나에서 1분에 시도할 수 있는 횟수
+     * @param maxKeys          로그인 ID, IP 각각 버킷을 따로 두는 최대 키 수
+     */
+    @Autowired
+    public LoginRateLimiter(@Value("${account.login-limit.login-id.burst:5}") int loginIdBurst,
+                            @Value("${account.login-limit.login-id.per-minute:5}") int loginIdPerMinute,
+                            @Value("${account.login-limit.address.burst:20}") int addressBurst,
+                            @Value("${account.login-limit.address.per-minute:60}") int addressPerMinute,
+                            @Value("${account.login-limit.max-keys:100000}") int maxKeys) {
+        this(new KeyedRateLimiter(loginIdBurst, TimeUnit.MINUTES.toNanos(1) / loginIdPerMinute, maxKeys, System::nanoTime),
+                new KeyedRateLimiter(addressBurst, TimeUnit.MINUTES.toNanos(1) / addressPerMinute, maxKeys, System::nanoTime));
+        log.info("login limit loginId={}/{}per-minute, address={}/{}per-minute, maxKeys={}",
+                loginIdBurst, loginIdPerMinute, addressBurst, addressPerMinute, maxKeys);
+    }
+
+    LoginRateLimiter(KeyedRateLimiter byLoginId, KeyedRateLimiter byAddress) {
+        this.byLoginId = byLoginId;
+        this.byAddress = byAddress;
+    }
+
+    /**
+     * @param loginId       null 이면 IP 만 확인한다.
+     * @param remoteAddress 접속 IP
+     * @return 허용하면 0, 거절하면 다시 시도할 수 있을 때까지 남은 시간(ns)
+     */
+    public long tryAcquire(String loginId, String remoteAddress) {
+        long wait = byAddress.tryAcquire(remoteAddress);
+        if (wait > 0) {
+            rejectedByAddress.increment();
+            return wait;
+        }
+        if (loginId != null) {
+            wait = byLoginId.tryAcquire(loginId.length() > MAX_KEY_LENGTH ? loginId.substring(0, MAX_KEY_LENGTH) : loginId);
+            if (wait > 0) {
+                rejectedByLoginId.increment();
+                return wait;
+            }
+        }
+        allowed.increment();
+        return 0;
+    }
+
+    public Metrics metrics() {
+        return new Metrics(allowed.sum(), rejectedByLoginId.sum(), rejectedByAddress.sum(), byLoginId.size(), byAddress.size());
+    }
+
+    /**
+     * @param loginIds  버킷이 있는 로그인 ID 수
+     * @param addresses 버킷이 있는 IP 수
+     */
+    public record Metrics(long allowed, long rejectedByLoginId, long rejectedByAddress, int loginIds, int addresses) {
+    }
+}
@@ -12,9 +12,16 @@ import java.util.Optional;
 public class LoginService {
 
     private final MemberRepository memberRepository;
+    private final PasswordService passwordService;
+
+    private volatile String dummyPassword; //없는 회원을 검증할 때 사용하는 해시, 처음 필요할 때 한 번 만든다.
 
     /**
+     * 비밀번호는 해시로 저장되어 있으므로 {@link PasswordService}로 검증한다.<br>
+     * 없는 로그인 ID 도 같은 비용으로 검증해서, 응답 시간으로 가입 여부를 알 수 없게 한다.
+     *
      * @return null이면 로그인 실패
+     * @throws PasswordServiceBusyException 검증 요청이 몰려 대기 큐가 가득 찬 경우
      */
     public Member login(String loginId, String password) {
         /*Optional<Member> findMemberOptional = memberRepository.findByLoginId(loginId);
@@ -25,8 +32,24 @@ public class LoginService {
             return null;
         }*/
 
-        return memberRepository.findByLoginId(loginId)
+        /*return memberRepository.findByLoginId(loginId)
                 .filter(m -> m.getPassword().equals(password))
-                .orElse(null);
+                .orElse(null);*/
+
+        Optional<Member> findMember = memberRepository.findByLoginId(loginId);
+        String encodedPassword = findMember.map(Member::getPassword).orElseGet(this::dummyPassword);
+        if (!passwordService.matches(password, encodedPassword)) {
+            return null;
+        }
+        return findMember.orElse(null);
+    }
+
+    private String dummyPassword() {
+        String dummy = dummyPassword;
+        if (dummy == null) {
+            dummy = passwordService.hash("dummy-password");
+            dummyPassword = dummy;
+        }
+        return dummy;
     }
 }
@@ -0,0 +1,153 @@
+package thespeace.springmvc2.account.domain.login;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h1>비밀번호 해시/검증 전용 스레드 풀</h1>
+ * 비밀번호 해시는 일부러 비싸게 만든 연산이다. 요청 스레드(Tomcat)에서 바로 실행하면, 로그인 시도가 몰릴 때(credential stuffing)
+ * 요청 스레드가 모두 해시 계산에 묶여서 다른 화면까지 응답하지 못한다.
+ * <ul>
+ *     <li>해시 계산은 크기가 정해진 전용 스레드 풀에서만 실행한다. 동시에 계산하는 수가 스레드 수를 넘지 않는다.</li>
+ *     <li>대기 큐도 크기를 제한한다. 큐가 가득 차면 기다리지 않고 즉시 {@link PasswordServiceBusyException}으로 거절한다.</li>
+ *     <li>요청 스레드는 결과를 기다리는 동안 CPU 를 쓰지 않고, 거절된 요청은 바로 돌아가므로 다른 화면은 영향을 받지 않는다.</li>
+ * </ul>
+ *
+ * <h2>메트릭</h2>
+ * 대기 중인 작업 수, 계산 중인 스레드 수, 완료/거절 횟수, 큐 대기 시간과 해시 계산 시간을 {@link #metrics()}로 제공한다.
+ */
+@Slf4j
+@Component
+public class PasswordService {
+
+    private final Pbkdf2PasswordHasher hasher;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAccumulator maxHashNanos = new LongAccumulator(Math::max, 0L);
+
+    /**
+     * @param iterations          PBKDF2 반복 횟수, 0 이하면 targetLatencyMillis 에 맞춰 측정한다.
+     * @param targetLatencyMillis 한 번 검증하는 데 걸릴 목표 시간
+     * @param threads             해시 계산 스레드 수, 0 이하면 CPU 코어 수
+     * @param queueCapacity       대기 큐 크기, 0 이면 대기 없이 남는 스레드가 있을 때만 실행
+     */
+    @Autowired
+    public PasswordService(@Value("${account.password.iterations:0}") int iterations,
+                           @Value("${account.password.target-latency-millis:50}") long targetLatencyMillis,
+                           @Value("${account.password.threads:0}") int threads,
+                           @Value("${account.password.queue-capacity:64}") int queueCapacity) {
+        this(new Pbkdf2PasswordHasher(iterations > 0 ? iterations : Pbkdf2PasswordHasher.calibrate(Duration.ofMillis(targetLatencyMillis))),
+                threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                queueCapacity);
+        log.info("password hasher iterations={}, threads={}, queueCapacity={}", hasher.iterations(), executor.getMaximumPoolSize(), queueCapacity);
+    }
+
+    public PasswordService(Pbkdf2PasswordHasher hasher, int threads, int queueCapacity) {
+        this.hasher = hasher;
+        BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()); //큐가 가득 차면 RejectedExecutionException
+    }
+
+    /**
+     * @throws PasswordServiceBusyException 대기 큐가 가득 찬 경우
+     */
+    public String hash(String rawPassword) {
+        return execute(() -> hasher.hash(rawPassword));
+    }
+
+    /**
+     * @throws PasswordServiceBusyException 대기 큐가 가득 찬 경우
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return execute(() -> hasher.matches(rawPassword, encodedPassword));
+    }
+
+    public Metrics metrics() {
+        long count = completed.sum();
+        return new Metrics(
+                hasher.iterations(),
+                executor.getMaximumPoolSize(),
+                executor.getQueue().size(),
+                executor.getActiveCount(),
+                count,
+                rejected.sum(),
+                count == 0 ? 0 : waitNanos.sum() / 1e6 / count,
+                count == 0 ? 0 : hashNanos.sum() / 1e6 / count,
+                maxHashNanos.get() / 1e6);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T execute(Callable<T> task) {
+        long submitted = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long started = System.nanoTime();
+                try {
+                    return task.call();
+                } finally {
+                    long elapsed = System.nanoTime() - started;
+                    waitNanos.add(started - submitted);
+                    hashNanos.add(elapsed);
+                    maxHashNanos.accumulate(elapsed);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new PasswordServiceBusyException();
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("password hashing failed", e.getCause());
+        }
+    }
+
+    /**
+     * @param queueDepth          대기 중인 작업 수
+     * @param active              계산 중인 스레드 수
+     * @param averageWaitMillis   큐에서 기다린 평균 시간
+     * @param averageHashMillis   해시 계산 평균 시간
+     */
+    public record Metrics(int iterations, int threads, int queueDepth, int active, long completed, long rejected,
+                          double averageWaitMillis, double averageHashMillis, double maxHashMillis) {
+    }
+}
@@ -0,0 +1,11 @@
+package thespeace.springmvc2.account.domain.login;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 비밀번호 검증 대기 큐가 가득 차서 즉시 거절한 경우, 잠시 후 다시 시도하도록 503 으로 응답한다.
+ */
+@ResponseStatus(code = HttpStatus.SERVICE_UNAVAILABLE, reason = "로그인 요청이 많습니다. 잠시 후 다시 시도해주세요.")
+public class PasswordServiceBusyException extends RuntimeException {
+}
@@ -0,0 +1,120 @@
+package thespeace.springmvc2.account.domain.login;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * <h1>비밀번호 해시 (PBKDF2)</h1>
+ * JDK 가 제공하는 PBKDF2WithHmacSHA256 으로 비밀번호를 해시한다.
+ * <ul>
+ *     <li>회원마다 임의의 salt 를 사용하므로 같은 비밀번호라도 해시가 다르고, 미리 계산한 표(rainbow table)를 쓸 수 없다.</li>
+ *     <li>반복 횟수(work factor)가 클수록 한 번 검증하는 비용이 커진다. 서버 성능에 맞춰 {@link #calibrate(Duration)}로 정한다.</li>
+ *     <li>해시 문자열에 반복 횟수와 salt 를 함께 저장하므로, 반복 횟수를 바꿔도 이전에 저장한 해시를 그대로 검증할 수 있다.</li>
+ * </ul>
+ * <blockquote><pre>
+ *     pbkdf2-sha256$반복 횟수$salt(Base64)$해시(Base64)
+ * </pre></blockquote>
+ */
+public final class Pbkdf2PasswordHasher {
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String PREFIX = "pbkdf2-sha256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+
+    static final int MIN_ITERATIONS = 10_000;
+    static final int MAX_ITERATIONS = 10_000_000;
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+    private static final long WARMUP_NANOS = 300_000_000L;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final int iterations;
+
+    public Pbkdf2PasswordHasher(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public int iterations() {
+        return iterations;
+    }
+
+    public String hash(String rawPassword) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(rawPassword, salt, iterations);
+
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * 저장된 해시의 반복 횟수와 salt 로 다시 해시해서 비교한다.<br>
+     * 비교는 {@link MessageDigest#isEqual}로 해서 몇 번째 바이트에서 달라지는지 응답 시간으로 드러나지 않게 한다.
+     *
+     * @return 형식이 맞지 않는 해시면 false
+     */
+    public boolean matches(String rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+        String[] parts = encodedPassword.split("\\$");
+        if (parts.length != 4 || !PREFIX.equals(parts[0])) {
+            return false;
+        }
+
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] salt = decoder.decode(parts[2]);
+            byte[] expected = decoder.decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(rawPassword, salt, storedIterations));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * <h2>반복 횟수 측정</h2>
+     * 이 서버에서 한 번 검증하는 데 target 만큼 걸리는 반복 횟수를 구한다.
+     * <ul>
+     *     <li>JIT 컴파일이 끝나도록 먼저 일정 시간 실행한 뒤, 기준 반복 횟수로 여러 번 측정해서 가장 빠른 값을 사용한다.(다른 작업의 간섭 제외)</li>
+     *     <li>해시 비용은 반복 횟수에 비례하므로 기준 시간에서 비례 계산한다.</li>
+     *     <li>{@value #MIN_ITERATIONS} ~ {@value #MAX_ITERATIONS} 범위로 제한하고, 1000 단위로 맞춘다.</li>
+     * </ul>
+     */
+    public static int calibrate(Duration target) {
+        byte[] salt = new byte[SALT_BYTES];
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            pbkdf2("calibration", salt, CALIBRATION_ITERATIONS);
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            pbkdf2("calibration", salt, CALIBRATION_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        double iterations = (double) CALIBRATION_ITERATIONS * target.toNanos() / Math.max(best, 1);
+        long rounded = Math.round(iterations / 1000) * 1000;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, rounded));
+    }
+
+    private static byte[] pbkdf2(String rawPassword, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(rawPassword.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
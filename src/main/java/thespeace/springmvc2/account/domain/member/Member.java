@@ -2,9 +2,15 @@ package thespeace.springmvc2.account.domain.member;
 
 import jakarta.validation.constraints.NotEmpty;
 import lombok.Data;
+import thespeace.springmvc2.common.repository.Identifiable;
 
+import java.io.Serializable;
+
+/**
+ * 세션에 보관하므로 직렬화할 수 있어야 한다. (세션 영속화)
+ */
 @Data
-public class Member {
+public class Member implements Identifiable, Serializable {
 
     private Long id;
 
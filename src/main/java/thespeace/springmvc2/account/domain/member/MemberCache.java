@@ -0,0 +1,208 @@
+package thespeace.springmvc2.account.domain.member;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import thespeace.springmvc2.common.repository.EntityChangeListener;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * <h1>회원 조회 캐시 (near cache)</h1>
+ * 로그인한 화면은 요청마다 로그인 회원을 찾는다. 세션이나 회원 저장소가 다른 서버로 옮겨가면 화면마다 원격 조회가 한 번씩 생긴다.<br>
+ * 이 서버의 메모리에 회원을 잠시 보관해서, 같은 회원을 다시 찾을 때는 로컬 메모리만 읽는다.
+ * <ul>
+ *     <li>회원 id → 회원, 세션 id → 회원 id 두 가지를 보관한다. 세션에서는 회원 id 만 가리키므로 회원이 바뀌어도 회원 항목 하나만 지우면 된다.</li>
+ *     <li>항목은 ttl 이 지나면 다시 조회한다. 다른 서버에서 바뀐 회원이나 끝난 세션은 최대 ttl 동안 이전 값이 보일 수 있다.</li>
+ *     <li>이 서버의 회원 저장소가 바뀌면({@link EntityChangeListener}) 즉시 지운다.</li>
+ *     <li>항목 수가 maxSize 를 넘으면 만료된 항목부터 지우고, 그래도 많으면 일부를 지운다. 캐시는 최적화일 뿐이므로 다시 조회하면 된다.</li>
+ * </ul>
+ * <h2>조회 중 무효화</h2>
+ * 조회하는 동안 회원이 바뀌면 조회한 값을 캐시에 남기지 않는다. 지운 뒤에 이전 값이 다시 들어가지 않도록 키 단위로 확인한다.
+ * <ul>
+ *     <li>조회 전에 {@link #generation()}으로 현재 버전을 읽어 둔다. 버전은 무효화할 때마다 1 증가한다.</li>
+ *     <li>무효화는 항목을 지우는 대신 그때의 버전을 담은 빈 항목(tombstone)으로 바꾼다.</li>
+ *     <li>넣을 때 같은 키의 항목 버전이 읽어 둔 버전보다 크면 그 사이에 무효화된 것이므로 넣지 않는다. 비교와 교체는 compute 로 원자적으로 한다.</li>
+ *     <li>다른 키의 무효화는 영향을 주지 않는다. 빈 항목을 정리할 때만 그 버전 이전에 읽은 값을 모두 넣지 않는다.(floor)</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class MemberCache {
+
+    private final MemberRepository memberRepository;
+    private final long ttlMillis;
+    private final int maxSize;
+    private final LongSupplier clock;
+
+    private final Map<Long, Cached<Member>> members = new ConcurrentHashMap<>();
+    private final Map<String, Cached<Long>> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong(); //무효화할 때마다 증가하는 버전
+    private final AtomicLong membersFloor = new AtomicLong(); //이 버전보다 먼저 읽은 회원은 넣지 않는다.
+    private final AtomicLong sessionsFloor = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param ttlSeconds 캐시한 회원, 세션을 다시 확인하기까지의 시간
+     * @param maxSize    회원, 세션 각각 보관할 최대 항목 수
+     */
+    @Autowired
+    public MemberCache(MemberRepository memberRepository,
+                       @Value("${account.member-cache.ttl-seconds:30}") long ttlSeconds,
+                       @Value("${account.member-cache.max-size:10000}") int maxSize) {
+        this(memberRepository, Duration.ofSeconds(ttlSeconds), maxSize, System::currentTimeMillis);
+        log.info("member cache ttl={}s, maxSize={}", ttlSeconds, maxSize);
+    }
+
+    /**
+     * @param clock 현재 시각(ms), 테스트에서 시간을 직접 움직일 때 사용
+     */
+    MemberCache(MemberRepository memberRepository, Duration ttl, int maxSize, LongSupplier clock) {
+        this.memberRepository = memberRepository;
+        this.ttlMillis = ttl.toMillis();
+        this.maxSize = maxSize;
+        this.clock = clock;
+        memberRepository.addListener(new EntityChangeListener<>() {
+            @Override
+            public void onSave(Member member) {
+                evict(member.getId());
+            }
+
+            @Override
+            public void onUpdate(Member before, Member after) {
+                evict(after.getId());
+            }
+
+            @Override
+            public void onClear() {
+                membersFloor.accumulateAndGet(generation.incrementAndGet(), Math::max);
+                members.clear();
+            }
+        });
+    }
+
+    /**
+     * @return 없는 회원이면 null
+     */
+    public Member findById(long id) {
+        long now = clock.getAsLong();
+        Cached<Member> cached = members.get(id);
+        if (cached != null && cached.value() != null && cached.expiresAt() > now) {
+            hits.increment();
+            return cached.value();
+        }
+        misses.increment();
+
+        long observed = generation.get();
+        Member member = memberRepository.findById(id);
+        if (member == null) {
+            members.computeIfPresent(id, (key, current) -> current.value() == null ? current : null); //빈 항목은 남긴다.
+            return null;
+        }
+        put(members, membersFloor, id, member, observed, now);
+        return member;
+    }
+
+    /**
+     * 세션 id 로 로그인 회원을 찾는다. 세션을 조회하지 않는다.
+     *
+     * @return 캐시에 없거나, 만료되었거나, 회원이 없어졌으면 null (세션을 조회해서 {@link #putSession}으로 넣는다.)
+     */
+    public Member findBySession(String sessionId) {
+        Cached<Long> cached = sessions.get(sessionId);
+        if (cached == null || cached.value() == null || cached.expiresAt() <= clock.getAsLong()) {
+            return null;
+        }
+        Member member = findById(cached.value());
+        if (member == null) {
+            sessions.remove(sessionId, cached);
+        }
+        return member;
+    }
+
+    /**
+     * @param observed 세션을 조회하기 전에 {@link #generation()}으로 읽은 값, 그 사이에 이 세션이 무효화되었으면 넣지 않는다.
+     */
+    public void putSession(String sessionId, long memberId, long observed) {
+        put(sessions, sessionsFloor, sessionId, memberId, observed, clock.getAsLong());
+    }
+
+    /**
+     * 로그아웃, 세션 만료, 세션 id 변경, 세션의 로그인 회원이 바뀔 때 호출한다.
+     */
+    public void evictSession(String sessionId) {
+        invalidate(sessions, sessionId);
+    }
+
+    public void evict(long memberId) {
+        invalidate(members, memberId);
+    }
+
+    /**
+     * 현재 버전, 조회하기 전에 읽어서 put 에 넘긴다.
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    private <K, V> void invalidate(Map<K, Cached<V>> cache, K key) {
+        long version = generation.incrementAndGet();
+        cache.put(key, new Cached<>(null, clock.getAsLong() + ttlMillis, version));
+    }
+
+    private <K, V> void put(Map<K, Cached<V>> cache, AtomicLong floor, K key, V value, long observed, long now) {
+        if (cache.size() >= maxSize) {
+            trim(cache, floor, now);
+        }
+        cache.compute(key, (k, current) -> {
+            if ((current != null && current.version() > observed) || floor.get() > observed) {
+                return current; //조회하는 동안 무효화되었으면 이전 값일 수 있다.
+            }
+            return new Cached<>(value, now + ttlMillis, observed);
+        });
+    }
+
+    /**
+     * 만료된 항목을 지우고, 그래도 가득 차 있으면 maxSize 의 7/8 이 될 때까지 지운다.<br>
+     * 빈 항목을 지우기 전에 floor 를 그 버전까지 올린다. 그래야 무효화 전에 읽은 값이 빈 항목이 없어진 뒤에도 들어가지 않는다.
+     */
+    private <K, V> void trim(Map<K, Cached<V>> cache, AtomicLong floor, long now) {
+        cache.values().removeIf(cached -> cached.expiresAt() <= now && release(cached, floor));
+        Iterator<Cached<V>> iterator = cache.values().iterator();
+        int target = maxSize - maxSize / 8;
+        while (cache.size() > target && iterator.hasNext()) {
+            release(iterator.next(), floor);
+            iterator.remove();
+        }
+    }
+
+    private static boolean release(Cached<?> cached, AtomicLong floor) {
+        if (cached.value() == null) {
+            floor.accumulateAndGet(cached.version(), Math::max);
+        }
+        return true;
+    }
+
+    /**
+     * @param value   null 이면 무효화된 키를 표시하는 빈 항목
+     * @param version 넣을 때 읽어 둔 버전, 빈 항목이면 무효화한 버전
+     */
+    private record Cached<V>(V value, long expiresAt, long version) {
+    }
+}
@@ -2,25 +2,36 @@ package thespeace.springmvc2.account.domain.member;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
+import thespeace.springmvc2.common.repository.DuplicateEntityException;
+import thespeace.springmvc2.common.repository.EntityChangeListener;
+import thespeace.springmvc2.common.repository.InMemoryRepository;
+import thespeace.springmvc2.common.repository.UniqueIndex;
 
 import java.util.*;
 
+/**
+ * <h2>회원 저장소</h2>
+ * 로그인할 때마다 loginId 로 회원을 찾으므로, loginId 유일 인덱스({@link UniqueIndex})로 O(1)에 찾는다.<br>
+ * 전체 회원을 복사해서 스캔하면 회원 수에 비례해서 로그인이 느려지고, 로그인마다 전체 목록만큼 할당이 생긴다.
+ */
 @Slf4j
 @Repository
 public class MemberRepository {
 
-    private static Map<Long, Member> store = new HashMap<>(); //static 사용
-    private static long sequence = 0L; //static 사용
+    private final InMemoryRepository<Member> repository = new InMemoryRepository<>(MemberRepository::copyOf);
+    private final UniqueIndex<Member, String> loginIdIndex = repository.addIndex(new UniqueIndex<>(Member::getLoginId));
 
+    /**
+     * @throws DuplicateEntityException 같은 loginId 로 가입한 회원이 이미 있으면 저장하지 않는다.
+     */
     public Member save(Member member) {
-        member.setId(++sequence);
+        repository.save(member);
         log.info("save: member={}", member);
-        store.put(member.getId(), member);
         return member;
     }
 
     public Member findById(long id) {
-        return store.get(id);
+        return repository.findById(id);
     }
 
     public Optional<Member> findByLoginId(String loginId) {
@@ -31,16 +42,41 @@ public class MemberRepository {
             }
         }
         return Optional.empty();*/
-        return findAll().stream()
+        /*return findAll().stream()
                 .filter(m -> m.getLoginId().equals(loginId))
-                .findFirst();
+                .findFirst();*/
+        Long id = loginIdIndex.findId(loginId);
+        return id == null ? Optional.empty() : Optional.ofNullable(repository.findById(id));
     }
 
     public List<Member> findAll() {
-        return new ArrayList<>(store.values());
+        return repository.findAll();
+    }
+
+    /**
+     * afterId 다음 id부터 최대 limit 명의 회원을 id 순서로 조회(키셋 페이징), afterId 가 null 이면 처음부터 조회.
+     */
+    public List<Member> findPage(Long afterId, int limit) {
+        return repository.findPage(afterId, limit);
+    }
+
+    /**
+     * 회원이 저장, 수정, 삭제될 때 알림을 받는다.(예: {@link MemberCache} 무효화)
+     */
+    public void addListener(EntityChangeListener<? super Member> listener) {
+        repository.addListener(listener);
     }
 
     public void clearStore() {
-        store.clear();
+        repository.clear();
+    }
+
+    private static Member copyOf(Member member) {
+        Member copy = new Member();
+        copy.setId(member.getId());
+        copy.setLoginId(member.getLoginId());
+        copy.setName(member.getName());
+        copy.setPassword(member.getPassword());
+        return copy;
     }
 }
@@ -11,7 +11,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.SessionAttribute;
 import thespeace.springmvc2.account.domain.member.Member;
-import thespeace.springmvc2.account.domain.member.MemberRepository;
+import thespeace.springmvc2.account.domain.member.MemberCache;
 import thespeace.springmvc2.account.web.argumentresolver.Login;
 import thespeace.springmvc2.account.web.session.SessionManager;
 
@@ -21,7 +21,7 @@ import thespeace.springmvc2.account.web.session.SessionManager;
 @RequiredArgsConstructor
 public class HomeController {
 
-    private final MemberRepository memberRepository;
+    private final MemberCache memberCache;
     private final SessionManager sessionManager;
 
 //    @GetMapping
@@ -36,7 +36,7 @@ public class HomeController {
         }
 
         //로그인 시
-        Member loginMember = memberRepository.findById(memberId);
+        Member loginMember = memberCache.findById(memberId); //회원 저장소 대신 이 서버의 캐시에서 먼저 찾는다.
         if(loginMember == null) {
             return "/account/home";
         }
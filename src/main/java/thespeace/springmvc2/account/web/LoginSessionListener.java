@@ -0,0 +1,57 @@
+package thespeace.springmvc2.account.web;
+
+import jakarta.servlet.http.HttpSessionAttributeListener;
+import jakarta.servlet.http.HttpSessionBindingEvent;
+import jakarta.servlet.http.HttpSessionEvent;
+import jakarta.servlet.http.HttpSessionIdListener;
+import jakarta.servlet.http.HttpSessionListener;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import thespeace.springmvc2.account.domain.member.MemberCache;
+
+/**
+ * <h2>HttpSession 변경을 회원 캐시에 반영</h2>
+ * 스프링 부트는 리스너 타입의 빈을 서블릿 컨테이너에 자동으로 등록한다.
+ * <ul>
+ *     <li>로그아웃(invalidate), 세션 타임아웃 : 세션 항목 제거</li>
+ *     <li>세션 id 변경 : 이전 세션 id 항목 제거(이전 세션 id 로는 로그인 회원을 찾을 수 없어야 한다.)</li>
+ *     <li>로그인 회원 속성 추가/변경/삭제 : 같은 세션으로 다른 회원이 로그인할 수 있으므로 세션 항목 제거</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class LoginSessionListener implements HttpSessionListener, HttpSessionIdListener, HttpSessionAttributeListener {
+
+    private final MemberCache memberCache;
+
+    @Override
+    public void sessionDestroyed(HttpSessionEvent se) {
+        memberCache.evictSession(se.getSession().getId());
+    }
+
+    @Override
+    public void sessionIdChanged(HttpSessionEvent event, String oldSessionId) {
+        memberCache.evictSession(oldSessionId);
+    }
+
+    @Override
+    public void attributeAdded(HttpSessionBindingEvent event) {
+        evictIfLoginMember(event);
+    }
+
+    @Override
+    public void attributeRemoved(HttpSessionBindingEvent event) {
+        evictIfLoginMember(event);
+    }
+
+    @Override
+    public void attributeReplaced(HttpSessionBindingEvent event) {
+        evictIfLoginMember(event);
+    }
+
+    private void evictIfLoginMember(HttpSessionBindingEvent event) {
+        if (SessionConst.LOGIN_MEMBER.equals(event.getName())) {
+            memberCache.evictSession(event.getSession().getId());
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package thespeace.springmvc2.account.web;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.RequestPath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>경로 패턴 트라이</h1>
+ * 포함(include)/제외(exclude) 경로 패턴을 시작할 때 한 번 세그먼트 트라이로 컴파일하고, 요청 URI 를 앞에서부터 한 번만 읽어서
+ * "포함 패턴 중 하나와 맞고, 제외 패턴과는 하나도 맞지 않는가"를 판단한다.
+ * <ul>
+ *     <li>패턴마다 비교하지 않는다. 패턴 수가 수백 개여도 비용은 URI 의 세그먼트 수와 동시에 따라가는 노드 수에만 비례한다.</li>
+ *     <li>리터럴 세그먼트는 노드마다 해시 테이블로 찾는다. URI 의 세그먼트를 substring 으로 잘라내지 않고 원래 문자열에서 바로 비교한다.</li>
+ *     <li>제외 패턴과 맞는 순간 더 읽지 않고 끝낸다.</li>
+ * </ul>
+ *
+ * <h2>패턴 문법 (스프링 PathPattern 의 부분 집합)</h2>
+ * <ul>
+ *     <li>{@code /} : 루트만</li>
+ *     <li>{@code /members/add} : 세그먼트가 모두 같은 경로</li>
+ *     <li>{@code /items/*} : 비어 있지 않은 세그먼트 하나</li>
+ *     <li>{@code /*.ico} : 세그먼트 안의 {@code *}는 '/'를 제외한 0개 이상의 문자</li>
+ *     <li>{@code /css/**} : 0개 이상의 세그먼트, 패턴의 마지막에만 쓸 수 있다. ({@code /css} 도 포함)</li>
+ * </ul>
+ *
+ * <h2>요청 경로</h2>
+ * 요청 URI 원문({@code getRequestURI()})을 그대로 비교하면 안 된다. 스프링은 퍼센트 인코딩을 디코딩하고 {@code ;jsessionid=...} 같은
+ * 세그먼트 파라미터를 뺀 경로로 핸들러를 찾는다. 원문으로 비교하면 {@code /items;x=1/1}, {@code /%69tems/1}은 {@code /items/**}와
+ * 맞지 않지만 상품 컨트롤러는 호출된다. 요청을 확인할 때는 {@link #matches(PathContainer)}에 스프링이 파싱한 경로를 넘기거나,
+ * 파싱한 경로가 없으면 {@link #matches(String, String)}에 원문을 넘긴다.
+ */
+public final class PathPatternTrie {
+
+    private static final int INCLUDE = 1;
+    private static final int EXCLUDE = 2;
+    private static final int INITIAL_ACTIVE = 8;
+
+    private final Node root = new Node();
+    private final int width; //한 깊이에서 동시에 따라갈 수 있는 최대 노드 수
+
+    /**
+     * @throws IllegalArgumentException '/'로 시작하지 않거나 {@code **}가 마지막이 아닌 패턴
+     */
+    public PathPatternTrie(Collection<String> includes, Collection<String> excludes) {
+        for (String pattern : includes) {
+            add(pattern, INCLUDE);
+        }
+        for (String pattern : excludes) {
+            add(pattern, EXCLUDE);
+        }
+        this.width = root.freeze();
+    }
+
+    public boolean matches(String path) {
+        return matches(path, 0);
+    }
+
+    /**
+     * 스프링이 핸들러를 찾을 때와 같은 경로(디코딩, 세그먼트 파라미터 제거)로 비교한다.<br>
+     * 경로를 문자열로 다시 만들지 않고 세그먼트의 {@code valueToMatch()}를 차례로 트라이에 넘긴다.
+     * 연속된 구분자와 마지막 구분자는 문자열로 비교할 때와 같이 빈 세그먼트로 본다.<br>
+     * 디코딩한 세그먼트 안에 '/'({@code %2F})가 있으면 세그먼트 경계를 그대로 옮길 수 없으므로 포함으로 본다.(확인을 건너뛰지 않는 쪽)
+     * 그래서 결과가 정해진 뒤에도 남은 세그먼트에 '/'가 있는지는 끝까지 확인한다.
+     *
+     * @param path 예) {@code ServletRequestPathUtils.getParsedRequestPath(request).pathWithinApplication()}
+     */
+    public boolean matches(PathContainer path) {
+        List<PathContainer.Element> elements = path.elements();
+        int size = elements.size();
+        int i = size > 0 && elements.get(0) instanceof PathContainer.Separator ? 1 : 0;
+        Walk walk = new Walk(root, width);
+        boolean walking = true;
+        boolean separated = false; //맨 앞 이후 구분자가 있었는지, 없고 세그먼트도 비어 있으면 루트 경로다.
+        String segment = "";
+        for (; i < size; i++) {
+            if (elements.get(i) instanceof PathContainer.PathSegment pathSegment) {
+                segment = pathSegment.valueToMatch();
+                if (segment.indexOf('/') >= 0) {
+                    return true;
+                }
+            } else {
+                separated = true;
+                walking = walking && walk.step(segment, 0, segment.length());
+                segment = "";
+            }
+        }
+        if (!walking) {
+            return walk.flags == INCLUDE;
+        }
+        if (!separated && segment.isEmpty()) {
+            return walk.finish() == INCLUDE;
+        }
+        return walk.step(segment, 0, segment.length()) ? walk.finish() == INCLUDE : walk.flags == INCLUDE;
+    }
+
+    /**
+     * 요청 URI 원문으로 확인한다. 요청마다 경로를 파싱하지 않도록, 원문에 '%'와 ';'가 없으면 스프링이 파싱한 경로와 같으므로
+     * 원문에서 바로 비교하고, 있을 때만 파싱해서 {@link #matches(PathContainer)}로 비교한다.
+     *
+     * @param requestURI  {@code getRequestURI()}
+     * @param contextPath {@code getContextPath()}
+     */
+    public boolean matches(String requestURI, String contextPath) {
+        if (requestURI.indexOf('%') < 0 && requestURI.indexOf(';') < 0) {
+            return matches(requestURI, contextPath.length());
+        }
+        return matches(RequestPath.parse(requestURI, contextPath).pathWithinApplication());
+    }
+
+    /**
+     * @param from path 에서 비교를 시작할 위치 (예: context path 길이)
+     */
+    public boolean matches(String path, int from) {
+        int end = path.length();
+        int start = from < end && path.charAt(from) == '/' ? from + 1 : from;
+        Walk walk = new Walk(root, width);
+        if (start >= end) {
+            return walk.finish() == INCLUDE;
+        }
+        while (true) {
+            int slash = path.indexOf('/', start);
+            if (!walk.step(path, start, slash < 0 ? end : slash)) {
+                return walk.flags == INCLUDE;
+            }
+            if (slash < 0) {
+                return walk.finish() == INCLUDE;
+            }
+            start = slash + 1;
+        }
+    }
+
+    private void add(String pattern, int flag) {
+        if (!pattern.startsWith("/")) {
+            throw new IllegalArgumentException("path pattern must start with '/': " + pattern);
+        }
+        Node node = root;
+        String[] segments = pattern.substring(1).split("/", -1);
+        if (pattern.equals("/")) {
+            node.exact |= flag;
+            return;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.equals("**")) {
+                if (i != segments.length - 1) {
+                    throw new IllegalArgumentException("'**' is allowed only at the end: " + pattern);
+                }
+                node.rest |= flag;
+                return;
+            }
+            node = node.child(segment);
+        }
+        node.exact |= flag;
+    }
+
+    private static int hash(String s, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + s.charAt(i); //String.hashCode 와 같은 값
+        }
+        return h;
+    }
+
+    /**
+     * <h2>트라이 탐색 상태</h2>
+     * 세그먼트를 하나씩 받아서, 지금까지의 세그먼트와 맞는 노드들을 동시에 따라간다.
+     */
+    private static final class Walk {
+
+        private final int width;
+        private Node[] current;
+        private Node[] next;
+        private int count = 1;
+        private int flags;
+
+        private Walk(Node root, int width) {
+            //대부분의 URI 는 동시에 따라가는 노드가 몇 개뿐이므로 작게 시작하고, 부족하면 width 까지 늘린다.
+            this.width = width;
+            this.current = new Node[Math.min(width, INITIAL_ACTIVE)];
+            this.next = new Node[current.length];
+            this.current[0] = root;
+            this.flags = root.rest;
+        }
+
+        /**
+         * s 의 from ~ to 를 다음 세그먼트로 따라간다.
+         *
+         * @return 더 따라갈 노드가 없거나 이미 제외되었으면 false, 결과는 {@link #flags}
+         */
+        private boolean step(String s, int from, int to) {
+            int nextCount = 0;
+            int hash = hash(s, from, to);
+            for (int i = 0; i < count; i++) {
+                Node node = current[i];
+                if (next.length - nextCount < node.fanOut && next.length < width) {
+                    next = Arrays.copyOf(next, width);
+                }
+                Node literal = node.literal(s, from, to, hash);
+                if (literal != null) {
+                    next[nextCount++] = literal;
+                }
+                if (node.star != null && to > from) { //스프링과 같이 * 는 빈 세그먼트와 맞지 않는다.
+                    next[nextCount++] = node.star;
+                }
+                for (Glob glob : node.globs) {
+                    if (glob.matches(s, from, to)) {
+                        next[nextCount++] = glob.node;
+                    }
+                }
+            }
+            for (int i = 0; i < nextCount; i++) {
+                flags |= next[i].rest;
+            }
+            if (nextCount == 0 || (flags & EXCLUDE) != 0) {
+                return false;
+            }
+
+            if (current.length < next.length) {
+                current = new Node[next.length];
+            }
+            Node[] swap = current;
+            current = next;
+            next = swap;
+            count = nextCount;
+            return true;
+        }
+
+        /**
+         * 경로가 현재 노드들에서 끝난다.
+         */
+        private int finish() {
+            for (int i = 0; i < count; i++) {
+                flags |= current[i].exact;
+            }
+            return flags;
+        }
+    }
+
+    private static final class Node {
+
+        private Map<String, Node> children = new HashMap<>(); //컴파일하는 동안만 사용
+        private final List<Glob> globList = new ArrayList<>();
+
+        private String[] keys;
+        private Node[] values;
+        private int mask;
+        private Node star;
+        private Glob[] globs;
+        private int fanOut; //세그먼트 하나로 동시에 갈 수 있는 최대 자식 수(리터럴 1 + * + 세그먼트 패턴)
+        private int exact; //경로가 이 노드에서 끝날 때
+        private int rest;  //이 노드 아래 모든 경로({@code **})
+
+        private Node child(String segment) {
+            if (segment.equals("*")) {
+                if (star == null) {
+                    star = new Node();
+                }
+                return star;
+            }
+            if (segment.indexOf('*') >= 0) {
+                for (Glob glob : globList) {
+                    if (glob.pattern.equals(segment)) {
+                        return glob.node;
+                    }
+                }
+                Glob glob = new Glob(segment, new Node());
+                globList.add(glob);
+                return glob.node;
+            }
+            return children.computeIfAbsent(segment, s -> new Node());
+        }
+
+        /**
+         * 리터럴 자식을 개방 주소 해시 테이블로 바꾼다.
+         *
+         * @return 이 노드 아래에서 한 깊이에 있는 최대 노드 수
+         */
+        private int freeze() {
+            int capacity = Integer.highestOneBit(Math.max(1, children.size()) * 2) * 2;
+            keys = new String[capacity];
+            values = new Node[capacity];
+            mask = capacity - 1;
+            for (Map.Entry<String, Node> entry : children.entrySet()) {
+                int i = entry.getKey().hashCode() & mask;
+                while (keys[i] != null) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = entry.getKey();
+                values[i] = entry.getValue();
+            }
+            globs = globList.toArray(new Glob[0]);
+            fanOut = 1 + (star != null ? 1 : 0) + globs.length;
+
+            List<Node> nodes = new ArrayList<>(children.values());
+            if (star != null) {
+                nodes.add(star);
+            }
+            for (Glob glob : globs) {
+                nodes.add(glob.node);
+            }
+            children = null;
+
+            //깊이별 최대 노드 수는 자식들의 값을 더한 것보다 크지 않다.
+            int below = 0;
+            for (Node node : nodes) {
+                below += node.freeze();
+            }
+            return Math.max(Math.max(1, nodes.size()), below);
+        }
+
+        private Node literal(String path, int from, int to, int hash) {
+            int length = to - from;
+            for (int i = hash & mask; keys[i] != null; i = (i + 1) & mask) {
+                String key = keys[i];
+                if (key.length() == length && path.regionMatches(from, key, 0, length)) {
+                    return values[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 세그먼트 안의 {@code *} 패턴, 예) {@code *.ico}, {@code item-*-detail}
+     */
+    private static final class Glob {
+
+        private final String pattern;
+        private final String[] parts; //'*'로 나눈 리터럴 조각
+        private final int minLength;
+        private final Node node;
+
+        private Glob(String pattern, Node node) {
+            this.pattern = pattern;
+            this.parts = pattern.split("\\*", -1);
+            this.minLength = pattern.length() - (parts.length - 1);
+            this.node = node;
+        }
+
+        /**
+         * 첫 조각은 앞에, 마지막 조각은 뒤에 맞추고, 가운데 조각은 왼쪽부터 차례로 찾는다.
+         */
+        private boolean matches(String path, int from, int to) {
+            if (to - from < minLength) {
+                return false;
+            }
+            String first = parts[0];
+            String last = parts[parts.length - 1];
+            if (!path.startsWith(first, from) || !path.startsWith(last, to - last.length())) {
+                return false;
+            }
+            int position = from + first.length();
+            int limit = to - last.length();
+            for (int i = 1; i < parts.length - 1; i++) {
+                String part = parts[i];
+                int found = path.indexOf(part, position);
+                if (found < 0 || found + part.length() > limit) {
+                    return false;
+                }
+                position = found + part.length();
+            }
+            return true;
+        }
+    }
+}
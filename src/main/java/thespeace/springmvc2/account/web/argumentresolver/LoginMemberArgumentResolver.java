@@ -2,6 +2,7 @@ package thespeace.springmvc2.account.web.argumentresolver;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.MethodParameter;
 import org.springframework.web.bind.support.WebDataBinderFactory;
@@ -9,7 +10,9 @@ import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.method.support.ModelAndViewContainer;
 import thespeace.springmvc2.account.domain.member.Member;
+import thespeace.springmvc2.account.domain.member.MemberCache;
 import thespeace.springmvc2.account.web.SessionConst;
+import thespeace.springmvc2.account.web.session.SessionManager;
 
 /**
  * <h2>HandlerMethodArgumentResolver 구현</h2>
@@ -19,10 +22,17 @@ import thespeace.springmvc2.account.web.SessionConst;
  *     여기서는 세션에 있는 로그인 회원 정보인 member 객체를 찾아서 반환해준다.<br>
  *     이후 스프링MVC는 컨트롤러의 메서드를 호출하면서 여기에서 반환된 member 객체를 파라미터에 전달해준다.</li>
  * </ul>
+ * 세션 관리자가 토큰 모드면 HttpSession 대신 세션 쿠키의 토큰을 검증해서 회원 정보를 만든다.(저장소 조회 없음)<br>
+ * HttpSession 을 사용할 때는 요청한 세션 id 로 {@link MemberCache}를 먼저 찾는다. 캐시에 있으면 세션 속성을 읽지 않고 로컬 메모리의 회원을 반환한다.<br>
+ * 캐시에 있어도 {@code request.getSession(false)}는 호출한다. 컨테이너가 세션의 마지막 접근 시각을 갱신해야 사용 중인 회원이 타임아웃으로 로그아웃되지 않는다.
+ * 세션 맵 조회 한 번이고 속성은 읽지 않는다. 세션이 이미 만료되었으면 캐시 항목도 지운다.
  */
 @Slf4j
+@RequiredArgsConstructor
 public class LoginMemberArgumentResolver implements HandlerMethodArgumentResolver {
 
+    private final SessionManager sessionManager;
+    private final MemberCache memberCache;
 
     @Override
     public boolean supportsParameter(MethodParameter parameter) {
@@ -40,11 +50,34 @@ public class LoginMemberArgumentResolver implements HandlerMethodArgumentResolve
         log.info("resolveArgument 실행");
 
         HttpServletRequest request = (HttpServletRequest) webRequest.getNativeRequest();
+        if (sessionManager.isTokenMode()) {
+            return sessionManager.getSession(request);
+        }
+
+        String sessionId = request.getRequestedSessionId();
+        if (sessionId != null) {
+            Member cached = memberCache.findBySession(sessionId);
+            if (cached != null) {
+                HttpSession session = request.getSession(false); //마지막 접근 시각 갱신, 만료 확인
+                if (session != null && session.getId().equals(sessionId)) {
+                    return cached;
+                }
+                memberCache.evictSession(sessionId);
+            }
+        }
+
+        long generation = memberCache.generation(); //세션을 읽는 동안 로그아웃하면 캐시에 넣지 않는다.
         HttpSession session = request.getSession(false);
         if(session == null) {
             return null;
         }
 
-        return session.getAttribute(SessionConst.LOGIN_MEMBER);
+        Member loginMember = (Member) session.getAttribute(SessionConst.LOGIN_MEMBER);
+        if (loginMember == null || !session.getId().equals(sessionId)) {
+            return loginMember;
+        }
+        memberCache.putSession(sessionId, loginMember.getId(), generation);
+        Member member = memberCache.findById(loginMember.getId());
+        return member != null ? member : loginMember;
     }
 }
@@ -2,17 +2,23 @@ package thespeace.springmvc2.account.web.filter;
 
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import thespeace.springmvc2.common.accesslog.AccessLog;
 
 import java.io.IOException;
-import java.util.UUID;
 
 /**
  * <h2>모든 요청을 로그로 남기는 필터.</h2>
+ * 요청마다 log.info 를 남기지 않고, 응답이 끝나면 한 건을 {@link AccessLog}에 넘긴다. 포맷과 파일 쓰기는 쓰기 스레드가 모아서 한다.
  */
 @Slf4j
+@RequiredArgsConstructor
 public class LogFilter implements Filter { //필터를 사용하려면 필터 인터페이스를 구현해야 한다.
 
+    private final AccessLog accessLog;
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
         log.info("log filter init");
@@ -28,21 +34,16 @@ public class LogFilter implements Filter { //필터를 사용하려면 필터 
      */
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
-        log.info("log filter doFilter");
-
-        HttpServletRequest httpRequest = (HttpServletRequest) request;
-        String requestURI = httpRequest.getRequestURI();
-
-        //사용자 구분을 위해 요청당 임의의 uuid 를 생성.
-        String uuid = UUID.randomUUID().toString();
+        long startNanos = System.nanoTime();
+        Exception failure = null;
 
         try {
-            log.info("REQUEST [{}][{}]", uuid, requestURI);
             chain.doFilter(request, response); //다음 Filter가 있으면 호출, 없으면 서블릿 호출.(만약 이 로직을 호출하지 않으면 다음 단계로 진행되지 않는다.)
         } catch (Exception e) {
+            failure = e;
             throw e;
         } finally {
-            log.info("RESPONSE [{}][{}]", uuid, requestURI);
+            accessLog.record((HttpServletRequest) request, (HttpServletResponse) response, startNanos, failure);
         }
 
     }
@@ -4,21 +4,32 @@ import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.util.PatternMatchUtils;
+import thespeace.springmvc2.account.web.PathPatternTrie;
 import thespeace.springmvc2.account.web.SessionConst;
+import thespeace.springmvc2.account.web.session.SessionCookieReader;
+import thespeace.springmvc2.account.web.session.SessionManager;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * <h2>서블릿 필터 - 인증 체크</h2>
- *
+ * 세션 관리자가 토큰 모드면 HttpSession 대신 세션 쿠키의 토큰을 검증한다.
  */
 @Slf4j
+@RequiredArgsConstructor
 public class LoginCheckFilter implements Filter {
 
+    private final SessionManager sessionManager;
+
     //화이트 리스트 경로는 인증과 무관하게 항상 허용, 화이트 리스트를 제외한 나머지 모든 경로에는 인증 체크 로직을 적용.
-    private static final String[] whiteList = {"/","/account", "/members/add", "/login", "/logout", "/css/*"};
+    //PatternMatchUtils 의 "/css/*" 는 하위 경로까지 포함했으므로 "/css/**" 로 바꿨다.
+    private static final List<String> whiteList = List.of("/","/account", "/members/add", "/login", "/logout", "/css/**");
+
+    //시작할 때 한 번 컴파일해서, 요청마다 화이트 리스트를 하나씩 비교하지 않는다.
+    private static final PathPatternTrie loginCheckPaths = new PathPatternTrie(List.of("/**"), whiteList);
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
@@ -28,12 +39,11 @@ public class LoginCheckFilter implements Filter {
         HttpServletResponse httpResponse = (HttpServletResponse) response;
 
         try {
-            log.info("인증 체크 필터 시작 {}", requestURI);
+            log.debug("인증 체크 필터 시작 {}", requestURI);
 
-            if(isLoginCheckPath(requestURI)) {
-                log.info("인증 체크 로직 실행 {}", requestURI);
-                HttpSession session = httpRequest.getSession(false);
-                if(session == null || session.getAttribute(SessionConst.LOGIN_MEMBER) == null) {
+            if(isLoginCheckPath(httpRequest)) {
+                log.debug("인증 체크 로직 실행 {}", requestURI);
+                if(!isLoggedIn(httpRequest)) {
 
                     log.info("미인증 사용자 요청 {}" , requestURI);
 
@@ -49,15 +59,28 @@ public class LoginCheckFilter implements Filter {
         } catch (Exception e) {
             throw e; //예외 로깅 가능 하지만, 톰캣까지 예외를 보내주어야 한다(WAS까지 올려주어야 한다).
         } finally {
-            log.info("인증 체크 필터 종료 {} ", requestURI);
+            log.debug("인증 체크 필터 종료 {} ", requestURI);
         }
 
     }
 
+    private boolean isLoggedIn(HttpServletRequest request) {
+        if (sessionManager.isTokenMode()) {
+            return sessionManager.getSession(request) != null;
+        }
+        if (SessionCookieReader.find(request, SessionCookieReader.JSESSIONID) == null) {
+            return false; //세션 쿠키가 없으면 세션 저장소를 조회하지 않는다.
+        }
+        HttpSession session = request.getSession(false);
+        return session != null && session.getAttribute(SessionConst.LOGIN_MEMBER) != null;
+    }
+
     /**
      * <h2>화이트 리스트를 제외한 모든 경우에 인증 체크 로직을 적용</h2>
      */
-    private boolean isLoginCheckPath(String requestURI) {
-        return !PatternMatchUtils.simpleMatch(whiteList, requestURI);
+    private boolean isLoginCheckPath(HttpServletRequest request) {
+        //return !PatternMatchUtils.simpleMatch(whiteList, requestURI);
+        //스프링이 핸들러를 찾을 때와 같은 경로(디코딩, ;파라미터 제거)로 확인한다. 원문에 '%', ';'가 없으면 파싱하지 않는다.
+        return loginCheckPaths.matches(request.getRequestURI(), request.getContextPath());
     }
 }
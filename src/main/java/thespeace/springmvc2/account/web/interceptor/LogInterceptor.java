@@ -2,12 +2,14 @@ package thespeace.springmvc2.account.web.interceptor;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.method.HandlerMethod;
-import org.springframework.web.servlet.HandlerInterceptor;
-import org.springframework.web.servlet.ModelAndView;
-
-import java.util.UUID;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import thespeace.springmvc2.common.accesslog.AccessLog;
+import thespeace.springmvc2.common.metrics.HandlerLatencyRecorder;
+import thespeace.springmvc2.common.metrics.RequestStartTimes;
+import thespeace.springmvc2.common.requestid.RequestIdFilter;
 
 /**
  * <h2>요청 로그 인터셉터</h2>
@@ -23,23 +25,35 @@ import java.util.UUID;
  *     <li>종료 로그를 postHandle 이 아니라 afterCompletion 에서 실행한 이유는, 예외가 발생한 경우 postHandle가
  *         호출되지 않기 때문이다. afterCompletion 은 예외가 발생해도 호출 되는 것을 보장한다.</li>
  * </ul>
+ * <ul>-응답 시간
+ *     <li>preHandle 의 System.nanoTime() 부터 afterCompletion 까지의 시간을 핸들러별 히스토그램({@link HandlerLatencyRecorder})에 기록한다.
+ *         예외가 발생한 요청도 포함한다.</li>
+ *     <li>시작 시각은 request attribute 가 아니라 이 인터셉터의 {@link RequestStartTimes}에 담는다.
+ *         요청마다 Long 을 만들지 않고, 같은 이름을 쓰던 LogExInterceptor 와 값이 섞이지 않는다.</li>
+ * </ul>
+ * <ul>-접근 로그
+ *     <li>요청/응답마다 log.info 를 남기지 않고, afterCompletion 에서 한 건을 {@link AccessLog}에 넘긴다.
+ *         포맷과 파일 쓰기는 접근 로그의 쓰기 스레드가 모아서 하므로 요청 스레드는 I/O 를 기다리지 않는다.</li>
+ * </ul>
  */
 @Slf4j
-public class LogInterceptor implements HandlerInterceptor {
+@RequiredArgsConstructor
+public class LogInterceptor implements AsyncHandlerInterceptor {
 
     public static final String LOG_ID = "logId";
 
+    private final HandlerLatencyRecorder handlerLatencyRecorder;
+    private final AccessLog accessLog;
+    private final RequestStartTimes startTimes = new RequestStartTimes(); //인터셉터마다 따로 둔다.
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-
-        String requestURI = request.getRequestURI();
-        String uuid = UUID.randomUUID().toString();
-
         //서블릿 필터의 경우 지역변수로 해결이 가능하지만, 스프링 인터셉터는 호출 시점이 완전히 분리되어 있다.
         //따라서 preHandle 에서 지정한 값을 postHandle , afterCompletion 에서 함께 사용하려면 어딘가에 담아두어야 한다.
         //LogInterceptor 도 싱글톤 처럼 사용되기 때문에 맴버변수를 사용하면 위험하다.
         //따라서 request 에 담아두었다. 이 값은 afterCompletion 에서 request.getAttribute(LOG_ID) 로 찾아서 사용한다.
-        request.setAttribute(LOG_ID, uuid);
+        request.setAttribute(LOG_ID, RequestIdFilter.get(request)); //요청마다 새로 만들지 않고 요청 id 필터가 정한 id 를 쓴다.
+        startTimes.start(request, System.nanoTime()); //Long 을 attribute 에 담지 않는다.
 
         //@RequestMapping : HandlerMethod
         //정적 리소스: ResourceHttpRequestHandler
@@ -47,25 +61,24 @@ public class LogInterceptor implements HandlerInterceptor {
             HandlerMethod hm = (HandlerMethod) handler;// 호출할 컨트롤러 메서드의 모든 정보가 포함되어 있다.
         }
 
-        log.info("REQUEST [{}][{}]", uuid, requestURI, handler);
-
         return true; //true: 정상 호출, 다음 인터셉터나 컨트롤러가 호출.  false: 진행 X
     }
 
-    @Override
-    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception {
-        log.info("postHandle [{}]", modelAndView);
-    }
-
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
-        String requestURI = request.getRequestURI();
-        String logId = (String) request.getAttribute(LOG_ID);
-
-        log.info("RESPONSE [{}][{}]", logId, requestURI, handler);
+        long startNanos = startTimes.remove(request);
+        if (startNanos != RequestStartTimes.NONE) {
+            handlerLatencyRecorder.record(handler, System.nanoTime() - startNanos);
+            accessLog.record(request, response, startNanos, ex); //예외가 있으면 샘플링하지 않고 남긴다.
+        }
 
         if(ex != null) {
             log.error("afterCompletion error!!", ex);
         }
     }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        startTimes.remove(request); //비동기로 넘어가면 afterCompletion 이 호출되지 않으므로 여기서 비운다.
+    }
 }
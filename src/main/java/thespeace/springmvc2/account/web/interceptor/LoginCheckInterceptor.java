@@ -3,27 +3,42 @@ package thespeace.springmvc2.account.web.interceptor;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.util.ServletRequestPathUtils;
+import thespeace.springmvc2.account.web.PathPatternTrie;
 import thespeace.springmvc2.account.web.SessionConst;
+import thespeace.springmvc2.account.web.session.SessionCookieReader;
+import thespeace.springmvc2.account.web.session.SessionManager;
 
 /**
  * <h2>스프링 인터셉터 - 인증 체크</h2>
  * 인증 체크 기능을 스프링 인터셉터로 개발, 서블릿 필터와 비교해서 코드가 매우 간결하다.<br>
- * 인증이라는 것은 컨트롤러 호출 전에만 호출되면 된다. 따라서 preHandle 만 구현하면 된다.
+ * 인증이라는 것은 컨트롤러 호출 전에만 호출되면 된다. 따라서 preHandle 만 구현하면 된다.<br>
+ * 세션 관리자가 토큰 모드면 HttpSession 대신 세션 쿠키의 토큰을 검증한다.<br>
+ * 적용 경로는 addPathPatterns/excludePathPatterns 대신 컴파일한 {@link PathPatternTrie}로 확인한다. 요청 URI 를 한 번만 읽는다.<br>
+ * 요청 URI 원문이 아니라 스프링이 핸들러를 찾을 때 쓴 경로(디코딩, {@code ;파라미터} 제거)로 확인한다. 원문으로 확인하면
+ * {@code /items;x=1/1} 같은 요청이 로그인 체크 없이 상품 컨트롤러에 도달한다.
  */
 @Slf4j
+@RequiredArgsConstructor
 public class LoginCheckInterceptor implements HandlerInterceptor {
 
+    private final SessionManager sessionManager;
+    private final PathPatternTrie loginCheckPaths;
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
 
         String requestURI = request.getRequestURI();
+        if (!isLoginCheckPath(request)) {
+            return true;
+        }
 
         log.info("인증 체크 인터셉처 실행 {}", requestURI);
-        HttpSession session = request.getSession();
 
-        if(session == null || session.getAttribute(SessionConst.LOGIN_MEMBER) == null) {
+        if(!isLoggedIn(request)) {
             log.info("미인증 사용자 요청");
 
             //로그인으로 redirect
@@ -33,4 +48,25 @@ public class LoginCheckInterceptor implements HandlerInterceptor {
 
         return true;
     }
+
+    /**
+     * DispatcherServlet 이 파싱해 둔 경로를 쓰고, 없으면(AntPathMatcher 설정 등) 같은 규칙으로 원문을 확인한다.
+     */
+    private boolean isLoginCheckPath(HttpServletRequest request) {
+        if (ServletRequestPathUtils.hasParsedRequestPath(request)) {
+            return loginCheckPaths.matches(ServletRequestPathUtils.getParsedRequestPath(request).pathWithinApplication());
+        }
+        return loginCheckPaths.matches(request.getRequestURI(), request.getContextPath());
+    }
+
+    private boolean isLoggedIn(HttpServletRequest request) {
+        if (sessionManager.isTokenMode()) {
+            return sessionManager.getSession(request) != null;
+        }
+        if (SessionCookieReader.find(request, SessionCookieReader.JSESSIONID) == null) {
+            return false; //세션 쿠키가 없으면 빈 세션을 만들지 않는다.
+        }
+        HttpSession session = request.getSession();
+        return session != null && session.getAttribute(SessionConst.LOGIN_MEMBER) != null;
+    }
 }
@@ -0,0 +1,43 @@
+package thespeace.springmvc2.account.web.interceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+import thespeace.springmvc2.account.domain.login.LoginRateLimiter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h2>스프링 인터셉터 - 로그인 시도 횟수 제한</h2>
+ * preHandle 은 컨트롤러 파라미터 바인딩(@Valid 검증) 전에 호출된다. 여기서 거절하면 검증과 비밀번호 해시 계산을 하지 않는다.
+ * <ul>
+ *     <li>로그인 요청(POST)만 제한한다. 로그인 화면(GET)은 제한하지 않는다.</li>
+ *     <li>거절하면 429 와 Retry-After(초)만 응답한다. 오류 페이지를 렌더링하지 않도록 sendError 를 사용하지 않는다.</li>
+ * </ul>
+ * 접속 IP 는 {@code request.getRemoteAddr()}이다. 프록시 뒤에서 실행하면 server.forward-headers-strategy 를 설정해야 클라이언트 IP 로 제한한다.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class LoginRateLimitInterceptor implements HandlerInterceptor {
+
+    private final LoginRateLimiter loginRateLimiter;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!"POST".equals(request.getMethod())) {
+            return true;
+        }
+
+        long waitNanos = loginRateLimiter.tryAcquire(request.getParameter("loginId"), request.getRemoteAddr());
+        if (waitNanos == 0) {
+            return true;
+        }
+
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L))));
+        return false;
+    }
+}
@@ -24,9 +24,17 @@ public class AccountItemController {
     private final AccountItemRepository itemRepository;
 
     @GetMapping
-    public String items(Model model) {
-        List<AccountItem> items = itemRepository.findAll();
+    public String items(@RequestParam(name = "after", required = false) Long after,
+                        @RequestParam(name = "size", defaultValue = "20") int size,
+                        Model model) {
+        size = Math.min(Math.max(size, 1), 100);
+        List<AccountItem> items = itemRepository.findPage(after, size + 1); //다음 페이지 존재 여부 확인을 위해 1개 더 조회
+        if (items.size() > size) {
+            items = items.subList(0, size);
+            model.addAttribute("nextAfter", items.get(size - 1).getId());
+        }
         model.addAttribute("items", items);
+        model.addAttribute("size", size);
         return "/account/items/items";
     }
 
@@ -79,7 +87,7 @@ public class AccountItemController {
     }
 
     @PostMapping("/{itemId}/edit")
-    public String edit(@PathVariable("itemId") Long itemId, @Validated @ModelAttribute("item") AccountItemUpdateForm form, BindingResult bindingResult) {
+    public String edit(@PathVariable("itemId") Long itemId, @Validated @ModelAttribute("item") AccountItemUpdateForm form, BindingResult bindingResult, Model model) {
 
         //특정 필드 예외가 아닌 전체 예외
         if (form.getPrice() != null && form.getQuantity() != null) {
@@ -99,7 +107,21 @@ public class AccountItemController {
         itemParam.setPrice(form.getPrice());
         itemParam.setQuantity(form.getQuantity());
 
-        itemRepository.update(itemId, itemParam);
+        //낙관적 락, 수정 화면을 연 뒤 다른 사용자가 먼저 수정했으면 글로벌 오류로 알린다.
+        //폼은 최신 값과 version 으로 바꾸고, 입력한 값은 옆에 보여준다. 그대로 다시 저장해도 다른 사용자의 수정을 덮어쓰지 않는다.
+        if (!itemRepository.update(itemId, itemParam, form.getVersion())) {
+            bindingResult.reject("optimisticLock");
+            model.addAttribute("rejected", itemParam);
+            AccountItem latest = itemRepository.findById(itemId);
+            if (latest != null) {
+                form.setItemName(latest.getItemName());
+                form.setPrice(latest.getPrice());
+                form.setQuantity(latest.getQuantity());
+                form.setVersion(latest.getVersion());
+            }
+            log.info("errors={}", bindingResult);
+            return "/account/items/editForm";
+        }
         return "redirect:/items/{itemId}";
     }
 }
@@ -19,4 +19,8 @@ public class AccountItemUpdateForm {
 
     //수정에서는 수량은 자유롭게 변경할 수 있다.
     private Integer quantity;
+
+    //수정 화면을 열 때의 상품 version(낙관적 락)
+    @NotNull
+    private Long version;
 }
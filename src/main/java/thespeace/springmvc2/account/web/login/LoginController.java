@@ -128,12 +128,13 @@ public class LoginController {
 
     /**
      * <h2>RedirectURL 처리</h2>
-     * 로그인에 성공하면 처음 요청한 URL로 이동하는 기능 추가.
+     * 로그인에 성공하면 처음 요청한 URL로 이동하는 기능 추가.<br>
+     * 세션 관리자가 토큰 모드면 HttpSession 대신 서명된 토큰을 세션 쿠키로 전달한다.
      */
     @PostMapping("/login")
     public String loginV4(@Valid @ModelAttribute LoginForm form, BindingResult bindingResult,
                           @RequestParam(defaultValue = "/") String redirectURL,
-                          HttpServletRequest request) {
+                          HttpServletRequest request, HttpServletResponse response) {
         if(bindingResult.hasErrors()) {
             return "account/login/loginForm";
         }
@@ -145,6 +146,11 @@ public class LoginController {
             return "account/login/loginForm";
         }
 
+        if (sessionManager.isTokenMode()) {
+            sessionManager.createSession(loginMember, response);
+            return "redirect:" + redirectURL;
+        }
+
         //로그인 성공 처리, //세션이 있으면 있는 세션 반환, 없으면 신규 세션 생성
         HttpSession session = request.getSession();
 
@@ -182,7 +188,12 @@ public class LoginController {
      * <h2>로그아웃(Servlet HTTP Session 1)</h2>
      */
     @PostMapping("/logout")
-    public String logoutV3(HttpServletRequest request) {
+    public String logoutV3(HttpServletRequest request, HttpServletResponse response) {
+        if (sessionManager.isTokenMode()) {
+            sessionManager.expire(request, response);
+            return "redirect:/account";
+        }
+
         HttpSession session = request.getSession(false);
         if(session != null) {
             session.invalidate(); //세션을 제거
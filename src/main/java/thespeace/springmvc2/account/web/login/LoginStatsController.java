@@ -0,0 +1,38 @@
+package thespeace.springmvc2.account.web.login;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import thespeace.springmvc2.account.domain.login.LoginRateLimiter;
+import thespeace.springmvc2.account.domain.login.PasswordService;
+
+/**
+ * <h2>비밀번호 검증 풀 상태 조회 API</h2>
+ * 대기 큐 깊이, 거절 횟수, 검증 시간을 반환한다. 로그인 요청이 몰리는지 확인할 때 사용한다.<br>
+ * /rate-limit 은 로그인 시도 횟수 제한으로 허용/거절한 횟수를 반환한다.
+ */
+@RestController
+@RequestMapping("/api/login/stats")
+@RequiredArgsConstructor
+public class LoginStatsController {
+
+    private final PasswordService passwordService;
+    private final LoginRateLimiter loginRateLimiter;
+
+    /**
+     * @see <a href="http://localhost:8080/api/login/stats">test url</a>
+     */
+    @GetMapping
+    public PasswordService.Metrics stats() {
+        return passwordService.metrics();
+    }
+
+    /**
+     * @see <a href="http://localhost:8080/api/login/stats/rate-limit">test url</a>
+     */
+    @GetMapping("/rate-limit")
+    public LoginRateLimiter.Metrics rateLimit() {
+        return loginRateLimiter.metrics();
+    }
+}
@@ -8,8 +8,10 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import thespeace.springmvc2.account.domain.login.PasswordService;
 import thespeace.springmvc2.account.domain.member.Member;
 import thespeace.springmvc2.account.domain.member.MemberRepository;
+import thespeace.springmvc2.common.repository.DuplicateEntityException;
 
 @Controller
 @RequiredArgsConstructor
@@ -17,6 +19,7 @@ import thespeace.springmvc2.account.domain.member.MemberRepository;
 public class MemberController {
 
     private final MemberRepository memberRepository;
+    private final PasswordService passwordService;
 
     @GetMapping("/add")
     public String addForm(@ModelAttribute("member") Member member) {
@@ -29,7 +32,17 @@ public class MemberController {
             return "account/members/addMemberForm";
         }
 
-        memberRepository.save(member);
+        String rawPassword = member.getPassword();
+        member.setPassword(passwordService.hash(rawPassword)); //비밀번호는 해시로 저장한다.
+
+        //가입 여부 확인과 저장은 저장소의 유일 인덱스가 원자적으로 처리한다. 동시에 같은 loginId 로 가입해도 하나만 저장된다.
+        try {
+            memberRepository.save(member);
+        } catch (DuplicateEntityException e) {
+            member.setPassword(rawPassword); //폼에는 입력한 값을 다시 보여준다.
+            bindingResult.rejectValue("loginId", "duplicate");
+            return "account/members/addMemberForm";
+        }
         return "redirect:/account";
     }
 }
@@ -0,0 +1,87 @@
+package thespeace.springmvc2.account.web.session;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <h1>CLOCK 교체 구간</h1>
+ * 근사 LRU(second chance). 세션 저장소를 여러 구간으로 나누고, 구간마다 세션을 원형 배열에 보관한다.
+ * <ul>
+ *     <li>조회할 때는 세션의 referenced 표시만 켠다. 순서를 옮기는 LRU 리스트와 달리 조회 경로에서 락을 잡지 않는다.</li>
+ *     <li>제거할 세션을 고를 때 시계 바늘을 돌면서 referenced 가 켜진 세션은 표시만 끄고 넘어가고(한 번 더 기회), 꺼진 세션을 고른다.</li>
+ *     <li>락은 구간 단위다. 등록/제거/교체 대상 선택이 서로 다른 구간이면 기다리지 않는다.</li>
+ *     <li>세션이 빠진 칸은 빈 칸 목록에 넣어 다시 사용하므로 등록과 제거는 O(1)이다.</li>
+ *     <li>새 세션은 보통 방금 제거한 칸(시계 바늘 바로 뒤)에 들어가므로, 바늘이 한 바퀴 도는 동안 사용될 기회를 얻는다.</li>
+ * </ul>
+ */
+final class ClockSegment {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private ManagedSession[] slots = new ManagedSession[16];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int used; //한 번이라도 사용한 칸 수
+    private int hand;
+
+    void add(ManagedSession session) {
+        lock.lock();
+        try {
+            int slot;
+            if (freeCount > 0) {
+                slot = freeSlots[--freeCount];
+            } else {
+                if (used == slots.length) {
+                    slots = Arrays.copyOf(slots, used * 2);
+                    freeSlots = Arrays.copyOf(freeSlots, used * 2);
+                }
+                slot = used++;
+            }
+            slots[slot] = session;
+            session.slot = slot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void remove(ManagedSession session) {
+        lock.lock();
+        try {
+            int slot = session.slot;
+            if (slot >= 0 && slots[slot] == session) {
+                slots[slot] = null;
+                freeSlots[freeCount++] = slot;
+                session.slot = -1;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 시계 바늘을 돌려 최근에 조회되지 않은 세션을 고른다. 구간에서 제거하지는 않는다.
+     *
+     * @param exclude 고르지 않을 세션 (방금 만든 세션)
+     * @return 구간이 비어 있으면 null
+     */
+    ManagedSession nextVictim(ManagedSession exclude) {
+        lock.lock();
+        try {
+            //한 바퀴 돌면서 표시를 모두 끄면, 두 번째 바퀴에서는 반드시 찾는다.
+            for (int i = 0; i < used * 2; i++) {
+                ManagedSession session = slots[hand];
+                hand = hand + 1 == used ? 0 : hand + 1;
+                if (session == null || session == exclude) {
+                    continue;
+                }
+                if (session.referenced) {
+                    session.referenced = false;
+                    continue;
+                }
+                return session;
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
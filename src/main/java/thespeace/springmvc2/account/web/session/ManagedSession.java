@@ -0,0 +1,52 @@
+package thespeace.springmvc2.account.web.session;
+
+/**
+ * <h1>세션 저장소 한 건</h1>
+ * {@link SessionManager}가 보관하는 값과 만료, 교체에 필요한 정보.
+ */
+final class ManagedSession {
+
+    final String id;
+    final Object value;
+    final long createdAt;
+    final long bytes; //추정 크기
+
+    volatile long lastAccessedAt;
+    volatile boolean referenced;
+    int slot = -1; //ClockSegment 칸 번호, 구간 락 안에서만 사용
+    boolean persisted; //PUT 레코드를 기록했는지, SessionPersistence 쓰기 스레드에서만 사용
+    volatile TimingWheel.Timer<ManagedSession> timer; //다음 만료 확인 항목, 제거할 때 취소
+
+    ManagedSession(String id, Object value, long createdAt, long bytes) {
+        this(id, value, createdAt, createdAt, bytes);
+    }
+
+    ManagedSession(String id, Object value, long createdAt, long lastAccessedAt, long bytes) {
+        this.id = id;
+        this.value = value;
+        this.createdAt = createdAt;
+        this.lastAccessedAt = lastAccessedAt;
+        this.bytes = bytes;
+    }
+
+    /**
+     * 조회 시각과 referenced 표시를 기록한다. 이미 기록된 값이면 쓰지 않는다. 요청마다 같은 캐시 라인에 쓰지 않도록
+     *
+     * @param tickMillis 이 시간 안의 반복 조회는 조회 시각을 갱신하지 않는다.
+     * @return 조회 시각을 갱신했으면 true
+     */
+    boolean touch(long now, long tickMillis) {
+        if (!referenced) {
+            referenced = true;
+        }
+        if (now - lastAccessedAt >= tickMillis) {
+            lastAccessedAt = now;
+            return true;
+        }
+        return false;
+    }
+
+    long deadline(long idleTimeoutMillis, long maxLifetimeMillis) {
+        return Math.min(lastAccessedAt + idleTimeoutMillis, createdAt + maxLifetimeMillis);
+    }
+}
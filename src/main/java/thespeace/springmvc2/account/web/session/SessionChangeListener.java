@@ -0,0 +1,21 @@
+package thespeace.springmvc2.account.web.session;
+
+/**
+ * <h2>세션 변경 알림</h2>
+ * {@link SessionManager}의 저장소 모드에서 세션이 생성, 사용, 제거된 직후 호출된다.<br>
+ * 요청 스레드에서 직접 호출되므로 표시만 남기고 바로 반환해야 한다. (예: {@link SessionPersistence})
+ */
+interface SessionChangeListener {
+
+    void onCreate(ManagedSession session);
+
+    /**
+     * 마지막 조회 시각이 바뀐 경우만 호출된다. 같은 세션에 대해 tick(1초)마다 최대 한 번
+     */
+    void onAccess(ManagedSession session);
+
+    /**
+     * 만료, 로그아웃, 메모리 예산 초과로 제거된 경우
+     */
+    void onRemove(ManagedSession session);
+}
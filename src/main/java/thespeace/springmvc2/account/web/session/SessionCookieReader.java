@@ -0,0 +1,114 @@
+package thespeace.springmvc2.account.web.session;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * <h1>세션 쿠키 값 조회</h1>
+ * {@code request.getCookies()}는 요청의 모든 쿠키를 파싱해서 Cookie 배열을 만든다. 세션 id 하나만 필요한데 쿠키가 많거나 크면 낭비가 크다.
+ * <ul>
+ *     <li>Cookie 헤더 문자열을 한 번 훑으면서 찾는 쿠키 이름의 값만 잘라낸다. Cookie 배열, 스트림 객체를 만들지 않는다.</li>
+ *     <li>찾은 결과(없으면 없다는 결과도)는 요청 속성에 보관한다. 같은 요청에서 필터, 인터셉터, 컨트롤러가 다시 조회해도 헤더를 다시 훑지 않는다.</li>
+ *     <li>Cookie 헤더가 없으면(예: 테스트용 요청 객체) {@code getCookies()}로 찾는다.</li>
+ * </ul>
+ */
+public final class SessionCookieReader {
+
+    public static final String JSESSIONID = "JSESSIONID";
+
+    private static final String ATTRIBUTE_PREFIX = SessionCookieReader.class.getName() + ".";
+    private static final String SESSION_ID_ATTRIBUTE = ATTRIBUTE_PREFIX + SessionManager.SESSION_COOKIE_NAME;
+    private static final String JSESSIONID_ATTRIBUTE = ATTRIBUTE_PREFIX + JSESSIONID;
+    private static final String NOT_FOUND = new String(""); //요청 속성에 '없음'을 보관하기 위한 고유 객체
+
+    private SessionCookieReader() {
+    }
+
+    /**
+     * @return 쿠키 값, 없으면 null
+     */
+    public static String find(HttpServletRequest request, String cookieName) {
+        String attribute = attributeName(cookieName);
+        Object cached = request.getAttribute(attribute);
+        if (cached != null) {
+            return cached == NOT_FOUND ? null : (String) cached;
+        }
+
+        String header = request.getHeader("Cookie");
+        String value = header != null ? scan(header, cookieName) : fromCookies(request, cookieName);
+        request.setAttribute(attribute, value == null ? NOT_FOUND : value);
+        return value;
+    }
+
+    /**
+     * <h2>Cookie 헤더 스캔</h2>
+     * {@code name1=value1; name2=value2} 형식에서 이름이 정확히 같은 첫 번째 쿠키의 값을 반환한다.<br>
+     * 값 앞뒤 공백과 큰따옴표는 제거한다.
+     */
+    static String scan(String header, String cookieName) {
+        int length = header.length();
+        int nameLength = cookieName.length();
+        int i = 0;
+        while (i < length) {
+            //이름 앞의 공백, 구분자 건너뛰기
+            char c = header.charAt(i);
+            if (c == ' ' || c == '\t' || c == ';' || c == ',') {
+                i++;
+                continue;
+            }
+
+            int end = header.indexOf(';', i);
+            if (end < 0) {
+                end = length;
+            }
+            if (header.startsWith(cookieName, i)) {
+                int equals = i + nameLength;
+                while (equals < end && header.charAt(equals) == ' ') {
+                    equals++;
+                }
+                if (equals < end && header.charAt(equals) == '=') {
+                    return value(header, equals + 1, end);
+                }
+            }
+            i = end + 1;
+        }
+        return null;
+    }
+
+    private static String value(String header, int start, int end) {
+        while (start < end && header.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && header.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end - start >= 2 && header.charAt(start) == '"' && header.charAt(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        return header.substring(start, end);
+    }
+
+    private static String fromCookies(HttpServletRequest request, String cookieName) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (cookie.getName().equals(cookieName)) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String attributeName(String cookieName) {
+        if (SessionManager.SESSION_COOKIE_NAME.equals(cookieName)) {
+            return SESSION_ID_ATTRIBUTE;
+        }
+        if (JSESSIONID.equals(cookieName)) {
+            return JSESSIONID_ATTRIBUTE;
+        }
+        return ATTRIBUTE_PREFIX + cookieName;
+    }
+}
@@ -0,0 +1,124 @@
+package thespeace.springmvc2.account.web.session;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.ChaCha20ParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * <h1>세션 id 생성기</h1>
+ * {@code UUID.randomUUID()}는 JVM 전체가 공유하는 SecureRandom 하나를 사용한다. 로그인이 몰리면 스레드들이 그 SecureRandom 에서 대기한다.
+ * <ul>
+ *     <li>스레드마다 ChaCha20 키 스트림으로 난수 버퍼를 {@value #BUFFER_BYTES}byte 씩 한 번에 채우고, 버퍼를 다 쓸 때까지 잠금 없이 꺼내 쓴다.</li>
+ *     <li>스레드의 첫 키만 공유 SecureRandom 의 nextBytes 로 받는다. generateSeed 는 /dev/random 을 읽어서 멈출 수 있으므로 사용하지 않는다.</li>
+ *     <li>버퍼를 채울 때마다 키 스트림의 앞 32byte 를 다음 키로 쓰고 이전 키는 버린다.(fast key erasure)
+ *     메모리가 노출되어도 이미 발급한 id 를 거꾸로 계산할 수 없다.</li>
+ *     <li>{@value #RESEED_INTERVAL}번 채울 때마다 SecureRandom 에서 새 값을 받아 키에 섞는다.</li>
+ *     <li>id 는 {@value #ID_BYTES}byte({@value #ID_BYTES}x8 bit) 난수를 Base64Url 로 바로 인코딩한 {@value #ID_LENGTH}자 문자열이다. 쿠키 값에 그대로 쓸 수 있다.</li>
+ * </ul>
+ */
+final class SessionIdGenerator {
+
+    static final int ID_BYTES = 16;
+    static final int ID_LENGTH = 22; //ceil(16 * 8 / 6), 패딩 없음
+
+    private static final int KEY_BYTES = 32;
+    private static final int BUFFER_BYTES = 4096;
+    private static final int RESEED_INTERVAL = 1024;
+    private static final byte[] ZEROS = new byte[BUFFER_BYTES];
+    private static final byte[] NONCE = new byte[12]; //버퍼마다 키가 바뀌므로 nonce 는 고정해도 재사용되지 않는다.
+    private static final byte[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private final SecureRandom seedSource;
+    private final ThreadLocal<KeyStream> streams;
+
+    SessionIdGenerator() {
+        this(new SecureRandom());
+    }
+
+    SessionIdGenerator(SecureRandom seedSource) {
+        this.seedSource = seedSource;
+        this.streams = ThreadLocal.withInitial(this::newStream);
+    }
+
+    String next() {
+        KeyStream stream = streams.get();
+        byte[] random = stream.buffer;
+        int p = stream.take();
+
+        //3byte 씩 4글자로 인코딩, 마지막 1byte 는 2글자
+        byte[] id = new byte[ID_LENGTH];
+        int i = 0;
+        for (int end = p + 15; p < end; p += 3) {
+            int bits = (random[p] & 0xff) << 16 | (random[p + 1] & 0xff) << 8 | (random[p + 2] & 0xff);
+            id[i++] = ALPHABET[bits >>> 18];
+            id[i++] = ALPHABET[(bits >>> 12) & 0x3f];
+            id[i++] = ALPHABET[(bits >>> 6) & 0x3f];
+            id[i++] = ALPHABET[bits & 0x3f];
+        }
+        int last = random[p] & 0xff;
+        id[i++] = ALPHABET[last >>> 2];
+        id[i] = ALPHABET[(last & 0x03) << 4];
+        Arrays.fill(random, p - 15, p + 1, (byte) 0); //사용한 난수는 지운다.
+        return new String(id, StandardCharsets.ISO_8859_1);
+    }
+
+    private KeyStream newStream() {
+        byte[] key = new byte[KEY_BYTES];
+        seedSource.nextBytes(key);
+        return new KeyStream(key);
+    }
+
+    private final class KeyStream {
+
+        private final Cipher cipher;
+        private final byte[] key;
+        private final byte[] buffer = new byte[BUFFER_BYTES];
+        private int position = BUFFER_BYTES;
+        private int refills;
+
+        private KeyStream(byte[] key) {
+            this.key = key;
+            try {
+                this.cipher = Cipher.getInstance("ChaCha20");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("ChaCha20 is not available", e);
+            }
+        }
+
+        /**
+         * 다음 id 의 난수 시작 위치를 반환한다. 남은 난수가 부족하면 버퍼를 다시 채운다.
+         */
+        private int take() {
+            if (position + ID_BYTES > BUFFER_BYTES) {
+                refill();
+            }
+            int start = position;
+            position += ID_BYTES;
+            return start;
+        }
+
+        private void refill() {
+            if (++refills % RESEED_INTERVAL == 0) {
+                byte[] fresh = new byte[KEY_BYTES];
+                seedSource.nextBytes(fresh);
+                for (int i = 0; i < KEY_BYTES; i++) {
+                    key[i] ^= fresh[i];
+                }
+            }
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "ChaCha20"), new ChaCha20ParameterSpec(NONCE, 1));
+                cipher.doFinal(ZEROS, 0, BUFFER_BYTES, buffer, 0); //0 을 암호화하면 키 스트림 그대로
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("failed to generate session id", e);
+            }
+            System.arraycopy(buffer, 0, key, 0, KEY_BYTES);
+            Arrays.fill(buffer, 0, KEY_BYTES, (byte) 0);
+            position = KEY_BYTES;
+        }
+    }
+}
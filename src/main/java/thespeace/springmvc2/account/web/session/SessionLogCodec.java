@@ -0,0 +1,140 @@
+package thespeace.springmvc2.account.web.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * <h2>세션 로그 레코드 인코딩/디코딩</h2>
+ * <blockquote><pre>
+ *     PUT    : [length:4][crc32c:4][type:1][idLength:2][id][createdAt:8][lastAccessedAt:8][valueLength:4][value]
+ *     ACCESS : [length:4][crc32c:4][type:1][idLength:2][id][lastAccessedAt:8]
+ *     REMOVE : [length:4][crc32c:4][type:1][idLength:2][id]
+ * </pre></blockquote>
+ * <ul>
+ *     <li>value 는 자바 직렬화 바이트다. 읽을 때는 이 애플리케이션과 java.lang, java.util 클래스만 허용한다.</li>
+ *     <li>length, crc 가 맞지 않는 레코드(기록 도중 장애로 잘린 레코드)를 만나면 그 위치에서 재생을 멈춘다.</li>
+ * </ul>
+ */
+final class SessionLogCodec {
+
+    static final byte PUT = 1;
+    static final byte ACCESS = 2;
+    static final byte REMOVE = 3;
+
+    private static final int HEADER_SIZE = 8;
+    private static final ObjectInputFilter VALUE_FILTER =
+            ObjectInputFilter.Config.createFilter("thespeace.springmvc2.**;java.lang.*;java.util.*;!*");
+
+    private SessionLogCodec() {
+    }
+
+    static int maxSize(String id, byte[] value) {
+        return HEADER_SIZE + 1 + 2 + id.length() * 3 + 8 + 8 + 4 + (value == null ? 0 : value.length);
+    }
+
+    static void encode(ByteBuffer buffer, byte type, String id, long createdAt, long lastAccessedAt, byte[] value) {
+        int start = buffer.position();
+        int bodyStart = start + HEADER_SIZE;
+        buffer.position(bodyStart);
+        buffer.put(type);
+        byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) idBytes.length);
+        buffer.put(idBytes);
+        if (type == PUT) {
+            buffer.putLong(createdAt);
+            buffer.putLong(lastAccessedAt);
+            buffer.putInt(value.length);
+            buffer.put(value);
+        } else if (type == ACCESS) {
+            buffer.putLong(lastAccessedAt);
+        }
+        int end = buffer.position();
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(bodyStart).limit(end));
+        buffer.putInt(start, end - bodyStart);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * 레코드를 순서대로 읽어 sessions 에 반영한다. 같은 세션의 마지막 상태만 남는다.
+     *
+     * @return 온전하게 읽은 바이트 수, 이 위치 이후는 잘린 레코드이다.
+     */
+    static int replay(ByteBuffer data, Map<String, Entry> sessions) {
+        CRC32C crc = new CRC32C();
+        while (data.remaining() >= HEADER_SIZE) {
+            int recordStart = data.position();
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length <= 0 || length > data.remaining()) {
+                return recordStart;
+            }
+
+            int bodyStart = data.position();
+            crc.reset();
+            crc.update(data.duplicate().limit(bodyStart + length));
+            if ((int) crc.getValue() != checksum) {
+                return recordStart;
+            }
+
+            apply(data, sessions);
+            data.position(bodyStart + length);
+        }
+        return data.position();
+    }
+
+    /**
+     * @return 직렬화할 수 없는 값이면 null
+     */
+    static byte[] serialize(Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (NotSerializableException e) {
+            return null;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Object deserialize(byte[] value) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(value))) {
+            in.setObjectInputFilter(VALUE_FILTER);
+            return in.readObject();
+        }
+    }
+
+    private static void apply(ByteBuffer body, Map<String, Entry> sessions) {
+        byte type = body.get();
+        byte[] idBytes = new byte[body.getShort()];
+        body.get(idBytes);
+        String id = new String(idBytes, StandardCharsets.UTF_8);
+
+        if (type == PUT) {
+            long createdAt = body.getLong();
+            long lastAccessedAt = body.getLong();
+            byte[] value = new byte[body.getInt()];
+            body.get(value);
+            sessions.put(id, new Entry(createdAt, lastAccessedAt, value));
+        } else if (type == ACCESS) {
+            long lastAccessedAt = body.getLong();
+            sessions.computeIfPresent(id, (key, entry) -> new Entry(entry.createdAt(), lastAccessedAt, entry.value()));
+        } else {
+            sessions.remove(id);
+        }
+    }
+
+    record Entry(long createdAt, long lastAccessedAt, byte[] value) {
+    }
+}
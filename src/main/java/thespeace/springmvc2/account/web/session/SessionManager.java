@@ -1,14 +1,32 @@
 package thespeace.springmvc2.account.web.session;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import thespeace.springmvc2.account.domain.member.Member;
 
-import java.util.Arrays;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 /**
  * <h1>세션 관리</h1>
@@ -22,12 +40,121 @@ import java.util.concurrent.ConcurrentHashMap;
  *         제거하면 된다.</li>
  * </ul>
  *
+ * <h2>세션 만료</h2>
+ * 로그아웃하지 않고 떠난 사용자의 세션도 메모리에서 제거되어야 한다.
+ * <ul>
+ *     <li>idle timeout : 마지막 조회 후 이 시간 동안 사용하지 않으면 만료 (sliding)</li>
+ *     <li>max lifetime : 계속 사용하더라도 생성 후 이 시간이 지나면 만료 (absolute)</li>
+ *     <li>만료 시각은 {@link TimingWheel}에 등록한다. 주기적으로 휠에서 만료 시각이 된 세션만 꺼내므로 세션 저장소 전체를 스캔하지 않는다.</li>
+ *     <li>getSession 은 마지막 조회 시각만 기록하고 휠은 건드리지 않는다. 휠에서 꺼낸 세션이 그 사이 사용되었으면 새 만료 시각으로 다시 등록한다.</li>
+ *     <li>휠이 처리하기 전이라도 만료 시각이 지난 세션은 getSession 에서 조회되지 않는다.</li>
+ * </ul>
+ *
+ * <h2>메모리 예산</h2>
+ * 세션 수와 보관한 값의 크기에 제한이 없으면 만료 전에 메모리가 부족해질 수 있다.
+ * <ul>
+ *     <li>세션마다 {@link SessionSizeEstimator}로 추정한 크기를 기록하고, 전체 합(resident bytes)을 관리한다.</li>
+ *     <li>합이 maxBytes 를 넘으면 최근에 사용하지 않은 세션부터 제거한다. 근사 LRU({@link ClockSegment})를 사용해서 조회 경로에 전역 락이 없다.</li>
+ *     <li>제거(evict)된 세션은 로그아웃된 것과 같다. 제거 횟수가 계속 늘어나면 예산을 늘리거나 세션에 보관하는 값을 줄여야 한다.</li>
+ * </ul>
+ *
+ * <h2>토큰 모드</h2>
+ * account.session.mode=token 이면 서버에 세션을 보관하지 않는다.
+ * <ul>
+ *     <li>createSession 은 회원 정보를 담아 서명한 토큰({@link SessionTokenCodec})을 세션 쿠키 값으로 사용한다.</li>
+ *     <li>getSession 은 저장소를 조회하지 않고 토큰을 검증해서 회원 정보를 반환한다. 어느 서버에서도 같은 결과다.</li>
+ *     <li>세션 메모리를 사용하지 않는 대신 로그아웃해도 토큰은 만료 시각까지 유효하다. 로그아웃은 쿠키를 지운다.</li>
+ * </ul>
  */
+@Slf4j
 @Component
 public class SessionManager {
 
     public static final String SESSION_COOKIE_NAME = "mySessionId";
-    private Map<String, Object> sessionStore = new ConcurrentHashMap<>(); //HashMap 은 동시 요청에 안전하지 않다. 동시 요청에 안전한 ConcurrentHashMap 를 사용!
+    private static final long TICK_MILLIS = 1000;
+    private static final int SEGMENTS = 16;
+
+    private final Map<String, ManagedSession> sessionStore = new ConcurrentHashMap<>(); //HashMap 은 동시 요청에 안전하지 않다. 동시 요청에 안전한 ConcurrentHashMap 를 사용!
+    private final SessionIdGenerator idGenerator = new SessionIdGenerator();
+    private final TimingWheel<ManagedSession> timingWheel;
+    private final ClockSegment[] segments = new ClockSegment[SEGMENTS];
+    private final AtomicInteger evictionHand = new AtomicInteger();
+    private final long idleTimeoutMillis;
+    private final long maxLifetimeMillis;
+    private final long maxBytes;
+    private final LongSupplier clock;
+    private final SessionTokenCodec tokenCodec; //null 이면 저장소 모드
+    private final List<SessionChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong residentBytes = new AtomicLong();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private ScheduledExecutorService ticker;
+
+    public SessionManager() {
+        this(Duration.ofMinutes(30), Duration.ofHours(12), 64L * 1024 * 1024, System::currentTimeMillis);
+    }
+
+    /**
+     * @param idleTimeoutSeconds 마지막 조회 후 만료까지의 시간
+     * @param maxLifetimeSeconds 생성 후 만료까지의 최대 시간
+     * @param maxBytes           세션 저장소 메모리 예산(추정 크기의 합), 0 이하면 제한하지 않는다.
+     * @param mode               store(서버에 보관) || token(서명된 토큰)
+     * @param tokenSecret        토큰 서명 키, 비어 있으면 시작할 때 임의로 만든다.(재시작하거나 다른 서버에서는 검증 실패)
+     */
+    @Autowired
+    public SessionManager(@Value("${account.session.idle-timeout:1800}") long idleTimeoutSeconds,
+                          @Value("${account.session.max-lifetime:43200}") long maxLifetimeSeconds,
+                          @Value("${account.session.max-bytes:67108864}") long maxBytes,
+                          @Value("${account.session.mode:store}") String mode,
+                          @Value("${account.session.token-secret:}") String tokenSecret,
+                          @Value("${account.session.token-cache-seconds:30}") long tokenCacheSeconds) {
+        this(Duration.ofSeconds(idleTimeoutSeconds), Duration.ofSeconds(maxLifetimeSeconds), maxBytes,
+                "token".equals(mode) ? newTokenCodec(tokenSecret, Duration.ofSeconds(idleTimeoutSeconds), Duration.ofSeconds(tokenCacheSeconds)) : null,
+                System::currentTimeMillis);
+    }
+
+    SessionManager(Duration idleTimeout, Duration maxLifetime, long maxBytes, LongSupplier clock) {
+        this(idleTimeout, maxLifetime, maxBytes, null, clock);
+    }
+
+    /**
+     * @param tokenCodec null 이 아니면 토큰 모드
+     * @param clock      현재 시각(ms), 테스트에서 시간을 직접 움직일 때 사용
+     */
+    SessionManager(Duration idleTimeout, Duration maxLifetime, long maxBytes, SessionTokenCodec tokenCodec, LongSupplier clock) {
+        this.tokenCodec = tokenCodec;
+        this.idleTimeoutMillis = idleTimeout.toMillis();
+        this.maxLifetimeMillis = maxLifetime.toMillis();
+        this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+        this.clock = clock;
+        this.timingWheel = new TimingWheel<>(TICK_MILLIS, clock.getAsLong());
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new ClockSegment();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (isTokenMode()) {
+            log.info("session mode=token, ttl={}ms", idleTimeoutMillis);
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::expireSessions, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        log.info("session idleTimeout={}ms, maxLifetime={}ms, maxBytes={}", idleTimeoutMillis, maxLifetimeMillis, maxBytes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
 
     /**
      * <h2>세션 생성</h2>
@@ -35,13 +162,34 @@ public class SessionManager {
      *     <li>sessionId 생성 (임의의 추정 불가능한 랜덤 값)</li>
      *     <li>세션 저장소에 sessionId와 보관할 값 저장</li>
      *     <li>sessionId로 응답 쿠키를 생성해서 클라이언트에 전달</li>
+     *     <li>만료 시각을 타이밍 휠에 등록</li>
+     *     <li>메모리 예산을 넘으면 최근에 사용하지 않은 세션 제거</li>
      * </ul>
+     * 토큰 모드에서는 회원 정보를 담은 토큰을 쿠키로 전달한다. value 는 {@link Member}여야 한다.
      */
     public void createSession(Object value, HttpServletResponse response) {
+        if (isTokenMode()) {
+            if (!(value instanceof Member member)) {
+                throw new IllegalArgumentException("token session supports Member only: " + value);
+            }
+            Cookie tokenCookie = new Cookie(SESSION_COOKIE_NAME, tokenCodec.issue(member));
+            tokenCookie.setHttpOnly(true); //토큰이 스크립트로 유출되지 않도록
+            response.addCookie(tokenCookie);
+            return;
+        }
 
         //세션 id를 생성하고, 값을 세션에 저장
-        String sessionId = UUID.randomUUID().toString(); //UUID는 추정이 불가능, 중복확률이 극히 낮다.
-        sessionStore.put(sessionId, value);
+        String sessionId = idGenerator.next(); //128bit 난수, 추정이 불가능하고 중복확률이 극히 낮다.
+        ManagedSession session = new ManagedSession(sessionId, value, clock.getAsLong(), SessionSizeEstimator.estimate(value));
+        sessionStore.put(sessionId, session);
+        segmentOf(session).add(session);
+        schedule(session, deadline(session));
+        for (SessionChangeListener listener : listeners) {
+            listener.onCreate(session);
+        }
+        if (residentBytes.addAndGet(session.bytes) > maxBytes) {
+            evict(session);
+        }
 
         //쿠키 생성
         Cookie mySessionCookie = new Cookie(SESSION_COOKIE_NAME, sessionId);
@@ -50,36 +198,239 @@ public class SessionManager {
 
     /**
      * <h2>세션 조회</h2>
-     * 클라이언트가 요청한 sessionId 쿠키의 값으로, 세션 저장소에 보관한 값 조회
+     * 클라이언트가 요청한 sessionId 쿠키의 값으로, 세션 저장소에 보관한 값 조회<br>
+     * 만료 시각이 지난 세션은 제거하고 null 을 반환한다. 조회한 세션은 마지막 조회 시각만 갱신한다.<br>
+     * 토큰 모드에서는 토큰을 검증해서 회원 정보를 반환한다.
      */
     public Object getSession(HttpServletRequest request) {
-        Cookie sessionCookie = findCookie(request, SESSION_COOKIE_NAME);
-        if(sessionCookie == null) {
+        String sessionId = SessionCookieReader.find(request, SESSION_COOKIE_NAME);
+        if(sessionId == null) {
             return null;
         }
-        return sessionStore.get(sessionCookie.getValue());
+        if (isTokenMode()) {
+            return tokenCodec.verify(sessionId);
+        }
+        ManagedSession session = sessionStore.get(sessionId);
+        if (session == null) {
+            return null;
+        }
+
+        long now = clock.getAsLong();
+        if (deadline(session) <= now) {
+            if (remove(session)) {
+                expired.increment();
+            }
+            return null;
+        }
+        if (session.touch(now, TICK_MILLIS)) {
+            for (SessionChangeListener listener : listeners) {
+                listener.onAccess(session);
+            }
+        }
+        return session.value;
     }
 
     /**
      * <h2>세션 만료</h2>
-     * 클라이언트가 요청한 sessionId 쿠키의 값으로, 세션 저장소에 보관한 sessionId와 값 제거
+     * 클라이언트가 요청한 sessionId 쿠키의 값으로, 세션 저장소에 보관한 sessionId와 값 제거<br>
+     * 타이밍 휠에 등록한 만료 항목도 함께 취소한다.
      */
     public void expire(HttpServletRequest request) {
-        Cookie sessionCookie = findCookie(request, SESSION_COOKIE_NAME);
-        if(sessionCookie != null) {
-            sessionStore.remove(sessionCookie.getValue());
+        String sessionId = SessionCookieReader.find(request, SESSION_COOKIE_NAME);
+        if (sessionId != null && isTokenMode()) {
+            tokenCodec.evict(sessionId);
+            return;
+        }
+        if(sessionId != null) {
+            ManagedSession session = sessionStore.get(sessionId);
+            if (session != null) {
+                remove(session);
+            }
+        }
+    }
+
+    /**
+     * 세션을 만료하고 세션 쿠키도 지운다. 토큰 모드에서는 서버에 지울 세션이 없으므로 쿠키를 지우는 것이 로그아웃이다.
+     */
+    public void expire(HttpServletRequest request, HttpServletResponse response) {
+        expire(request);
+        Cookie cookie = new Cookie(SESSION_COOKIE_NAME, null);
+        cookie.setMaxAge(0);
+        response.addCookie(cookie);
+    }
+
+    /**
+     * <h2>저장된 세션 복원</h2>
+     * 재시작 전에 저장한 세션을 다시 등록한다. 이미 만료된 세션은 등록하지 않는다. 변경 알림은 호출하지 않는다.<br>
+     * 여러 스레드에서 동시에 호출해도 된다.
+     *
+     * @return 등록했으면 true
+     */
+    boolean restore(String sessionId, Object value, long createdAt, long lastAccessedAt) {
+        ManagedSession session = new ManagedSession(sessionId, value, createdAt, lastAccessedAt, SessionSizeEstimator.estimate(value));
+        if (deadline(session) <= clock.getAsLong() || sessionStore.putIfAbsent(sessionId, session) != null) {
+            return false;
+        }
+        segmentOf(session).add(session);
+        schedule(session, deadline(session));
+        if (residentBytes.addAndGet(session.bytes) > maxBytes) {
+            evict(session);
+        }
+        return true;
+    }
+
+    boolean contains(ManagedSession session) {
+        return sessionStore.get(session.id) == session;
+    }
+
+    void forEachSession(Consumer<ManagedSession> action) {
+        sessionStore.values().forEach(action);
+    }
+
+    void addListener(SessionChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(SessionChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isTokenMode() {
+        return tokenCodec != null;
+    }
+
+    /**
+     * <h2>만료 세션 제거</h2>
+     * 타이밍 휠에서 만료 시각이 된 세션만 꺼내서 제거한다. 그 사이 사용된 세션은 새 만료 시각으로 다시 등록한다.<br>
+     * {@link #start()}에서 1초마다 실행한다.
+     */
+    public void expireSessions() {
+        long now = clock.getAsLong();
+        for (ManagedSession session : timingWheel.advance(now)) {
+            if (sessionStore.get(session.id) != session) {
+                continue; //이미 만료(로그아웃, 제거)된 세션
+            }
+            long deadline = deadline(session);
+            if (deadline <= now) {
+                if (remove(session)) {
+                    expired.increment();
+                }
+            } else {
+                schedule(session, deadline);
+            }
         }
     }
 
+    public int size() {
+        return sessionStore.size();
+    }
 
+    /**
+     * 타이밍 휠에 등록된 항목 수, 제거된 세션의 항목은 취소되므로 보관 중인 세션 수와 같아야 한다.
+     */
+    int scheduledSize() {
+        return timingWheel.size();
+    }
+
+    public Metrics metrics() {
+        return new Metrics(sessionStore.size(), residentBytes.get(), maxBytes == Long.MAX_VALUE ? 0 : maxBytes,
+                expired.sum(), evictions.sum());
+    }
+
+    /**
+     * 쿠키 값만 필요하면 {@link SessionCookieReader#find}를 사용한다. Cookie 배열을 만들지 않는다.
+     */
     public Cookie findCookie(HttpServletRequest request, String cookieName) {
         if(request.getCookies() == null) {
             return null;
         }
-        return Arrays.stream(request.getCookies())
-                .filter(cookie -> cookie.getName().equals(cookieName))
-                .findAny()
-                .orElse(null);
+        for (Cookie cookie : request.getCookies()) {
+            if (cookie.getName().equals(cookieName)) {
+                return cookie;
+            }
+        }
+        return null;
     }
 
+    /**
+     * <h2>메모리 예산 초과 시 제거</h2>
+     * 구간을 돌아가며 시계 바늘이 고른 세션을 제거한다. 여러 요청이 동시에 제거해도 서로 다른 구간을 맡는다.<br>
+     * 방금 만든 세션은 제거하지 않는다. 제거할 세션이 없으면(예산보다 큰 세션 하나) 더 제거하지 않는다.
+     */
+    private void evict(ManagedSession created) {
+        int emptySegments = 0;
+        while (residentBytes.get() > maxBytes && emptySegments < SEGMENTS) {
+            ClockSegment segment = segments[(evictionHand.getAndIncrement() & Integer.MAX_VALUE) % SEGMENTS];
+            ManagedSession victim = segment.nextVictim(created);
+            if (victim == null) {
+                emptySegments++;
+                continue;
+            }
+            emptySegments = 0;
+            if (remove(victim)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 저장소, 교체 구간, 타이밍 휠에서 제거하고 크기를 뺀다.<br>
+     * 휠의 항목을 취소하지 않으면 제거한 세션(값 포함)이 만료 시각까지 휠에 남아서, 만료 전에 제거되는 세션이 많을수록 메모리가 계속 늘어난다.
+     *
+     * @return 이 호출이 제거했으면 true, 이미 다른 경로로 제거된 세션이면 false
+     */
+    private boolean remove(ManagedSession session) {
+        if (!sessionStore.remove(session.id, session)) {
+            return false;
+        }
+        segmentOf(session).remove(session);
+        TimingWheel.Timer<ManagedSession> timer = session.timer;
+        if (timer != null) {
+            timingWheel.cancel(timer);
+        }
+        residentBytes.addAndGet(-session.bytes);
+        for (SessionChangeListener listener : listeners) {
+            listener.onRemove(session);
+        }
+        return true;
+    }
+
+    private static SessionTokenCodec newTokenCodec(String secret, Duration ttl, Duration cacheTtl) {
+        byte[] key;
+        if (StringUtils.hasText(secret)) {
+            key = secret.getBytes(StandardCharsets.UTF_8);
+        } else {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+            log.warn("account.session.token-secret is empty, tokens are valid only on this server until restart");
+        }
+        return new SessionTokenCodec(key, ttl, cacheTtl, System::currentTimeMillis);
+    }
+
+    /**
+     * 타이밍 휠에 등록한다. 등록하는 사이 다른 스레드가 세션을 제거했으면(제거할 때는 아직 이 항목이 없었다) 바로 취소한다.
+     */
+    private void schedule(ManagedSession session, long deadline) {
+        session.timer = timingWheel.schedule(session, deadline);
+        if (sessionStore.get(session.id) != session) {
+            timingWheel.cancel(session.timer);
+        }
+    }
+
+    private ClockSegment segmentOf(ManagedSession session) {
+        return segments[(session.id.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+    }
+
+    private long deadline(ManagedSession session) {
+        return session.deadline(idleTimeoutMillis, maxLifetimeMillis);
+    }
+
+    /**
+     * @param residentBytes 보관 중인 세션의 추정 크기 합
+     * @param maxBytes      메모리 예산, 0 이면 제한 없음
+     * @param expired       시간이 지나 만료된 세션 수
+     * @param evictions     메모리 예산을 넘어서 제거된 세션 수
+     */
+    public record Metrics(int sessions, long residentBytes, long maxBytes, long expired, long evictions) {
+    }
 }
@@ -0,0 +1,355 @@
+package thespeace.springmvc2.account.web.session;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * <h1>세션 영속화</h1>
+ * {@code account.session.persistence.enabled=true} 일 때만 등록된다. {@link SessionManager}의 세션은 메모리에만 있으므로
+ * 배포(재시작)할 때마다 모든 사용자가 다시 로그인해야 하고, 로그인 요청이 한꺼번에 몰린다.
+ *
+ * <h2>기록</h2>
+ * <ul>
+ *     <li>세션은 id 해시로 N개의 샤드로 나누고, 샤드마다 {@code sessions-<샤드>.log} 파일에 레코드를 추가한다.</li>
+ *     <li>요청 스레드는 샤드의 dirty 맵에 세션을 표시만 하고 바로 반환한다. 파일 I/O, 직렬화는 요청 경로에 없다.</li>
+ *     <li>전용 스레드가 flush-interval 마다 dirty 세션을 샤드별로 모아 한 번에 쓰고 fsync 한다.(배치)
+ *         같은 세션이 그 사이 여러 번 바뀌어도 마지막 상태만 한 번 기록한다.</li>
+ *     <li>처음 기록하는 세션은 값 전체(PUT), 이후 사용 시각만 바뀐 세션은 ACCESS 레코드만 기록한다.</li>
+ *     <li>장애 시 아직 기록하지 않은 마지막 배치는 유실될 수 있다. 유실된 세션은 다시 로그인하면 된다.</li>
+ * </ul>
+ *
+ * <h2>정리와 복원</h2>
+ * <ul>
+ *     <li>샤드 파일이 compact-size 를 넘으면 현재 살아 있는 세션만으로 다시 쓰고 원자적으로 교체한다.</li>
+ *     <li>기동 시 모든 샤드 파일을 병렬로 읽어 만료되지 않은 세션을 복원하고, 샤드 파일을 복원한 상태로 다시 쓴다.</li>
+ * </ul>
+ * 토큰 모드에서는 서버에 세션이 없으므로 동작하지 않는다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "account.session.persistence.enabled", havingValue = "true")
+public class SessionPersistence implements SessionChangeListener {
+
+    private static final String SHARD_PREFIX = "sessions-";
+    private static final String SHARD_SUFFIX = ".log";
+    private static final ManagedSession REMOVED = new ManagedSession("", null, 0L, 0L);
+
+    private final SessionManager sessionManager;
+    private final Path directory;
+    private final int shardCount;
+    private final long flushIntervalMillis;
+    private final long compactSize;
+
+    private final Shard[] shards;
+    private final LongAdder writtenRecords = new LongAdder();
+    private ByteBuffer buffer = ByteBuffer.allocate(1 << 16); //쓰기 스레드에서만 사용
+    private ScheduledExecutorService flusher;
+
+    public SessionPersistence(SessionManager sessionManager,
+                              @Value("${account.session.persistence.dir:./data/sessions}") String directory,
+                              @Value("${account.session.persistence.shards:16}") int shardCount,
+                              @Value("${account.session.persistence.flush-interval-millis:1000}") long flushIntervalMillis,
+                              @Value("${account.session.persistence.compact-size:8388608}") long compactSize) {
+        this.sessionManager = sessionManager;
+        this.directory = Path.of(directory);
+        this.shardCount = shardCount;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.compactSize = compactSize;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(this.directory.resolve(SHARD_PREFIX + i + SHARD_SUFFIX));
+        }
+    }
+
+    @PostConstruct
+    public void start() throws IOException, InterruptedException {
+        if (sessionManager.isTokenMode()) {
+            log.info("session persistence is not used in token mode");
+            return;
+        }
+        Files.createDirectories(directory);
+
+        long startTime = System.nanoTime();
+        int restored = load();
+        log.info("session persistence restored sessions={}, shards={}, elapsed={}ms",
+                restored, shardCount, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+        sessionManager.addListener(this);
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (flusher == null) {
+            return;
+        }
+        sessionManager.removeListener(this);
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flush(); //남은 dirty 세션 기록
+        for (Shard shard : shards) {
+            shard.channel.close();
+        }
+    }
+
+    @Override
+    public void onCreate(ManagedSession session) {
+        shardOf(session.id).dirty.put(session.id, session);
+    }
+
+    @Override
+    public void onAccess(ManagedSession session) {
+        shardOf(session.id).dirty.put(session.id, session);
+    }
+
+    @Override
+    public void onRemove(ManagedSession session) {
+        shardOf(session.id).dirty.put(session.id, REMOVED);
+    }
+
+    public long writtenRecords() {
+        return writtenRecords.sum();
+    }
+
+    /**
+     * 쓰기 스레드에서 실행한다. 한 샤드의 기록이 실패해도 다른 샤드는 계속 기록한다.
+     */
+    void flush() {
+        for (Shard shard : shards) {
+            try {
+                flush(shard);
+            } catch (IOException | RuntimeException e) {
+                log.error("session flush failed path={}", shard.path, e);
+            }
+        }
+    }
+
+    private void flush(Shard shard) throws IOException {
+        if (shard.dirty.isEmpty()) {
+            return;
+        }
+
+        buffer.clear();
+        int records = 0;
+        for (Iterator<Map.Entry<String, ManagedSession>> it = shard.dirty.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, ManagedSession> entry = it.next();
+            String id = entry.getKey();
+            ManagedSession session = entry.getValue();
+            shard.dirty.remove(id, session); //그 사이 다시 바뀌었으면 다음 배치에서 기록
+
+            if (session == REMOVED || !sessionManager.contains(session)) {
+                write(shard, SessionLogCodec.REMOVE, id, 0L, 0L, null);
+            } else if (session.persisted) {
+                write(shard, SessionLogCodec.ACCESS, id, 0L, session.lastAccessedAt, null);
+            } else {
+                byte[] value = SessionLogCodec.serialize(session.value);
+                if (value == null) {
+                    log.warn("session value is not serializable, sessionId={}, type={}", id, session.value.getClass().getName());
+                    continue;
+                }
+                write(shard, SessionLogCodec.PUT, id, session.createdAt, session.lastAccessedAt, value);
+                session.persisted = true;
+            }
+            records++;
+        }
+        writeBuffer(shard.channel);
+        shard.channel.force(false);
+        writtenRecords.add(records);
+
+        if (shard.channel.size() >= Math.max(compactSize, shard.compactedSize * 2)) {
+            compact(List.of(shard), Map.of());
+        }
+    }
+
+    /**
+     * <h2>샤드 파일 정리</h2>
+     * 현재 살아 있는 세션만 임시 파일에 PUT 으로 기록하고 원자적으로 교체한다.<br>
+     * 정리하는 동안 바뀐 세션은 dirty 맵에 남아 교체된 파일 뒤에 추가된다. PUT 은 세션 전체 값이므로 다시 적용해도 결과가 같다.
+     *
+     * @param serialized 이미 직렬화한 값(세션 id 별), 복원 직후에는 파일에서 읽은 값을 그대로 쓴다.
+     */
+    private void compact(List<Shard> targets, Map<String, byte[]> serialized) throws IOException {
+        Map<Shard, List<ManagedSession>> live = new HashMap<>();
+        for (Shard shard : targets) {
+            live.put(shard, new ArrayList<>());
+        }
+        sessionManager.forEachSession(session -> {
+            List<ManagedSession> sessions = live.get(shardOf(session.id));
+            if (sessions != null) {
+                sessions.add(session);
+            }
+        });
+
+        for (Shard shard : targets) {
+            Path temp = shard.path.resolveSibling(shard.path.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                buffer.clear();
+                for (ManagedSession session : live.get(shard)) {
+                    byte[] value = serialized.get(session.id);
+                    if (value == null) {
+                        value = SessionLogCodec.serialize(session.value);
+                    }
+                    if (value != null) {
+                        write(channel, SessionLogCodec.PUT, session.id, session.createdAt, session.lastAccessedAt, value);
+                        session.persisted = true;
+                    }
+                }
+                writeBuffer(channel);
+                channel.force(true);
+                shard.compactedSize = channel.size();
+            }
+            if (shard.channel != null) {
+                shard.channel.close();
+            }
+            Files.move(temp, shard.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            shard.channel = FileChannel.open(shard.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * <h2>병렬 복원</h2>
+     * 샤드 파일마다 한 스레드가 읽고 복원한다. 샤드 수를 바꿨을 수 있으므로 디렉토리의 모든 샤드 파일을 읽는다.<br>
+     * 복원이 끝나면 현재 샤드 수로 파일을 다시 쓰고, 남은 이전 샤드 파일은 삭제한다.
+     */
+    private int load() throws IOException, InterruptedException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SHARD_PREFIX) && name.endsWith(SHARD_SUFFIX);
+                    })
+                    .toList();
+        }
+
+        int restored = 0;
+        Map<String, byte[]> serialized = new ConcurrentHashMap<>();
+        if (!files.isEmpty()) {
+            ExecutorService loader = Executors.newFixedThreadPool(Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+            try {
+                List<Future<Integer>> results = new ArrayList<>();
+                for (Path file : files) {
+                    results.add(loader.submit((Callable<Integer>) () -> loadShard(file, serialized)));
+                }
+                for (Future<Integer> result : results) {
+                    restored += result.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IOException("session restore failed", e.getCause());
+            } finally {
+                loader.shutdown();
+            }
+        }
+
+        compact(List.of(shards), serialized);
+        for (Path file : files) {
+            if (Files.exists(file) && !isShardFile(file)) {
+                Files.delete(file);
+            }
+        }
+        return restored;
+    }
+
+    private int loadShard(Path file, Map<String, byte[]> serialized) throws IOException {
+        Map<String, SessionLogCodec.Entry> sessions = new HashMap<>();
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+        int validLength = SessionLogCodec.replay(data, sessions);
+        if (validLength < data.capacity()) {
+            log.warn("session log has torn records path={}, size={}, valid={}", file, data.capacity(), validLength);
+        }
+
+        int restored = 0;
+        for (Map.Entry<String, SessionLogCodec.Entry> entry : sessions.entrySet()) {
+            SessionLogCodec.Entry session = entry.getValue();
+            try {
+                Object value = SessionLogCodec.deserialize(session.value());
+                if (sessionManager.restore(entry.getKey(), value, session.createdAt(), session.lastAccessedAt())) {
+                    serialized.put(entry.getKey(), session.value());
+                    restored++;
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                log.warn("session value cannot be restored, sessionId={}", entry.getKey(), e);
+            }
+        }
+        return restored;
+    }
+
+    private boolean isShardFile(Path file) {
+        for (Shard shard : shards) {
+            if (shard.path.equals(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void write(Shard shard, byte type, String id, long createdAt, long lastAccessedAt, byte[] value) throws IOException {
+        write(shard.channel, type, id, createdAt, lastAccessedAt, value);
+    }
+
+    private void write(FileChannel channel, byte type, String id, long createdAt, long lastAccessedAt, byte[] value) throws IOException {
+        int maxSize = SessionLogCodec.maxSize(id, value);
+        if (buffer.remaining() < maxSize) {
+            writeBuffer(channel);
+            if (buffer.capacity() < maxSize) {
+                buffer = ByteBuffer.allocate(maxSize);
+            }
+        }
+        SessionLogCodec.encode(buffer, type, id, createdAt, lastAccessedAt, value);
+    }
+
+    private void writeBuffer(FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private Shard shardOf(String sessionId) {
+        return shards[(sessionId.hashCode() & Integer.MAX_VALUE) % shardCount];
+    }
+
+    private static final class Shard {
+
+        private final Path path;
+        private final Map<String, ManagedSession> dirty = new ConcurrentHashMap<>();
+        private FileChannel channel; //쓰기 스레드에서만 사용
+        private long compactedSize;
+
+        private Shard(Path path) {
+            this.path = path;
+        }
+    }
+}
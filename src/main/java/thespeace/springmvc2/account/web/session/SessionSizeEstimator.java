@@ -0,0 +1,133 @@
+package thespeace.springmvc2.account.web.session;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <h1>세션 값 크기 추정</h1>
+ * 세션에 보관한 값이 힙에서 차지하는 크기를 대략 계산한다. 정확한 값이 아니라 메모리 예산을 지키기 위한 추정치다.
+ * <ul>
+ *     <li>객체 헤더 16byte, 참조 4byte(compressed oops), 8byte 정렬을 가정한다.</li>
+ *     <li>String, 배열, Collection, Map 은 내용까지 계산하고, 그 외 객체는 인스턴스 필드를 따라간다.</li>
+ *     <li>JDK 클래스는 필드에 접근할 수 없으므로 헤더 크기만 더한다.</li>
+ *     <li>순환 참조와 너무 큰 그래프를 막기 위해 {@value #MAX_DEPTH} 단계까지만 따라간다.</li>
+ * </ul>
+ * 세션에는 로그인 회원처럼 작은 객체만 보관해야 한다. 큰 값을 보관하면 그만큼 다른 세션이 먼저 밀려난다.
+ */
+final class SessionSizeEstimator {
+
+    private static final int HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int MAX_DEPTH = 4;
+
+    //세션 저장소 한 건의 고정 비용 (ConcurrentHashMap 노드, 세션 객체, 세션 id 문자열)
+    static final long ENTRY_OVERHEAD = 32 + 48 + align(HEADER + 8) + align(HEADER + SessionIdGenerator.ID_LENGTH);
+
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields.toArray(Field[]::new);
+        }
+    };
+
+    private SessionSizeEstimator() {
+    }
+
+    static long estimate(Object value) {
+        return ENTRY_OVERHEAD + sizeOf(value, 0, new IdentityHashMap<>());
+    }
+
+    private static long sizeOf(Object value, int depth, Map<Object, Boolean> visited) {
+        if (value == null || visited.put(value, Boolean.TRUE) != null) {
+            return 0;
+        }
+        if (value instanceof String string) {
+            return align(HEADER + 8) + align(HEADER + string.length()); //LATIN1 기준
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum<?>) {
+            return align(HEADER + 8);
+        }
+        if (depth >= MAX_DEPTH) {
+            return HEADER;
+        }
+
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            int length = Array.getLength(value);
+            Class<?> component = type.getComponentType();
+            if (component.isPrimitive()) {
+                return align(HEADER + (long) length * primitiveSize(component));
+            }
+            long size = align(HEADER + (long) length * REFERENCE);
+            for (int i = 0; i < length; i++) {
+                size += sizeOf(Array.get(value, i), depth + 1, visited);
+            }
+            return size;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = align(HEADER + (long) collection.size() * (REFERENCE + 16));
+            for (Object element : collection) {
+                size += sizeOf(element, depth + 1, visited);
+            }
+            return size;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = align(HEADER + (long) map.size() * 32);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += sizeOf(entry.getKey(), depth + 1, visited) + sizeOf(entry.getValue(), depth + 1, visited);
+            }
+            return size;
+        }
+        if (type.getModule().isNamed()) {
+            return HEADER; //JDK 클래스
+        }
+
+        long size = HEADER;
+        for (Field field : FIELDS.get(type)) {
+            Class<?> fieldType = field.getType();
+            if (fieldType.isPrimitive()) {
+                size += primitiveSize(fieldType);
+                continue;
+            }
+            size += REFERENCE;
+            try {
+                size += sizeOf(field.get(value), depth + 1, visited);
+            } catch (IllegalAccessException e) {
+                //접근할 수 없는 필드는 참조 크기만 계산
+            }
+        }
+        return align(size);
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
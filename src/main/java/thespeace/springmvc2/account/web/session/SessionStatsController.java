@@ -0,0 +1,26 @@
+package thespeace.springmvc2.account.web.session;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * <h2>세션 저장소 상태 조회 API</h2>
+ * 세션 수, 추정 메모리 사용량, 만료/제거 횟수를 반환한다. 메모리 예산이 적당한지 확인할 때 사용한다.
+ */
+@RestController
+@RequestMapping("/api/session/stats")
+@RequiredArgsConstructor
+public class SessionStatsController {
+
+    private final SessionManager sessionManager;
+
+    /**
+     * @see <a href="http://localhost:8080/api/session/stats">test url</a>
+     */
+    @GetMapping
+    public SessionManager.Metrics stats() {
+        return sessionManager.metrics();
+    }
+}
@@ -0,0 +1,176 @@
+package thespeace.springmvc2.account.web.session;
+
+import thespeace.springmvc2.account.domain.member.Member;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * <h1>서명된 세션 토큰</h1>
+ * 서버에 세션을 보관하지 않고, 로그인 회원의 필수 정보(claim)를 쿠키에 담는다. 쿠키 값은 서버만 아는 키로 서명하므로 변조할 수 없다.
+ * <ul>
+ *     <li>어느 서버가 요청을 받아도 같은 키로 검증할 수 있다. 세션 복제나 고정 라우팅(sticky session)이 필요 없다.</li>
+ *     <li>토큰에는 회원 id, 로그인 ID, 이름, 만료 시각만 담는다. 비밀번호처럼 중요한 정보는 담지 않는다.(서명은 변조를 막을 뿐 내용을 숨기지 않는다.)</li>
+ *     <li>서버에 상태가 없으므로 만료 전에 토큰을 강제로 무효화할 수 없다. 유효 시간을 짧게 유지한다.</li>
+ *     <li>검증한 토큰은 잠시 캐시해서, 같은 토큰으로 연속 요청할 때 서명을 다시 계산하지 않는다.</li>
+ * </ul>
+ * <blockquote><pre>
+ *     Base64Url([회원 id:8][만료 시각:8][로그인 ID][이름]) + "." + Base64Url(HMAC-SHA256 앞 16byte)
+ * </pre></blockquote>
+ */
+public final class SessionTokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 16;
+    private static final int MAX_CACHED_TOKENS = 10_000;
+
+    private final SecretKeySpec key;
+    private final long ttlMillis;
+    private final long cacheTtlMillis;
+    private final LongSupplier clock;
+
+    //Mac 은 스레드에 안전하지 않다.
+    private final ThreadLocal<Mac> macs;
+    private final Map<String, CachedClaims> verified = new ConcurrentHashMap<>();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * @param secret   서명 키, 모든 서버가 같은 키를 사용해야 한다.
+     * @param ttl      토큰 유효 시간
+     * @param cacheTtl 검증한 토큰을 캐시하는 시간
+     */
+    public SessionTokenCodec(byte[] secret, Duration ttl, Duration cacheTtl, LongSupplier clock) {
+        this.key = new SecretKeySpec(secret, ALGORITHM);
+        this.ttlMillis = ttl.toMillis();
+        this.cacheTtlMillis = cacheTtl.toMillis();
+        this.clock = clock;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        newMac(); //키가 잘못되었으면 시작할 때 실패
+    }
+
+    public String issue(Member member) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(member.getId());
+            out.writeLong(clock.getAsLong() + ttlMillis);
+            out.writeUTF(member.getLoginId() == null ? "" : member.getLoginId());
+            out.writeUTF(member.getName() == null ? "" : member.getName());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        byte[] payload = bytes.toByteArray();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+    }
+
+    /**
+     * 서명과 만료 시각을 확인하고 토큰에 담긴 회원 정보를 반환한다. 저장소는 조회하지 않는다.
+     *
+     * @return 형식이 틀리거나, 서명이 맞지 않거나, 만료된 토큰이면 null
+     */
+    public Member verify(String token) {
+        long now = clock.getAsLong();
+        CachedClaims cached = verified.get(token);
+        if (cached != null && cached.cachedUntil > now) {
+            cacheHits.increment();
+            return cached.toMember();
+        }
+        cacheMisses.increment();
+
+        CachedClaims claims = decode(token, now);
+        if (claims == null) {
+            verified.remove(token);
+            return null;
+        }
+        if (verified.size() >= MAX_CACHED_TOKENS) {
+            verified.clear(); //캐시는 최적화일 뿐이므로 가득 차면 비운다.
+        }
+        verified.put(token, claims);
+        return claims.toMember();
+    }
+
+    /**
+     * 캐시에서 제거한다. 토큰 자체는 만료 시각까지 유효하다.
+     */
+    public void evict(String token) {
+        verified.remove(token);
+    }
+
+    public long cacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long cacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    private CachedClaims decode(String token, long now) {
+        int dot = token.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payload = decoder.decode(token.substring(0, dot));
+            byte[] signature = decoder.decode(token.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(payload))) {
+                return null;
+            }
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            long memberId = in.readLong();
+            long expiresAt = in.readLong();
+            String loginId = in.readUTF();
+            String name = in.readUTF();
+            if (expiresAt <= now) {
+                return null;
+            }
+            return new CachedClaims(memberId, loginId, name, Math.min(expiresAt, now + cacheTtlMillis));
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(byte[] payload) {
+        return Arrays.copyOf(macs.get().doFinal(payload), SIGNATURE_BYTES);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    private record CachedClaims(long memberId, String loginId, String name, long cachedUntil) {
+
+        //호출한 쪽에서 수정해도 캐시에 영향이 없도록 매번 새로 만든다.
+        private Member toMember() {
+            Member member = new Member();
+            member.setId(memberId);
+            member.setLoginId(loginId);
+            member.setName(name);
+            return member;
+        }
+    }
+}
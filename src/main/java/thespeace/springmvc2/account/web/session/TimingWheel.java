@@ -0,0 +1,210 @@
+package thespeace.springmvc2.account.web.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <h1>계층형 타이밍 휠</h1>
+ * 만료 시각이 정해진 항목을 시간 칸(slot)에 나누어 담아두고, 시간이 지나면 해당 칸만 꺼낸다.<br>
+ * 전체 항목을 스캔하지 않으므로 항목이 수백만 개여도 tick 마다 처리 비용은 그 tick 에 만료되는 항목 수에만 비례한다.
+ * <ul>
+ *     <li>레벨마다 {@value #SLOTS}칸, 레벨 0 한 칸은 1 tick, 레벨 1 한 칸은 {@value #SLOTS} tick ... 이다.</li>
+ *     <li>먼 미래의 항목은 상위 레벨에 담아두었다가, 그 칸의 시간이 되면 하위 레벨로 내려보낸다.(cascade)</li>
+ *     <li>등록은 O(1), 각 항목은 만료될 때까지 최대 레벨 수만큼만 옮겨진다.</li>
+ *     <li>{@value #LEVELS}개 레벨이 담을 수 있는 시간보다 먼 항목은 가장 먼 칸에 담는다. 꺼낸 쪽에서 만료 시각을 다시 확인해야 한다.</li>
+ *     <li>칸은 항목끼리 직접 연결한 이중 연결 리스트라서, 만료 전에 필요 없어진 항목은 {@link #cancel}로 O(1)에 빼낸다.
+ *         취소하지 않으면 휠이 만료 시각까지 항목을 붙잡고 있다.</li>
+ * </ul>
+ * 만료 시각은 tick 단위로 올림하므로 항목이 예정보다 일찍 나오지 않는다. 최대 1 tick 늦게 나올 수 있다.
+ */
+class TimingWheel<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY_TICKS = (1L << (BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Bucket<T>[][] wheels;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long nextTick; //아직 처리하지 않은 첫 tick
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.nextTick = nowMillis / tickMillis + 1;
+        this.wheels = new Bucket[LEVELS][SLOTS];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheels[level][slot] = new Bucket<>();
+            }
+        }
+    }
+
+    /**
+     * deadlineMillis 가 지나면 {@link #advance(long)}에서 item 을 반환한다. 이미 지난 시각이면 다음 tick 에 반환한다.
+     *
+     * @return 만료 전에 취소할 때 사용
+     */
+    Timer<T> schedule(T item, long deadlineMillis) {
+        Timer<T> timer = new Timer<>(item, (deadlineMillis + tickMillis - 1) / tickMillis); //올림
+        lock.lock();
+        try {
+            place(timer);
+            size++;
+        } finally {
+            lock.unlock();
+        }
+        return timer;
+    }
+
+    /**
+     * 아직 만료되지 않은 항목을 휠에서 빼낸다. 휠은 더 이상 item 을 참조하지 않는다.
+     *
+     * @return 취소했으면 true, 이미 만료되어 반환했거나 취소한 항목이면 false
+     */
+    boolean cancel(Timer<T> timer) {
+        lock.lock();
+        try {
+            if (timer.bucket == null) {
+                return false;
+            }
+            timer.bucket.remove(timer);
+            size--;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * nowMillis 까지의 tick 을 처리하고, 그 사이에 만료된 항목을 반환한다.
+     */
+    List<T> advance(long nowMillis) {
+        long nowTick = nowMillis / tickMillis;
+        List<T> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            while (nextTick <= nowTick) {
+                long tick = nextTick;
+                //상위 레벨부터 내려보내야, 같은 tick 에 내려온 항목이 하위 레벨에서 다시 한 번 내려갈 수 있다.
+                for (int level = LEVELS - 1; level > 0; level--) {
+                    if ((tick & ((1L << (BITS * level)) - 1)) == 0) {
+                        cascade(wheels[level][(int) ((tick >>> (BITS * level)) & MASK)]);
+                    }
+                }
+                Bucket<T> slot = wheels[0][(int) (tick & MASK)];
+                for (Timer<T> timer = slot.poll(); timer != null; timer = slot.poll()) {
+                    expired.add(timer.item);
+                }
+                nextTick++;
+            }
+            size -= expired.size();
+        } finally {
+            lock.unlock();
+        }
+        return expired;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void cascade(Bucket<T> slot) {
+        int count = slot.size; //다시 넣는 항목이 같은 칸으로 돌아와도 한 번만 처리
+        for (int i = 0; i < count; i++) {
+            place(slot.poll());
+        }
+    }
+
+    /**
+     * 남은 tick 수로 레벨을 고르고, 만료 tick 의 해당 레벨 자리수로 칸을 고른다.
+     */
+    private void place(Timer<T> timer) {
+        long deadlineTick = Math.max(timer.deadlineTick, nextTick);
+        long delay = deadlineTick - nextTick;
+        if (delay > MAX_DELAY_TICKS) {
+            deadlineTick = nextTick + MAX_DELAY_TICKS;
+            delay = MAX_DELAY_TICKS;
+        }
+
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= (1L << (BITS * (level + 1)))) {
+            level++;
+        }
+        wheels[level][(int) ((deadlineTick >>> (BITS * level)) & MASK)].add(timer);
+    }
+
+    /**
+     * 휠에 등록된 항목, 필드는 휠의 락 안에서만 사용한다.
+     */
+    static final class Timer<T> {
+
+        private final T item;
+        private final long deadlineTick;
+        private Bucket<T> bucket; //담긴 칸, 만료되거나 취소되면 null
+        private Timer<T> prev;
+        private Timer<T> next;
+
+        private Timer(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    /**
+     * 한 칸에 담긴 항목의 이중 연결 리스트
+     */
+    private static final class Bucket<T> {
+
+        private Timer<T> head;
+        private Timer<T> tail;
+        private int size;
+
+        void add(Timer<T> timer) {
+            timer.bucket = this;
+            timer.prev = tail;
+            timer.next = null;
+            if (tail == null) {
+                head = timer;
+            } else {
+                tail.next = timer;
+            }
+            tail = timer;
+            size++;
+        }
+
+        Timer<T> poll() {
+            Timer<T> timer = head;
+            if (timer != null) {
+                remove(timer);
+            }
+            return timer;
+        }
+
+        void remove(Timer<T> timer) {
+            if (timer.prev == null) {
+                head = timer.next;
+            } else {
+                timer.prev.next = timer.next;
+            }
+            if (timer.next == null) {
+                tail = timer.prev;
+            } else {
+                timer.next.prev = timer.prev;
+            }
+            timer.bucket = null;
+            timer.prev = null;
+            timer.next = null;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package thespeace.springmvc2.common.accesslog;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+import thespeace.springmvc2.common.requestid.RequestIdFilter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <h1>비동기 접근 로그</h1>
+ * 요청마다 log.info 를 여러 줄 남기면 요청 스레드가 문자열 포맷과 appender I/O 를 기다린다. 부하가 커지면 로그 I/O 가 처리량의 한계가 된다.
+ * <ul>
+ *     <li>요청 스레드는 고정된 형식의 이벤트를 {@link AccessLogRing}에 넣고 바로 돌아간다.(잠금, 포맷, I/O 없음)</li>
+ *     <li>전용 쓰기 스레드가 쌓인 이벤트를 모아 한 줄씩 포맷하고, 모은 만큼을 FileChannel 에 한 번에 쓴다.(배치)</li>
+ *     <li>버퍼가 가득 찼을 때 정책
+ *         <ul>
+ *             <li>drop(기본) : 이벤트를 버리고 dropped 를 센다. 로그 때문에 요청이 느려지지 않는다.</li>
+ *             <li>block : 쓰기 스레드가 자리를 만들 때까지 기다린다. 로그를 잃지 않지만 디스크가 느리면 요청도 느려진다.</li>
+ *         </ul>
+ *     </li>
+ * </ul>
+ * <blockquote><pre>
+ *     2026-10-17T03:12:45.123Z k3x9qa-7-1z4 REQUEST GET /items/1 200 12.345ms
+ * </pre></blockquote>
+ * 정상 요청은 {@link AccessLogSampler}가 URI 템플릿마다 일부만 남긴다. 오류와 느린 요청은 모두 남긴다.<br>
+ * 장애로 종료되면 아직 쓰지 않은 이벤트는 유실될 수 있다. 정상 종료할 때는 남은 이벤트를 모두 쓴다.
+ */
+@Slf4j
+@Component
+public class AccessLog {
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "PATCH", "HEAD", "OPTIONS", "OTHER"};
+    private static final DispatcherType[] DISPATCHER_TYPES = DispatcherType.values();
+    private static final int MAX_LINE = 128 + AccessLogRing.REQUEST_ID_BYTES + AccessLogRing.URI_BYTES;
+    private static final int BATCH_BYTES = 1 << 16;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final DateTimeFormatter SECOND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.").withZone(ZoneOffset.UTC);
+
+    private final Path file;
+    private final boolean block;
+    private final AccessLogRing ring;
+    private final AccessLogSampler sampler;
+    private final long wakeMask;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    private volatile boolean running;
+    private Thread writer;
+    private FileChannel channel;
+
+    //쓰기 스레드에서만 사용
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BATCH_BYTES);
+    private long cachedSecond = Long.MIN_VALUE;
+    private byte[] cachedSecondText;
+
+    /**
+     * @param file     접근 로그 파일, 없으면 만든다.(이어서 쓴다.)
+     * @param capacity 링 버퍼 크기(이벤트 수), 2의 거듭제곱으로 올림한다.
+     * @param policy   drop || block
+     */
+    @Autowired
+    public AccessLog(@Value("${access-log.file:./logs/access.log}") String file,
+                     @Value("${access-log.capacity:8192}") int capacity,
+                     @Value("${access-log.policy:drop}") String policy,
+                     AccessLogSampler sampler) {
+        this(Path.of(file), capacity, "block".equals(policy), sampler);
+    }
+
+    AccessLog(Path file, int capacity, boolean block, AccessLogSampler sampler) {
+        this.file = file;
+        this.block = block;
+        this.ring = new AccessLogRing(capacity);
+        this.sampler = sampler;
+        this.wakeMask = ring.capacity() / 2 - 1;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        running = true;
+        writer = new Thread(this::writeLoop, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("access log file={}, capacity={}, policy={}", file, ring.capacity(), block ? "block" : "drop");
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        channel.close();
+    }
+
+    /**
+     * 요청 하나를 샘플링해서 기록한다. 필터는 finally, 인터셉터는 afterCompletion 에서 호출한다.
+     *
+     * @param startNanos 요청을 받은 시각({@link System#nanoTime()})
+     * @param ex         요청 처리 중 발생한 예외, 없으면 null
+     */
+    public void record(HttpServletRequest request, HttpServletResponse response, long startNanos, Exception ex) {
+        long durationNanos = System.nanoTime() - startNanos;
+        int status = response.getStatus();
+        //템플릿은 핸들러 매핑이 끝난 뒤에 담기므로, 필터에서도 chain.doFilter 가 끝난 뒤에는 읽을 수 있다.
+        String template = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (!sampler.sample(template, status, durationNanos, ex != null)) {
+            return;
+        }
+        record(System.currentTimeMillis(), durationNanos, status,
+                request.getMethod(), request.getDispatcherType(), RequestIdFilter.get(request), request.getRequestURI());
+    }
+
+    void record(long timestamp, long durationNanos, int status, String method, DispatcherType dispatcherType, String requestId, String uri) {
+        long sequence = ring.tryClaim();
+        while (sequence < 0) {
+            if (!block || !running) {
+                dropped.increment();
+                return;
+            }
+            blocked.increment();
+            LockSupport.unpark(writer); //쓰기 스레드를 깨워서 자리를 만든다.
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            sequence = ring.tryClaim();
+        }
+        ring.write(sequence, timestamp, durationNanos, status, methodCode(method), dispatcherType.ordinal(), requestId, uri);
+        if ((sequence & wakeMask) == 0) {
+            LockSupport.unpark(writer); //쉬는 동안 버퍼가 반 이상 차면 기다리지 않고 깨운다.
+        }
+    }
+
+    public Metrics metrics() {
+        return new Metrics(ring.capacity(), ring.size(), written.sum(), dropped.sum(), blocked.sum(), batches.sum());
+    }
+
+    private void writeLoop() {
+        while (true) {
+            boolean stopping = !running; //종료 요청 후에도 남은 이벤트는 모두 쓴다.
+            int lines = drain();
+            if (lines == 0) {
+                if (stopping) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * 기록이 끝난 이벤트를 버퍼가 찰 때까지 포맷하고, 한 번에 쓴다.
+     *
+     * @return 쓴 이벤트 수
+     */
+    int drain() {
+        long sequence = ring.tail();
+        buffer.clear();
+        while (buffer.remaining() >= MAX_LINE && ring.isPublished(sequence)) {
+            format(ring.slotOf(sequence));
+            sequence++;
+        }
+        int lines = (int) (sequence - ring.tail());
+        ring.release(sequence);
+        if (lines == 0) {
+            return 0;
+        }
+
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            dropped.add(lines);
+            log.error("failed to write access log", e);
+            return lines;
+        }
+        written.add(lines);
+        batches.increment();
+        return lines;
+    }
+
+    private void format(int slot) {
+        long timestamp = ring.timestamps[slot];
+        long second = Math.floorDiv(timestamp, 1000);
+        if (second != cachedSecond) {
+            cachedSecond = second; //같은 초의 이벤트는 날짜를 다시 포맷하지 않는다.
+            cachedSecondText = SECOND_FORMAT.format(Instant.ofEpochSecond(second)).getBytes(StandardCharsets.US_ASCII);
+        }
+        buffer.put(cachedSecondText);
+        putPadded(Math.floorMod(timestamp, 1000), 3);
+        buffer.put((byte) 'Z').put((byte) ' ');
+        buffer.put(ring.requestIds, slot * AccessLogRing.REQUEST_ID_BYTES, ring.requestIdLengths[slot]);
+        buffer.put((byte) ' ');
+        putAscii(DISPATCHER_TYPES[ring.dispatcherTypes[slot]].name());
+        buffer.put((byte) ' ');
+        putAscii(METHODS[ring.methods[slot]]);
+        buffer.put((byte) ' ');
+        buffer.put(ring.uris, slot * AccessLogRing.URI_BYTES, ring.uriLengths[slot]);
+        buffer.put((byte) ' ');
+        putNumber(ring.statuses[slot]);
+        buffer.put((byte) ' ');
+        long micros = ring.durations[slot] / 1000;
+        putNumber(micros / 1000);
+        buffer.put((byte) '.');
+        putPadded(micros % 1000, 3);
+        buffer.put((byte) 'm').put((byte) 's').put((byte) '\n');
+    }
+
+    private void putAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private void putNumber(long value) {
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private void putPadded(long value, int digits) {
+        for (long divisor = (long) Math.pow(10, digits - 1); divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static int methodCode(String method) {
+        for (int i = 0; i < METHODS.length - 1; i++) {
+            if (METHODS[i].equals(method)) {
+                return i;
+            }
+        }
+        return METHODS.length - 1;
+    }
+
+    /**
+     * @param pending 버퍼에 있고 아직 쓰지 않은 이벤트 수
+     * @param dropped 버퍼가 가득 차서(또는 쓰기 실패로) 버린 이벤트 수
+     * @param blocked block 정책에서 자리를 기다린 횟수
+     * @param batches FileChannel 쓰기 횟수
+     */
+    public record Metrics(int capacity, int pending, long written, long dropped, long blocked, long batches) {
+    }
+}
@@ -0,0 +1,99 @@
+package thespeace.springmvc2.common.accesslog;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import thespeace.springmvc2.exception.exhandler.ErrorResult;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * <h2>접근 로그 상태 조회 API</h2>
+ * 쓴 이벤트 수, 버퍼가 가득 차서 버린 이벤트 수, 쓰기 횟수를 반환한다. dropped 가 늘면 capacity 를 늘리거나 디스크를 확인한다.<br>
+ * 샘플링 설정은 재시작하지 않고 바꿀 수 있다.
+ * <h2>설정 변경 보호</h2>
+ * 샘플링을 끄거나 바꾸면 모든 요청이 로그로 남거나 오류 조사에 필요한 로그가 사라지므로, 조회와 달리 변경은 운영자만 할 수 있다.
+ * <ul>
+ *     <li>{@code access-log.admin-token} 에 설정한 값을 {@value #ADMIN_TOKEN_HEADER} 헤더로 보내야 한다. 다르면 403.</li>
+ *     <li>토큰을 설정하지 않으면(default) 변경 API 는 항상 403 이다. 설정은 properties 로만 바꾼다.</li>
+ *     <li>토큰은 고정 시간 비교(MessageDigest.isEqual)로 확인해서 응답 시간으로 토큰을 추측할 수 없다.</li>
+ * </ul>
+ */
+@RestController
+@RequestMapping("/api/metrics/access-log")
+public class AccessLogController {
+
+    public static final String ADMIN_TOKEN_HEADER = "X-Admin-Token";
+
+    private final AccessLog accessLog;
+    private final AccessLogSampler accessLogSampler;
+    private final byte[] adminToken; //비어 있으면 변경 불가
+
+    public AccessLogController(AccessLog accessLog, AccessLogSampler accessLogSampler,
+                               @Value("${access-log.admin-token:}") String adminToken) {
+        this.accessLog = accessLog;
+        this.accessLogSampler = accessLogSampler;
+        this.adminToken = adminToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @see <a href="http://localhost:8080/api/metrics/access-log">test url</a>
+     */
+    @GetMapping
+    public AccessLog.Metrics stats() {
+        return accessLog.metrics();
+    }
+
+    /**
+     * @see <a href="http://localhost:8080/api/metrics/access-log/sampling">test url</a>
+     */
+    @GetMapping("/sampling")
+    public AccessLogSampler.Metrics sampling() {
+        return accessLogSampler.metrics();
+    }
+
+    /**
+     * 샘플링 설정을 바꾼다. 다음 요청부터 적용된다. 관리자 토큰이 필요하다.
+     * <blockquote><pre>
+     *     PUT /api/metrics/access-log/sampling
+     *     X-Admin-Token: {access-log.admin-token}
+     *     {"enabled": true, "perSecond": 5, "slowThresholdMillis": 200}
+     * </pre></blockquote>
+     */
+    @PutMapping("/sampling")
+    public AccessLogSampler.Metrics updateSampling(@RequestHeader(name = ADMIN_TOKEN_HEADER, required = false) String token,
+                                                   @RequestBody AccessLogSampler.Settings settings) {
+        checkAdmin(token);
+        accessLogSampler.update(settings);
+        return accessLogSampler.metrics();
+    }
+
+    @ResponseStatus(HttpStatus.BAD_REQUEST) //범위를 벗어난 설정은 적용하지 않는다.
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ErrorResult illegalSettingsHandler(IllegalArgumentException e) {
+        return new ErrorResult("BAD", e.getMessage());
+    }
+
+    @ResponseStatus(HttpStatus.FORBIDDEN)
+    @ExceptionHandler(SecurityException.class)
+    public ErrorResult forbiddenHandler(SecurityException e) {
+        return new ErrorResult("FORBIDDEN", e.getMessage());
+    }
+
+    private void checkAdmin(String token) {
+        if (adminToken.length == 0) {
+            throw new SecurityException("access-log.admin-token is not configured");
+        }
+        if (token == null || !MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8))) {
+            throw new SecurityException("invalid admin token");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package thespeace.springmvc2.common.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <h1>접근 로그 링 버퍼</h1>
+ * 여러 요청 스레드가 넣고(multi producer) 쓰기 스레드 하나가 꺼내는(single consumer) 고정 크기 링 버퍼.
+ * <ul>
+ *     <li>이벤트는 객체가 아니라 칸마다 미리 만들어 둔 배열에 고정된 형식으로 기록한다.(시각, 처리 시간, 상태 코드, 메서드, DispatcherType, 요청 id, URI 바이트)
+ *     요청 스레드에서 객체를 만들거나 문자열을 포맷하지 않는다.</li>
+ *     <li>칸은 순번(sequence)을 CAS 로 받아서 차지한다. 다 쓴 칸에 그 순번을 기록(publish)하면 쓰기 스레드가 읽는다.</li>
+ *     <li>쓰기 스레드는 읽은 칸까지 tail 을 옮겨서 칸을 돌려준다. 잠금이 없다.</li>
+ * </ul>
+ */
+final class AccessLogRing {
+
+    static final int URI_BYTES = 256; //더 긴 URI 는 잘라서 기록
+    static final int REQUEST_ID_BYTES = 64;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong(); //다음에 나눠줄 순번
+    private volatile long tail; //쓰기 스레드가 아직 읽지 않은 첫 순번
+    private final AtomicLongArray published; //칸마다 기록이 끝난 순번
+
+    final long[] timestamps;
+    final long[] durations;
+    final int[] statuses;
+    final byte[] methods;
+    final byte[] dispatcherTypes;
+    final byte[] requestIds;
+    final byte[] requestIdLengths;
+    final byte[] uris;
+    final short[] uriLengths;
+
+    /**
+     * @param capacity 2의 거듭제곱으로 올림한다.
+     */
+    AccessLogRing(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.published = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            published.set(i, -1);
+        }
+        this.timestamps = new long[this.capacity];
+        this.durations = new long[this.capacity];
+        this.statuses = new int[this.capacity];
+        this.methods = new byte[this.capacity];
+        this.dispatcherTypes = new byte[this.capacity];
+        this.requestIds = new byte[this.capacity * REQUEST_ID_BYTES];
+        this.requestIdLengths = new byte[this.capacity];
+        this.uris = new byte[this.capacity * URI_BYTES];
+        this.uriLengths = new short[this.capacity];
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return 차지한 순번, 가득 찼으면 -1
+     */
+    long tryClaim() {
+        while (true) {
+            long sequence = head.get();
+            if (sequence - tail >= capacity) {
+                return -1;
+            }
+            if (head.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    void write(long sequence, long timestamp, long duration, int status, int method, int dispatcherType, String requestId, String uri) {
+        int slot = (int) (sequence & mask);
+        timestamps[slot] = timestamp;
+        durations[slot] = duration;
+        statuses[slot] = status;
+        methods[slot] = (byte) method;
+        dispatcherTypes[slot] = (byte) dispatcherType;
+        requestIdLengths[slot] = (byte) copyAscii(requestId == null ? "-" : requestId, requestIds, slot * REQUEST_ID_BYTES, REQUEST_ID_BYTES);
+        uriLengths[slot] = (short) copyAscii(uri, uris, slot * URI_BYTES, URI_BYTES);
+        published.setRelease(slot, sequence);
+    }
+
+    /**
+     * @return 복사한 길이, 더 긴 값은 잘라낸다.
+     */
+    private static int copyAscii(String value, byte[] target, int offset, int limit) {
+        int length = Math.min(value.length(), limit);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            target[offset + i] = c < 0x80 && c >= 0x20 ? (byte) c : (byte) '?'; //URI, 요청 id 는 ASCII, 제어 문자는 로그에 남기지 않는다.
+        }
+        return length;
+    }
+
+    boolean isPublished(long sequence) {
+        return published.getAcquire((int) (sequence & mask)) == sequence;
+    }
+
+    int slotOf(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+    long tail() {
+        return tail;
+    }
+
+    /**
+     * sequence 이전 칸을 모두 읽었으므로 돌려준다. 쓰기 스레드에서만 호출한다.
+     */
+    void release(long sequence) {
+        tail = sequence;
+    }
+
+    int size() {
+        return (int) (head.get() - tail);
+    }
+}
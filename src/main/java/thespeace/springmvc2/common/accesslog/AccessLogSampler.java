@@ -0,0 +1,184 @@
+package thespeace.springmvc2.common.accesslog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * <h1>접근 로그 샘플링</h1>
+ * 요청이 초당 수만 건이면 정상 요청을 모두 남길 필요가 없다. 문제를 찾는 데 필요한 요청은 모두 남기고, 나머지는 URI 템플릿마다 일부만 남긴다.
+ * <ul>
+ *     <li>예외가 발생했거나 상태 코드가 5xx 인 요청은 항상 남긴다.</li>
+ *     <li>처리 시간이 slowThreshold 이상인 요청은 항상 남긴다.</li>
+ *     <li>나머지는 URI 템플릿(예: {@code /items/{itemId}})마다 1초에 perSecond 건까지만 남긴다. 실제 URI 로 나누면 키가 끝없이 늘어나므로 템플릿을 쓴다.</li>
+ * </ul>
+ *
+ * <h2>잠금 없는 시간 창(window)</h2>
+ * 템플릿마다 "창 번호(초) + 그 창에서 남긴 수"를 long 하나에 담는다.
+ * <ul>
+ *     <li>창 번호는 생성 시각부터 지난 초다. System.nanoTime() 은 음수일 수 있어서 그대로 나누면 창 번호가 음수가 되고,
+ *         부호 없는 시프트로 꺼낸 값과 같아지지 않아 매번 새 창으로 보인다.(제한이 걸리지 않는다.)</li>
+ *     <li>창이 바뀌었으면 CAS 로 (새 창, 1)을 기록한다. 따로 초기화하는 스레드가 없다.</li>
+ *     <li>같은 창이면 perSecond 보다 작을 때만 CAS 로 1 더한다. 이미 다 채웠으면 읽기만 하고 돌아가므로, 요청이 몰려도 경합이 없다.</li>
+ * </ul>
+ *
+ * <h2>설정 변경</h2>
+ * 설정은 불변 객체({@link Settings}) 하나로 두고 {@link #update(Settings)}로 통째로 바꾼다. 재시작하지 않고 바로 적용된다.
+ */
+@Slf4j
+@Component
+public class AccessLogSampler {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final String UNKNOWN_TEMPLATE = "-";
+
+    private final int maxTemplates;
+    private final LongSupplier nanoClock;
+    private final long baseNanos; //창 번호의 기준 시각
+    private final Map<String, AtomicLong> windows = new ConcurrentHashMap<>();
+    private final AtomicLong overflow = new AtomicLong(); //템플릿이 maxTemplates 를 넘으면 함께 사용
+    private volatile Settings settings;
+
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder slow = new LongAdder();
+
+    /**
+     * @param enabled             false 면 모든 요청을 남긴다.
+     * @param perSecond           템플릿마다 1초에 남기는 정상 요청 수
+     * @param slowThresholdMillis 이 시간 이상 걸린 요청은 항상 남긴다.
+     * @param maxTemplates        창을 따로 두는 최대 템플릿 수
+     */
+    @Autowired
+    public AccessLogSampler(@Value("${access-log.sampling.enabled:true}") boolean enabled,
+                            @Value("${access-log.sampling.per-second:10}") int perSecond,
+                            @Value("${access-log.sampling.slow-threshold-millis:500}") long slowThresholdMillis,
+                            @Value("${access-log.sampling.max-templates:1000}") int maxTemplates) {
+        this(new Settings(enabled, perSecond, slowThresholdMillis), maxTemplates, System::nanoTime);
+    }
+
+    AccessLogSampler(Settings settings, int maxTemplates, LongSupplier nanoClock) {
+        this.settings = validate(settings);
+        this.maxTemplates = maxTemplates;
+        this.nanoClock = nanoClock;
+        this.baseNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * @param template URI 템플릿, 모르면 null
+     * @param error    요청 처리 중 예외가 발생했는지
+     * @return 로그를 남겨야 하면 true
+     */
+    public boolean sample(String template, int status, long durationNanos, boolean error) {
+        Settings current = settings;
+        if (!current.enabled()) {
+            return true;
+        }
+        if (error || status >= 500) {
+            errors.increment();
+            return true;
+        }
+        if (durationNanos >= current.slowThresholdNanos()) {
+            slow.increment();
+            return true;
+        }
+        if (tryAcquire(window(template == null ? UNKNOWN_TEMPLATE : template), current.perSecond())) {
+            sampled.increment();
+            return true;
+        }
+        suppressed.increment();
+        return false;
+    }
+
+    public Settings settings() {
+        return settings;
+    }
+
+    /**
+     * 설정을 바꾼다. 다음 요청부터 적용된다.
+     *
+     * @throws IllegalArgumentException perSecond 나 slowThresholdMillis 가 범위를 벗어난 경우
+     */
+    public void update(Settings settings) {
+        this.settings = validate(settings);
+        log.info("access log sampling updated {}", settings);
+    }
+
+    public Metrics metrics() {
+        return new Metrics(settings, sampled.sum(), suppressed.sum(), errors.sum(), slow.sum(), windows.size());
+    }
+
+    private AtomicLong window(String template) {
+        AtomicLong window = windows.get(template);
+        if (window != null) {
+            return window;
+        }
+        if (windows.size() >= maxTemplates) {
+            return overflow;
+        }
+        return windows.computeIfAbsent(template, t -> new AtomicLong());
+    }
+
+    private boolean tryAcquire(AtomicLong window, int perSecond) {
+        if (perSecond == 0) {
+            return false;
+        }
+        long current = (nanoClock.getAsLong() - baseNanos) / WINDOW_NANOS; //0 이상, 40bit 면 3만 년 이상
+        while (true) {
+            long state = window.get();
+            long next;
+            if (state >>> COUNT_BITS != current) {
+                next = current << COUNT_BITS | 1; //새 창
+            } else if ((state & COUNT_MASK) < perSecond) {
+                next = state + 1;
+            } else {
+                return false; //이번 창은 다 채웠다. 쓰지 않고 돌아간다.
+            }
+            if (window.compareAndSet(state, next)) {
+                return true;
+            }
+        }
+    }
+
+    private static Settings validate(Settings settings) {
+        if (settings.perSecond() < 0 || settings.perSecond() > COUNT_MASK) {
+            throw new IllegalArgumentException("perSecond must be between 0 and " + COUNT_MASK + ": " + settings.perSecond());
+        }
+        if (settings.slowThresholdMillis() < 0) {
+            throw new IllegalArgumentException("slowThresholdMillis must not be negative: " + settings.slowThresholdMillis());
+        }
+        return settings;
+    }
+
+    /**
+     * @param enabled             false 면 모든 요청을 남긴다.
+     * @param perSecond           템플릿마다 1초에 남기는 정상 요청 수, 0 이면 오류와 느린 요청만 남긴다.
+     * @param slowThresholdMillis 이 시간 이상 걸린 요청은 항상 남긴다.
+     */
+    public record Settings(boolean enabled, int perSecond, long slowThresholdMillis) {
+
+        private long slowThresholdNanos() {
+            return slowThresholdMillis * 1_000_000L;
+        }
+    }
+
+    /**
+     * @param sampled    샘플로 남긴 정상 요청 수
+     * @param suppressed 남기지 않은 요청 수
+     * @param errors     예외, 5xx 로 남긴 요청 수
+     * @param slow       느려서 남긴 요청 수
+     * @param templates  창을 따로 둔 템플릿 수
+     */
+    public record Metrics(Settings settings, long sampled, long suppressed, long errors, long slow, int templates) {
+    }
+}
@@ -0,0 +1,28 @@
+package thespeace.springmvc2.common.metrics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * <h2>핸들러별 응답 시간 조회 API</h2>
+ * 컨트롤러 메서드마다 호출 횟수와 p50/p99/p999/최대/평균 응답 시간(ms)을 반환한다. 로그를 모아서 추정하지 않아도 된다.
+ */
+@RestController
+@RequestMapping("/api/metrics/latency")
+@RequiredArgsConstructor
+public class HandlerLatencyController {
+
+    private final HandlerLatencyRecorder handlerLatencyRecorder;
+
+    /**
+     * @see <a href="http://localhost:8080/api/metrics/latency">test url</a>
+     */
+    @GetMapping
+    public List<HandlerLatencyRecorder.HandlerLatency> latency() {
+        return handlerLatencyRecorder.snapshot();
+    }
+}
@@ -0,0 +1,69 @@
+package thespeace.springmvc2.common.metrics;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <h1>핸들러별 응답 시간</h1>
+ * 인터셉터가 preHandle ~ afterCompletion 사이의 시간을 핸들러(컨트롤러 메서드)별 {@link LatencyHistogram}에 기록한다.
+ * <ul>
+ *     <li>키는 컨트롤러 메서드({@link java.lang.reflect.Method})다. 요청마다 새로 만들어지는 HandlerMethod 와 달리 같은 객체이고, hashCode 계산에 할당이 없다.</li>
+ *     <li>히스토그램은 핸들러가 처음 호출될 때 한 번만 만든다. 이후 기록은 맵 조회와 카운터 증가뿐이다.</li>
+ *     <li>정적 리소스처럼 HandlerMethod 가 아닌 핸들러는 핸들러 타입별로 모은다.</li>
+ * </ul>
+ */
+@Component
+public class HandlerLatencyRecorder {
+
+    private final Map<Object, Entry> histograms = new ConcurrentHashMap<>();
+
+    public void record(Object handler, long nanos) {
+        Object key = handler instanceof HandlerMethod handlerMethod ? handlerMethod.getMethod() : handler.getClass();
+        Entry entry = histograms.get(key);
+        if (entry == null) {
+            entry = histograms.computeIfAbsent(key, k -> new Entry(nameOf(handler), new LatencyHistogram()));
+        }
+        entry.histogram().record(nanos);
+    }
+
+    /**
+     * @return 핸들러 이름 순서
+     */
+    public List<HandlerLatency> snapshot() {
+        List<HandlerLatency> result = new ArrayList<>(histograms.size());
+        for (Entry entry : histograms.values()) {
+            LatencyHistogram.Snapshot snapshot = entry.histogram().snapshot();
+            result.add(new HandlerLatency(entry.name(), snapshot.count(),
+                    millis(snapshot.valueAt(50)), millis(snapshot.valueAt(99)), millis(snapshot.valueAt(99.9)),
+                    millis(snapshot.max()), snapshot.mean() / 1e6));
+        }
+        result.sort(Comparator.comparing(HandlerLatency::handler));
+        return result;
+    }
+
+    private static String nameOf(Object handler) {
+        if (handler instanceof HandlerMethod handlerMethod) {
+            return handlerMethod.getBeanType().getSimpleName() + "#" + handlerMethod.getMethod().getName();
+        }
+        return handler.getClass().getSimpleName();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private record Entry(String name, LatencyHistogram histogram) {
+    }
+
+    /**
+     * 시간은 모두 ms
+     */
+    public record HandlerLatency(String handler, long count, double p50, double p99, double p999, double max, double mean) {
+    }
+}
@@ -0,0 +1,118 @@
+package thespeace.springmvc2.common.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h1>응답 시간 히스토그램 (HDR 방식)</h1>
+ * 응답 시간을 모두 보관하지 않고, 값의 크기에 따라 나눈 구간(bucket)마다 개수만 센다. 메모리는 기록 수와 무관하게 고정이다.
+ * <ul>
+ *     <li>2의 거듭제곱 구간마다 다시 {@value #SUB_BUCKETS}칸으로 나눈다. 어느 크기의 값이든 상대 오차가 1/{@value #SUB_BUCKETS}(약 1.6%) 이내다.</li>
+ *     <li>구간 번호는 비트 연산(leading zeros, shift)으로 바로 구한다. 비교나 탐색이 없다.</li>
+ *     <li>기록은 구간 카운터 하나를 원자적으로 증가시킬 뿐이다. 잠금과 객체 생성이 없다.</li>
+ *     <li>{@link #MAX_VALUE}ns(약 9.8시간)보다 큰 값은 최댓값으로 기록한다.</li>
+ * </ul>
+ * 백분위수는 {@link #snapshot()}으로 카운터를 복사한 뒤 계산한다. 기록 중에 복사하므로 값들이 같은 순간의 것은 아니지만, 집계 용도로는 충분하다.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 44;
+    public static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+    /**
+     * {@value #SUB_BUCKETS} 미만은 값 그대로, 그 이상은 최상위 비트 위치(지수)로 구간을 고르고 그 아래 {@value #SUB_BUCKET_BITS}비트로 칸을 고른다.
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * 같은 칸에 기록되는 가장 큰 값
+     */
+    static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * @param percentile 0 ~ 100 (예: 99.9)
+         * @return 기록한 값의 percentile % 가 이 값 이하다. 기록이 없으면 0
+         */
+        public long valueAt(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100) / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
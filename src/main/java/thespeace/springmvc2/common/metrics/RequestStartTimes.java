@@ -0,0 +1,67 @@
+package thespeace.springmvc2.common.metrics;
+
+/**
+ * <h1>인터셉터의 요청 시작 시각</h1>
+ * 인터셉터는 preHandle 과 afterCompletion 이 분리되어 있어서 시작 시각을 어딘가에 담아 두어야 한다.<br>
+ * request attribute 에 Long 으로 담으면 요청마다 박싱 객체가 생기고, 인터셉터끼리 같은 이름을 쓰면 서로의 값을 덮어쓴다.
+ * <ul>
+ *     <li>인터셉터마다 인스턴스를 하나씩 둔다. 인스턴스가 곧 키이므로 다른 인터셉터의 값과 섞이지 않는다.</li>
+ *     <li>스레드마다 (request, 시작 시각) 스택을 한 번만 만들어 재사용한다. 요청마다 할당하지 않는다.</li>
+ *     <li>forward, include 처럼 같은 스레드에서 디스패치가 중첩되어도 request 객체로 자기 항목을 찾는다.
+ *         찾은 항목 위에 남은 항목(짝이 맞지 않은 preHandle)은 함께 버린다.</li>
+ *     <li>비동기 처리를 시작한 디스패치는 afterCompletion 이 호출되지 않으므로 afterConcurrentHandlingStarted 에서 {@link #remove}를 호출한다.</li>
+ * </ul>
+ */
+public final class RequestStartTimes {
+
+    /**
+     * 시작 시각이 없을 때 {@link #remove}가 반환하는 값
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final int MAX_DEPTH = 8;
+
+    private final ThreadLocal<Stack> stacks = ThreadLocal.withInitial(Stack::new);
+
+    public void start(Object request, long startNanos) {
+        Stack stack = stacks.get();
+        if (stack.depth == MAX_DEPTH) {
+            stack.truncate(0); //짝이 맞지 않은 항목이 쌓였다. 진행 중인 요청의 기록 몇 건만 잃는다.
+        }
+        stack.requests[stack.depth] = request;
+        stack.starts[stack.depth] = startNanos;
+        stack.depth++;
+    }
+
+    /**
+     * @return request 의 시작 시각, 없으면 {@link #NONE}
+     */
+    public long remove(Object request) {
+        Stack stack = stacks.get();
+        for (int i = stack.depth - 1; i >= 0; i--) {
+            if (stack.requests[i] == request) {
+                long startNanos = stack.starts[i];
+                stack.truncate(i);
+                return startNanos;
+            }
+        }
+        return NONE;
+    }
+
+    private static final class Stack {
+
+        private final Object[] requests = new Object[MAX_DEPTH];
+        private final long[] starts = new long[MAX_DEPTH];
+        private int depth;
+
+        /**
+         * 스레드가 재사용되므로 request 참조를 남기지 않는다.
+         */
+        private void truncate(int newDepth) {
+            for (int i = newDepth; i < depth; i++) {
+                requests[i] = null;
+            }
+            depth = newDepth;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package thespeace.springmvc2.common.repository;
+
+/**
+ * {@link UniqueIndex}에 이미 다른 엔티티가 같은 값으로 등록되어 있을 때 발생한다. 저장/수정은 반영되지 않는다.
+ */
+public class DuplicateEntityException extends RuntimeException {
+
+    public DuplicateEntityException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,34 @@
+package thespeace.springmvc2.common.repository;
+
+import java.util.List;
+
+/**
+ * <h2>저장소 변경 알림</h2>
+ * {@link InMemoryRepository}의 save, update, clear 가 저장소에 반영된 직후, 엔티티 락 밖에서 요청 스레드가 직접 호출한다.<br>
+ * 락 밖이므로 같은 엔티티를 동시에 수정하면 알림 순서가 변경 순서와 다를 수 있다. 순서가 필요하면 version 으로 판단한다.<br>
+ * onClear 는 clear 와 같은 배타 구간에서 호출되므로, clear 이전 변경의 알림은 모두 onClear 보다 먼저, 이후 변경의 알림은 모두 나중에 온다.
+ */
+public interface EntityChangeListener<T> {
+
+    default void onSave(T entity) {
+    }
+
+    /**
+     * 일괄 저장, 기본 구현은 엔티티마다 {@link #onSave}를 호출한다.
+     */
+    default void onSaveAll(List<? extends T> entities) {
+        for (T entity : entities) {
+            onSave(entity);
+        }
+    }
+
+    /**
+     * @param before 수정 전 값의 복사본
+     * @param after  수정 후 엔티티
+     */
+    default void onUpdate(T before, T after) {
+    }
+
+    default void onClear() {
+    }
+}
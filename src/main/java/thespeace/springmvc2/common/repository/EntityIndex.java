@@ -0,0 +1,15 @@
+package thespeace.springmvc2.common.repository;
+
+/**
+ * <h2>보조 인덱스</h2>
+ * {@link InMemoryRepository}에 등록하면 save, update, clear 에서 함께 갱신된다.<br>
+ * update 는 수정 전 값으로 remove, 수정 후 값으로 add 를 호출한다. 같은 엔티티에 대한 호출은 동시에 일어나지 않는다.
+ */
+public interface EntityIndex<T extends Identifiable> {
+
+    void add(T entity);
+
+    void remove(T entity);
+
+    void clear();
+}
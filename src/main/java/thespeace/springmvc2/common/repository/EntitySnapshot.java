@@ -0,0 +1,36 @@
+package thespeace.springmvc2.common.repository;
+
+import java.util.List;
+
+/**
+ * <h2>저장소 스냅샷</h2>
+ * 만들어진 시점의 엔티티만 보여준다. 같은 저장소에서 만든 스냅샷은 version 이 같으면 내용도 같다.
+ */
+public final class EntitySnapshot<T> {
+
+    private final PersistentLongMap<T> entities;
+
+    EntitySnapshot(PersistentLongMap<T> entities) {
+        this.entities = entities;
+    }
+
+    public long version() {
+        return entities.version();
+    }
+
+    public int size() {
+        return entities.size();
+    }
+
+    public T findById(long id) {
+        return entities.get(id);
+    }
+
+    public List<T> findPage(Long afterId, int limit) {
+        return entities.page(afterId, limit);
+    }
+
+    public List<T> findAll() {
+        return entities.page(null, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,50 @@
+package thespeace.springmvc2.common.repository;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * <h2>엔티티 보관 방식</h2>
+ * {@link InMemoryRepository}가 엔티티를 보관하는 방법, id 순서로 조회할 수 있어야 한다.<br>
+ * id 발급, 보조 인덱스, 변경 알림은 {@link InMemoryRepository}가 담당한다.
+ */
+public interface EntityStore<T extends Identifiable> {
+
+    T findById(long id);
+
+    /**
+     * afterId 다음 id부터 최대 limit 개를 id 순서로 조회, afterId 가 null 이면 처음부터 조회.
+     */
+    List<T> findPage(Long afterId, int limit);
+
+    List<T> findAll();
+
+    /**
+     * @return 같은 id로 저장되어 있던 엔티티, 없으면 null
+     */
+    T put(T entity);
+
+    /**
+     * id에 해당하는 엔티티가 있으면 updater 를 원자적으로 적용한다. 같은 엔티티에 대한 update 는 동시에 실행되지 않는다.<br>
+     * updater 가 null 을 반환하면 변경하지 않는다.
+     *
+     * @return 변경했으면 true
+     */
+    boolean update(long id, UnaryOperator<T> updater);
+
+    void clear();
+
+    int size();
+
+    /**
+     * 현재 내용의 스냅샷, 기본 구현은 전체를 복사하므로 O(n)이고 복사하는 동안의 수정은 일부만 반영될 수 있다.<br>
+     * 수정할 때마다 새 맵으로 교체하는 저장소({@link CopyOnWriteEntityStore})는 복사 없이 O(1)로 한 시점의 스냅샷을 만든다.
+     */
+    default EntitySnapshot<T> snapshot() {
+        PersistentLongMap<T> entities = PersistentLongMap.empty();
+        for (T entity : findAll()) {
+            entities = entities.put(entity.getId(), entity);
+        }
+        return new EntitySnapshot<>(entities);
+    }
+}
@@ -0,0 +1,12 @@
+package thespeace.springmvc2.common.repository;
+
+/**
+ * <h2>id를 가진 엔티티</h2>
+ * {@link InMemoryRepository}가 저장할 때 id를 발급해서 넣는다. Lombok {@code @Data}가 만드는 getter/setter 로 구현된다.
+ */
+public interface Identifiable {
+
+    Long getId();
+
+    void setId(Long id);
+}
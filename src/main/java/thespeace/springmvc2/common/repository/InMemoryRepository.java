@@ -0,0 +1,309 @@
+package thespeace.springmvc2.common.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * <h1>메모리 저장소 엔진</h1>
+ * 상품, 회원, 업로드 상품 저장소가 공통으로 사용하는 저장소 구현. 각 저장소는 이 엔진을 감싸서 도메인에 맞는 조회 메서드만 추가한다.
+ *
+ * <h2>id 발급</h2>
+ * <ul>
+ *     <li>HashMap, {@code ++sequence} 는 동시 요청에 안전하지 않다. 같은 id가 중복 발급되거나 맵이 깨질 수 있다.</li>
+ *     <li>AtomicLong : CAS 연산으로 id를 발급하므로 synchronized 없이도 중복 id가 생기지 않는다.</li>
+ *     <li>엔티티는 {@link EntityStore}에 id 순서로 보관한다. id 순서 덕분에 키셋 페이징이 가능하다.</li>
+ * </ul>
+ *
+ * <h2>확장 지점</h2>
+ * <ul>
+ *     <li>{@link EntityStore} : 보관 방식, 기본은 {@link CopyOnWriteEntityStore}</li>
+ *     <li>{@link EntityIndex} : 보조 인덱스, save, update, clear 에서 함께 갱신된다. 인덱스가 거부하면({@link UniqueIndex}) 저장/수정하지 않는다.</li>
+ *     <li>{@link EntityChangeListener} : 변경 알림 (예: 영속화 로그, 집계)</li>
+ *     <li>{@link RepositoryMetrics} : 저장, 조회, 수정, 수정 충돌 횟수</li>
+ * </ul>
+ *
+ * <h2>전체 삭제</h2>
+ * clear 는 저장소와 인덱스를 따로 비우므로, 그 사이에 저장/수정이 끼어들면 저장소에는 있지만 인덱스에는 없는 엔티티가 생긴다.
+ * (예: 인덱스 등록 → 저장소 비움 → 인덱스 비움 → 저장소에 넣음, 회원이면 로그인 ID로 찾을 수 없고 같은 로그인 ID로 다시 가입된다.)<br>
+ * 저장/수정은 {@link StripedReadWriteLock}의 공유 쪽을, clear 는 배타 쪽을 잡아서 서로 끼어들지 않는다.
+ * 저장/수정끼리는 서로 기다리지 않는다.
+ *
+ * <h2>수정</h2>
+ * update 는 {@link EntityStore#update}안에서 조건 확인, 인덱스 갱신까지 원자적으로 실행한다.<br>
+ * 조건(예: version 비교)이 맞지 않으면 수정하지 않으므로 낙관적 락을 전역 락 없이 구현할 수 있다.<br>
+ * 변경 알림은 저장소에 반영된 뒤, 엔티티 락 밖에서 호출한다. 알림을 받은 쪽(예: 영속화 로그의 스냅샷)이 저장소를 읽으면 알림 받은 값 이후의 값이 보이고,
+ * 알림을 받은 쪽이 기다려도(예: fsync) 같은 엔티티의 다른 수정을 막지 않는다.<br>
+ * 다만 알림은 clear 와의 배타 구간 안에서 호출한다. clear 전에 반영된 저장/수정의 알림은 onClear 보다 먼저, clear 뒤의 알림은 onClear 보다 나중에 온다.
+ * 그래서 영속화 로그에서 CLEAR 레코드 앞뒤의 순서가 실제 순서와 같다. (CLEAR 에는 version 이 없어서 재생할 때 순서를 바로잡을 수 없다.)
+ */
+public class InMemoryRepository<T extends Identifiable> {
+
+    private final EntityStore<T> store;
+    private final UnaryOperator<T> copier;
+    private final AtomicLong sequence = new AtomicLong();
+    private final RepositoryMetrics metrics = new RepositoryMetrics();
+    private final StripedReadWriteLock clearLock = new StripedReadWriteLock(16); //저장/수정(공유) ↔ clear(배타)
+
+    //조회가 대부분이므로 CopyOnWrite
+    private final List<EntityIndex<T>> indexes = new CopyOnWriteArrayList<>();
+    private final List<EntityChangeListener<? super T>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param copier 엔티티 복사, 수정 전 값을 변경 알림에 넘기거나 copy-on-write 저장소에서 사용한다.
+     */
+    public InMemoryRepository(UnaryOperator<T> copier) {
+        this(new CopyOnWriteEntityStore<>(copier), copier);
+    }
+
+    public InMemoryRepository(EntityStore<T> store, UnaryOperator<T> copier) {
+        this.store = store;
+        this.copier = copier;
+    }
+
+    /**
+     * 보조 인덱스를 등록한다. 이미 저장된 엔티티도 인덱스에 넣는다.<br>
+     * 등록하는 동안 저장된 엔티티가 빠질 수 있으므로, 저장소를 만들 때 등록한다.
+     */
+    public <I extends EntityIndex<T>> I addIndex(I index) {
+        for (T entity : store.findAll()) {
+            index.add(entity);
+        }
+        indexes.add(index);
+        return index;
+    }
+
+    public void addListener(EntityChangeListener<? super T> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(EntityChangeListener<? super T> listener) {
+        listeners.remove(listener);
+    }
+
+    public T save(T entity) {
+        entity.setId(sequence.incrementAndGet());
+        Lock lock = clearLock.lockShared();
+        try {
+            insert(entity);
+        } finally {
+            lock.unlock();
+        }
+        metrics.save(1);
+        return entity;
+    }
+
+    /**
+     * <h2>일괄 저장</h2>
+     * id를 한 번의 CAS 로 entities 개수만큼 미리 발급받아 저장한다.
+     */
+    public List<T> saveAll(List<T> entities) {
+        long id = sequence.getAndAdd(entities.size());
+        int saved = 0;
+        Lock lock = clearLock.lockShared();
+        try {
+            for (T entity : entities) {
+                entity.setId(++id);
+                addIndexes(entity);
+                store.put(entity);
+                saved++;
+            }
+        } finally {
+            try {
+                //인덱스가 거부해도 이미 저장한 엔티티는 알린다. 알림은 한 번에 넘겨서 영속화 로그가 한 번만 기다리게 한다.
+                if (saved > 0) {
+                    List<T> savedEntities = entities.subList(0, saved);
+                    for (EntityChangeListener<? super T> listener : listeners) {
+                        listener.onSaveAll(savedEntities);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            metrics.save(saved);
+        }
+        return entities;
+    }
+
+    /**
+     * <h2>저장된 엔티티 복원</h2>
+     * 영속화 로그 재생처럼 이미 id가 있는 엔티티를 그대로 저장한다.<br>
+     * 이후 save 에서 id가 겹치지 않도록 sequence 를 복원한 id 이상으로 올린다.<br>
+     * 새 엔티티면 onSave, 기존 엔티티를 교체하면 onUpdate 로 알린다.
+     */
+    public void restore(T entity) {
+        sequence.accumulateAndGet(entity.getId(), Math::max);
+        T previous;
+        Lock lock = clearLock.lockShared();
+        try {
+            previous = store.findById(entity.getId());
+            if (previous != null) {
+                removeIndexes(previous);
+            }
+            try {
+                addIndexes(entity);
+            } catch (RuntimeException e) {
+                if (previous != null) {
+                    addIndexes(previous);
+                }
+                throw e;
+            }
+            store.put(entity);
+            for (EntityChangeListener<? super T> listener : listeners) {
+                if (previous == null) {
+                    listener.onSave(entity);
+                } else {
+                    listener.onUpdate(previous, entity);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public T findById(long id) {
+        metrics.read();
+        return store.findById(id);
+    }
+
+    public List<T> findAll() {
+        return store.findAll();
+    }
+
+    /**
+     * <h2>키셋(커서) 페이징</h2>
+     * afterId 다음 id부터 최대 limit 개를 id 순서로 조회한다. afterId 가 null 이면 처음부터 조회.<br>
+     * 전체를 복사하지 않고 id 순서 자료구조에서 필요한 만큼만 읽는다.
+     */
+    public List<T> findPage(Long afterId, int limit) {
+        return store.findPage(afterId, limit);
+    }
+
+    /**
+     * 보조 인덱스가 반환한 id 순서대로 조회한다. 인덱스 조회 이후 삭제된 엔티티는 제외한다.
+     */
+    public List<T> findAllById(List<Long> ids) {
+        List<T> entities = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T entity = store.findById(id);
+            if (entity != null) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
+    public boolean update(long id, Consumer<? super T> mutator) {
+        return update(id, entity -> true, mutator);
+    }
+
+    /**
+     * <h2>조건부 수정</h2>
+     * 현재 값이 condition 을 만족할 때만 mutator 로 수정한다.<br>
+     * 확인과 수정이 같은 엔티티에 대해 원자적으로 실행되므로, 같은 조건으로 동시에 수정하면 조건을 바꾸는 수정은 하나만 성공한다.<br>
+     * 수정한 값을 인덱스가 거부하면 인덱스를 수정 전 값으로 되돌리고 예외를 던진다. 저장소에는 반영되지 않는다.
+     *
+     * @return 수정했으면 true, 엔티티가 없거나 조건을 만족하지 않으면 false
+     */
+    public boolean update(long id, Predicate<? super T> condition, Consumer<? super T> mutator) {
+        List<T> change = new ArrayList<>(2); //수정 전, 수정 후
+        boolean updated;
+        Lock lock = clearLock.lockShared();
+        try {
+            updated = store.update(id, entity -> {
+                if (!condition.test(entity)) {
+                    return null;
+                }
+                T before = copier.apply(entity);
+                removeIndexes(before);
+                mutator.accept(entity);
+                try {
+                    addIndexes(entity);
+                } catch (RuntimeException e) {
+                    addIndexes(before);
+                    throw e;
+                }
+                change.add(before);
+                change.add(entity);
+                return entity;
+            });
+            if (updated) {
+                //저장소에 반영된 뒤 엔티티 락 밖에서 알린다. clear 와는 배타.
+                for (EntityChangeListener<? super T> listener : listeners) {
+                    listener.onUpdate(change.get(0), change.get(1));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        metrics.update(updated);
+        return updated;
+    }
+
+    public void clear() {
+        clearLock.lockExclusive(); //진행 중인 저장/수정이 끝난 뒤 저장소와 인덱스를 함께 비운다.
+        try {
+            store.clear();
+            for (EntityIndex<T> index : indexes) {
+                index.clear();
+            }
+            for (EntityChangeListener<? super T> listener : listeners) {
+                listener.onClear(); //이후 저장/수정의 알림보다 먼저
+            }
+        } finally {
+            clearLock.unlockExclusive();
+        }
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public EntitySnapshot<T> snapshot() {
+        return store.snapshot();
+    }
+
+    public RepositoryMetrics.Snapshot metrics() {
+        return metrics.snapshot();
+    }
+
+    /**
+     * 인덱스에 먼저 등록해서 중복 검사를 통과한 엔티티만 저장소에 넣는다.
+     */
+    private void insert(T entity) {
+        addIndexes(entity);
+        store.put(entity);
+        for (EntityChangeListener<? super T> listener : listeners) {
+            listener.onSave(entity);
+        }
+    }
+
+    /**
+     * 인덱스 하나라도 거부하면, 이미 등록한 인덱스에서 다시 제거하고 예외를 던진다.
+     */
+    private void addIndexes(T entity) {
+        int added = 0;
+        try {
+            for (EntityIndex<T> index : indexes) {
+                index.add(entity);
+                added++;
+            }
+        } catch (RuntimeException e) {
+            for (int i = 0; i < added; i++) {
+                indexes.get(i).remove(entity);
+            }
+            throw e;
+        }
+    }
+
+    private void removeIndexes(T entity) {
+        for (EntityIndex<T> index : indexes) {
+            index.remove(entity);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package thespeace.springmvc2.common.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <h1>불변 long 키 맵 (persistent map)</h1>
+ * 수정하면 기존 맵은 그대로 두고 새 맵을 반환한다. 바뀐 경로의 노드만 새로 만들고 나머지 노드는 이전 맵과 공유한다.(구조적 공유)<br>
+ * 따라서 한 번 얻은 맵은 이후 수정과 무관하게 그 시점의 내용을 그대로 보여주는 스냅샷이 된다.
+ *
+ * <h2>구조</h2>
+ * <ul>
+ *     <li>키를 5bit 씩 나누어 32갈래 트라이로 찾아간다. 노드는 존재하는 자식만 bitmap 과 압축 배열로 보관한다.(HAMT 와 같은 노드 구조)</li>
+ *     <li>키를 해시하지 않고 그대로 사용하므로 트라이를 순서대로 순회하면 키 순서가 된다. 키셋 페이징에 사용한다.</li>
+ *     <li>루트는 현재 가장 큰 키를 담을 수 있는 높이만 유지한다. 순서대로 발급된 id 천만 개도 깊이 5 이내이다.</li>
+ *     <li>put 비용은 O(깊이 * 32) 복사, get 은 O(깊이)</li>
+ * </ul>
+ * 키는 0 이상이어야 한다.
+ */
+final class PersistentLongMap<V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Node EMPTY_NODE = new Node(0, new Object[0]);
+    private static final PersistentLongMap<?> EMPTY = new PersistentLongMap<>(EMPTY_NODE, 0, 0, 0L);
+
+    private final Node root;
+    private final int shift;
+    private final int size;
+    private final long version;
+
+    private PersistentLongMap(Node root, int shift, int size, long version) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+        this.version = version;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentLongMap<V> empty() {
+        return (PersistentLongMap<V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 수정할 때마다 1씩 증가한다. 같은 버전이면 같은 내용이다.
+     */
+    long version() {
+        return version;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        if (key < 0 || !fits(key, shift)) {
+            return null;
+        }
+        Node node = root;
+        for (int level = shift; ; level -= BITS) {
+            int bit = 1 << ((key >>> level) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object child = node.children[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (level == 0) {
+                return (V) child;
+            }
+            node = (Node) child;
+        }
+    }
+
+    /**
+     * 내용을 모두 비운 맵, 버전은 이어서 증가한다.
+     */
+    PersistentLongMap<V> cleared() {
+        return new PersistentLongMap<>(EMPTY_NODE, 0, 0, version + 1);
+    }
+
+    PersistentLongMap<V> put(long key, V value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("key must not be negative: " + key);
+        }
+        Node newRoot = root;
+        int newShift = shift;
+        while (!fits(key, newShift)) {
+            if (newRoot.bitmap != 0) {
+                newRoot = new Node(1, new Object[]{newRoot}); //기존 루트는 새 루트의 0번 자식이 된다.
+            }
+            newShift += BITS;
+        }
+        boolean[] added = new boolean[1];
+        newRoot = put(newRoot, newShift, key, value, added);
+        return new PersistentLongMap<>(newRoot, newShift, added[0] ? size + 1 : size, version + 1);
+    }
+
+    /**
+     * afterKey 보다 큰 키의 값을 키 순서로 최대 limit 개 반환, afterKey 가 null 이면 처음부터 반환.
+     */
+    @SuppressWarnings("unchecked")
+    List<V> page(Long afterKey, int limit) {
+        List<Object> values = new ArrayList<>(Math.min(limit, Math.max(size, 1)));
+        long from = afterKey == null ? 0L : afterKey + 1;
+        if (limit > 0 && from >= 0 && fits(from, shift)) {
+            collect(root, shift, 0L, from, values, limit);
+        }
+        return (List<V>) values;
+    }
+
+    private static boolean fits(long key, int shift) {
+        return shift + BITS >= Long.SIZE || (key >>> (shift + BITS)) == 0;
+    }
+
+    private static Node put(Node node, int level, long key, Object value, boolean[] added) {
+        int bit = 1 << ((key >>> level) & MASK);
+        int index = Integer.bitCount(node.bitmap & (bit - 1));
+        boolean exists = (node.bitmap & bit) != 0;
+
+        Object child;
+        if (level == 0) {
+            child = value;
+            added[0] = !exists;
+        } else {
+            child = put(exists ? (Node) node.children[index] : EMPTY_NODE, level - BITS, key, value, added);
+        }
+
+        if (exists) {
+            Object[] children = node.children.clone();
+            children[index] = child;
+            return new Node(node.bitmap, children);
+        }
+        Object[] children = new Object[node.children.length + 1];
+        System.arraycopy(node.children, 0, children, 0, index);
+        children[index] = child;
+        System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+        return new Node(node.bitmap | bit, children);
+    }
+
+    /**
+     * @return limit 개를 채웠으면 false
+     */
+    private static boolean collect(Node node, int level, long base, long from, List<Object> values, int limit) {
+        int bitmap = node.bitmap;
+        for (int index = 0; bitmap != 0; index++) {
+            int digit = Integer.numberOfTrailingZeros(bitmap);
+            bitmap &= bitmap - 1;
+
+            long childBase = base | ((long) digit << level);
+            long childLast = childBase | ((1L << level) - 1);
+            if (Long.compareUnsigned(childLast, from) < 0) {
+                continue; //from 보다 작은 키만 있는 자식은 건너뛴다.
+            }
+            if (level == 0) {
+                values.add(node.children[index]);
+                if (values.size() >= limit) {
+                    return false;
+                }
+            } else if (!collect((Node) node.children[index], level - BITS, childBase, from, values, limit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private record Node(int bitmap, Object[] children) {
+    }
+}
@@ -0,0 +1,41 @@
+package thespeace.springmvc2.common.repository;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h2>저장소 사용량 카운터</h2>
+ * 요청 스레드마다 증가시키므로 AtomicLong 대신 LongAdder 를 사용한다.(스레드별 셀에 나누어 더해서 CAS 경합이 없다)
+ */
+public class RepositoryMetrics {
+
+    private final LongAdder saves = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder updateConflicts = new LongAdder();
+
+    void save(int count) {
+        saves.add(count);
+    }
+
+    void read() {
+        reads.increment();
+    }
+
+    void update(boolean updated) {
+        if (updated) {
+            updates.increment();
+        } else {
+            updateConflicts.increment();
+        }
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(saves.sum(), reads.sum(), updates.sum(), updateConflicts.sum());
+    }
+
+    /**
+     * @param updateConflicts 대상이 없거나 조건(예: version)이 맞지 않아 수정하지 않은 횟수
+     */
+    public record Snapshot(long saves, long reads, long updates, long updateConflicts) {
+    }
+}
@@ -0,0 +1,134 @@
+package thespeace.springmvc2.common.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+/**
+ * <h2>정렬 보조 인덱스</h2>
+ * 엔티티의 특정 필드 값과 엔티티 id를 (값, id) 순서로 정렬해서 보관한다.<br>
+ * 같은 값을 가진 엔티티가 여러 개여도 id로 구분되므로 하나의 정렬 집합만으로 범위 조회, 접두사 조회가 가능하다.
+ * <ul>
+ *     <li>ConcurrentSkipListSet : 락 없이 정렬 상태를 유지하는 동시성 자료구조, 추가/삭제/범위 조회가 O(log n)</li>
+ *     <li>null 값은 인덱스에 넣지 않는다. 검증을 통과하지 않은 엔티티는 조회 조건에 걸리지 않는다.</li>
+ *     <li>키셋 페이징 : 이전 페이지 마지막 항목의 (값, id) 다음부터 limit 개만 읽는다. 값이 같은 항목이 많아도 id로 이어서 읽는다.</li>
+ * </ul>
+ */
+public class SortedIndex<T extends Identifiable, K extends Comparable<? super K>> implements EntityIndex<T> {
+
+    private final Function<T, K> keyExtractor;
+    private final NavigableSet<Entry<K>> entries = new ConcurrentSkipListSet<>();
+
+    public SortedIndex(Function<T, K> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    @Override
+    public void add(T entity) {
+        K key = keyExtractor.apply(entity);
+        if (key != null) {
+            entries.add(new Entry<>(key, entity.getId()));
+        }
+    }
+
+    @Override
+    public void remove(T entity) {
+        K key = keyExtractor.apply(entity);
+        if (key != null) {
+            entries.remove(new Entry<>(key, entity.getId()));
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * from ~ to 범위(양 끝 포함)에 속하는 엔티티 id를 값 순서로 반환, null 이면 해당 방향으로 범위 제한이 없다.<br>
+     * from 이 to 보다 크면 빈 목록을 반환한다.
+     */
+    public List<Long> range(K from, K to) {
+        return range(from, to, null, 0L, Integer.MAX_VALUE);
+    }
+
+    /**
+     * <h2>범위 조회, 키셋 페이징</h2>
+     * from ~ to 범위에서 (afterKey, afterId) 다음 항목부터 최대 limit 개의 id를 값 순서로 반환한다. afterKey 가 null 이면 처음부터 조회.
+     */
+    public List<Long> range(K from, K to, K afterKey, long afterId, int limit) {
+        return scan(from == null ? null : new Entry<>(from, Long.MIN_VALUE),
+                to == null ? null : new Entry<>(to, Long.MAX_VALUE),
+                afterKey, afterId, limit, id -> true);
+    }
+
+    /**
+     * 문자열 인덱스 전용, prefix 로 시작하는 엔티티 id를 사전 순서로 반환.
+     */
+    public static List<Long> prefix(SortedIndex<?, String> index, String prefix) {
+        return prefix(index, prefix, null, 0L, Integer.MAX_VALUE, id -> true);
+    }
+
+    /**
+     * <h2>접두사 조회, 키셋 페이징</h2>
+     * prefix 로 시작하는 항목 중 (afterKey, afterId) 다음 항목부터, filter 를 만족하는 id를 최대 limit 개 반환한다.<br>
+     * filter 는 인덱스 순서대로 읽으면서 적용하므로, 다른 조건으로 걸러도 페이지 크기와 순서가 유지된다.
+     */
+    public static List<Long> prefix(SortedIndex<?, String> index, String prefix, String afterKey, long afterId, int limit, LongPredicate filter) {
+        return index.scan(new Entry<>(prefix, Long.MIN_VALUE), new Entry<>(prefix + Character.MAX_VALUE, Long.MAX_VALUE),
+                afterKey, afterId, limit, filter);
+    }
+
+    /**
+     * lower ~ upper(양 끝 포함, null 이면 제한 없음) 범위를 커서 다음부터 읽는다.<br>
+     * 커서가 범위 안에 있으면 커서를 하한으로 바꾼다. 하한이 상한보다 크면(뒤집힌 범위, 커서가 범위 끝 이후) 빈 목록이다. subSet 은 이 경우 IllegalArgumentException 을 던진다.
+     */
+    private List<Long> scan(Entry<K> lower, Entry<K> upper, K afterKey, long afterId, int limit, LongPredicate filter) {
+        boolean lowerInclusive = true;
+        if (afterKey != null) {
+            Entry<K> cursor = new Entry<>(afterKey, afterId);
+            if (lower == null || cursor.compareTo(lower) >= 0) {
+                lower = cursor;
+                lowerInclusive = false;
+            }
+        }
+        if (lower != null && upper != null && lower.compareTo(upper) > 0) {
+            return List.of();
+        }
+
+        NavigableSet<Entry<K>> range = entries;
+        if (lower != null && upper != null) {
+            range = entries.subSet(lower, lowerInclusive, upper, true);
+        } else if (lower != null) {
+            range = entries.tailSet(lower, lowerInclusive);
+        } else if (upper != null) {
+            range = entries.headSet(upper, true);
+        }
+        return ids(range, limit, filter);
+    }
+
+    private static List<Long> ids(NavigableSet<? extends Entry<?>> range, int limit, LongPredicate filter) {
+        List<Long> ids = new ArrayList<>();
+        for (Entry<?> entry : range) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            if (filter.test(entry.id())) {
+                ids.add(entry.id());
+            }
+        }
+        return ids;
+    }
+
+    private record Entry<K extends Comparable<? super K>>(K key, long id) implements Comparable<Entry<K>> {
+
+        @Override
+        public int compareTo(Entry<K> other) {
+            int result = key.compareTo(other.key);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+}
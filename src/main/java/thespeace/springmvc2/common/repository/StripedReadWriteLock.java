@@ -0,0 +1,52 @@
+package thespeace.springmvc2.common.repository;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <h2>칸을 나눈 읽기/쓰기 락</h2>
+ * 자주 잡는 공유(읽기) 쪽과 드물게 잡는 배타(쓰기) 쪽을 나눈다.
+ * <ul>
+ *     <li>공유 : 스레드마다 정해진 칸 하나의 읽기 락만 잡는다. 읽기 락 하나를 모든 스레드가 CAS 로 잡으면 그 카운터에서 경합이 생긴다.</li>
+ *     <li>배타 : 모든 칸의 쓰기 락을 순서대로 잡는다. 진행 중인 공유 작업이 모두 끝나야 시작하고, 끝날 때까지 새 공유 작업은 기다린다.</li>
+ * </ul>
+ */
+final class StripedReadWriteLock {
+
+    private final ReentrantReadWriteLock[] locks;
+    private final int mask;
+
+    /**
+     * @param stripes 칸 수, 2의 거듭제곱
+     */
+    StripedReadWriteLock(int stripes) {
+        this.locks = new ReentrantReadWriteLock[stripes];
+        this.mask = stripes - 1;
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /**
+     * 현재 스레드 칸의 읽기 락을 잡는다.
+     *
+     * @return 잡은 락, 같은 락으로 unlock 해야 한다.
+     */
+    Lock lockShared() {
+        Lock lock = locks[(int) (Thread.currentThread().getId() & mask)].readLock();
+        lock.lock();
+        return lock;
+    }
+
+    void lockExclusive() {
+        for (ReentrantReadWriteLock lock : locks) {
+            lock.writeLock().lock();
+        }
+    }
+
+    void unlockExclusive() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package thespeace.springmvc2.common.repository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * <h2>유일 해시 인덱스</h2>
+ * 엔티티의 특정 필드 값으로 엔티티 id를 O(1)에 찾는다. 같은 값을 가진 엔티티는 하나만 허용한다.
+ * <ul>
+ *     <li>ConcurrentHashMap.putIfAbsent : 같은 값으로 동시에 저장해도 하나만 등록된다. 확인과 등록 사이에 끼어들 틈이 없다.</li>
+ *     <li>중복이면 {@link DuplicateEntityException}이 발생하고, {@link InMemoryRepository}는 저장/수정을 반영하지 않는다.</li>
+ *     <li>null 값은 인덱스에 넣지 않는다.</li>
+ * </ul>
+ */
+public class UniqueIndex<T extends Identifiable, K> implements EntityIndex<T> {
+
+    private final Function<T, K> keyExtractor;
+    private final Map<K, Long> ids = new ConcurrentHashMap<>();
+
+    public UniqueIndex(Function<T, K> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    @Override
+    public void add(T entity) {
+        K key = keyExtractor.apply(entity);
+        if (key == null) {
+            return;
+        }
+        Long existing = ids.putIfAbsent(key, entity.getId());
+        if (existing != null && !existing.equals(entity.getId())) {
+            throw new DuplicateEntityException("duplicate key=" + key + ", id=" + existing);
+        }
+    }
+
+    @Override
+    public void remove(T entity) {
+        K key = keyExtractor.apply(entity);
+        if (key != null) {
+            ids.remove(key, entity.getId());
+        }
+    }
+
+    @Override
+    public void clear() {
+        ids.clear();
+    }
+
+    /**
+     * @return key 로 등록된 엔티티 id, 없으면 null
+     */
+    public Long findId(K key) {
+        return key == null ? null : ids.get(key);
+    }
+}
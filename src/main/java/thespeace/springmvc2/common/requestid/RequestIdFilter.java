@@ -0,0 +1,84 @@
+package thespeace.springmvc2.common.requestid;
+
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.MDC;
+
+import java.io.IOException;
+
+/**
+ * <h1>요청 id 필터</h1>
+ * 요청마다 id 를 하나만 정하고, 필터/인터셉터/컨트롤러의 모든 로그가 같은 id 를 쓰게 한다.
+ * <ul>
+ *     <li>요청에 {@value #HEADER} 헤더가 있으면 그 값을 쓴다.(앞단의 프록시나 다른 서비스와 같은 id) 형식이 맞지 않으면 새로 만든다.</li>
+ *     <li>id 는 request attribute({@link #ATTRIBUTE})와 MDC({@value #MDC_KEY})에 담고, 응답 헤더로도 돌려준다.</li>
+ *     <li>오류 페이지 요청(DispatcherType.ERROR)은 같은 request 객체로 다시 호출되므로, attribute 에 남은 id 를 다시 MDC 에 담는다.
+ *         REQUEST 와 ERROR 요청의 로그가 같은 id 로 이어진다.</li>
+ *     <li>요청 스레드는 재사용되므로 필터를 나갈 때 MDC 를 이전 값으로 되돌린다.</li>
+ * </ul>
+ * 가장 먼저 실행되도록 등록해야 다른 필터의 로그에도 id 가 남는다.
+ */
+@RequiredArgsConstructor
+public class RequestIdFilter implements Filter {
+
+    public static final String HEADER = "X-Request-Id";
+    public static final String ATTRIBUTE = RequestIdFilter.class.getName() + ".requestId";
+    public static final String MDC_KEY = "requestId";
+    private static final int MAX_LENGTH = 64;
+
+    private final RequestIdGenerator generator;
+
+    /**
+     * @return 필터를 거치지 않은 요청이면 null
+     */
+    public static String get(ServletRequest request) {
+        return (String) request.getAttribute(ATTRIBUTE);
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        String requestId = get(request);
+        if (requestId == null) {
+            requestId = resolve((HttpServletRequest) request);
+            request.setAttribute(ATTRIBUTE, requestId);
+            ((HttpServletResponse) response).setHeader(HEADER, requestId);
+        }
+
+        String previous = MDC.get(MDC_KEY);
+        MDC.put(MDC_KEY, requestId);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (previous == null) {
+                MDC.remove(MDC_KEY);
+            } else {
+                MDC.put(MDC_KEY, previous);
+            }
+        }
+    }
+
+    private String resolve(HttpServletRequest request) {
+        String incoming = request.getHeader(HEADER);
+        return isValid(incoming) ? incoming : generator.next();
+    }
+
+    /**
+     * 로그와 응답 헤더에 그대로 쓰므로 영문, 숫자, {@code - _ . :}만 허용한다.(로그 위조, 헤더 주입 방지)
+     */
+    static boolean isValid(String requestId) {
+        if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < requestId.length(); i++) {
+            char c = requestId.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == ':';
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,97 @@
+package thespeace.springmvc2.common.requestid;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <h1>요청 id 생성기</h1>
+ * 요청 id 는 로그를 이어 붙이기 위한 값일 뿐, 추측할 수 없어야 하는 값이 아니다. 요청마다 {@code UUID.randomUUID()}로 SecureRandom 을 쓸 필요가 없다.
+ * <ul>
+ *     <li>노드 이름 + 스레드 번호 + 스레드별 순번으로 만든다. 잠금도, 공유 변수 쓰기도, 난수도 없다.</li>
+ *     <li>스레드 번호는 스레드가 처음 id 를 만들 때 한 번 받는다. 요청 스레드는 풀에서 재사용되므로 번호가 계속 늘어나지 않는다.</li>
+ *     <li>노드 이름을 지정하지 않으면 시작할 때 한 번 임의로 정한다. 재시작하거나 서버가 여러 대여도 id 가 겹치지 않는다.</li>
+ * </ul>
+ * <blockquote><pre>
+ *     노드 이름-스레드 번호(36진수)-순번(36진수), 예) k3x9qa-7-1z4
+ * </pre></blockquote>
+ */
+public final class RequestIdGenerator {
+
+    private static final int NODE_LENGTH = 6;
+    private static final int MAX_NODE_LENGTH = 16;
+    private static final byte[] DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] node;
+    private final AtomicInteger threads = new AtomicInteger();
+    private final ThreadLocal<Counter> counters = ThreadLocal.withInitial(this::newCounter);
+
+    /**
+     * @param node 노드 이름(영문, 숫자 {@value #MAX_NODE_LENGTH}자 이하), 비어 있으면 임의로 정한다.
+     * @throws IllegalArgumentException 노드 이름에 다른 문자가 있는 경우
+     */
+    public RequestIdGenerator(String node) {
+        this.node = (node == null || node.isEmpty() ? randomNode() : validNode(node)).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public String next() {
+        Counter counter = counters.get();
+        long sequence = ++counter.sequence;
+
+        //36진수 long 은 최대 13자
+        byte[] id = new byte[node.length + counter.thread.length + 15];
+        System.arraycopy(node, 0, id, 0, node.length);
+        int i = node.length;
+        id[i++] = '-';
+        System.arraycopy(counter.thread, 0, id, i, counter.thread.length);
+        i += counter.thread.length;
+        id[i++] = '-';
+        i = putBase36(id, i, sequence);
+        return new String(id, 0, i, StandardCharsets.ISO_8859_1);
+    }
+
+    private Counter newCounter() {
+        byte[] thread = new byte[13];
+        int length = putBase36(thread, 0, threads.incrementAndGet());
+        return new Counter(Arrays.copyOf(thread, length));
+    }
+
+    private static int putBase36(byte[] target, int offset, long value) {
+        int digits = 1;
+        for (long v = value / 36; v > 0; v /= 36) {
+            digits++;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            target[i] = DIGITS[(int) (value % 36)];
+            value /= 36;
+        }
+        return offset + digits;
+    }
+
+    private static String randomNode() {
+        SecureRandom random = new SecureRandom();
+        byte[] node = new byte[NODE_LENGTH];
+        for (int i = 0; i < NODE_LENGTH; i++) {
+            node[i] = DIGITS[random.nextInt(DIGITS.length)];
+        }
+        return new String(node, StandardCharsets.US_ASCII);
+    }
+
+    private static String validNode(String node) {
+        if (node.length() > MAX_NODE_LENGTH || !node.chars().allMatch(c -> c < 0x80 && Character.isLetterOrDigit(c))) {
+            throw new IllegalArgumentException("request id node must be up to " + MAX_NODE_LENGTH + " letters or digits: " + node);
+        }
+        return node;
+    }
+
+    private static final class Counter {
+
+        private final byte[] thread;
+        private long sequence;
+
+        private Counter(byte[] thread) {
+            this.thread = thread;
+        }
+    }
+}
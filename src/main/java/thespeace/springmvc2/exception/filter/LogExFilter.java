@@ -2,10 +2,12 @@ package thespeace.springmvc2.exception.filter;
 
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import thespeace.springmvc2.common.accesslog.AccessLog;
 
 import java.io.IOException;
-import java.util.UUID;
 
 /**
  * <h1>서블릿 예외 처리 - 필터</h1>
@@ -42,11 +44,14 @@ import java.util.UUID;
  *                   {@code RequestDispatcher.include(request, response);}</li>
  *     <li>ASYNC : 서블릿 비동기 호출</li>
  * </ul>
- *
+ * 접근 로그에는 DispatcherType 이 함께 남으므로, 같은 URI 의 REQUEST 와 ERROR 요청을 구분할 수 있다.
  */
 @Slf4j
+@RequiredArgsConstructor
 public class LogExFilter implements Filter {
 
+    private final AccessLog accessLog;
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
         log.info("log exception filter init");
@@ -54,18 +59,16 @@ public class LogExFilter implements Filter {
 
     @Override
     public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
-        HttpServletRequest httpRequest = (HttpServletRequest) request;
-        String requestURI = httpRequest.getRequestURI();
-
-        String uuid = UUID.randomUUID().toString();
+        long startNanos = System.nanoTime();
+        Exception failure = null;
 
         try {
-            log.info("EXCEPTIOM FILTER REQUEST [{}][{}][{}]", uuid, request.getDispatcherType(), requestURI);
             chain.doFilter(request, response);
         } catch (Exception e) {
+            failure = e;
             throw e;
         } finally {
-            log.info("EXCEPTIOM FILTER RESPONSE [{}][{}][{}]", uuid, request.getDispatcherType(), requestURI);
+            accessLog.record((HttpServletRequest) request, (HttpServletResponse) response, startNanos, failure);
         }
     }
 
@@ -2,43 +2,46 @@ package thespeace.springmvc2.exception.interceptor;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.web.servlet.HandlerInterceptor;
-import org.springframework.web.servlet.ModelAndView;
-
-import java.util.UUID;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import thespeace.springmvc2.common.accesslog.AccessLog;
+import thespeace.springmvc2.common.metrics.HandlerLatencyRecorder;
+import thespeace.springmvc2.common.metrics.RequestStartTimes;
+import thespeace.springmvc2.common.requestid.RequestIdFilter;
 
 @Slf4j
-public class LogExInterceptor implements HandlerInterceptor {
+@RequiredArgsConstructor
+public class LogExInterceptor implements AsyncHandlerInterceptor {
 
     public static final String LOG_ID = "logId";
 
+    private final HandlerLatencyRecorder handlerLatencyRecorder;
+    private final AccessLog accessLog;
+    private final RequestStartTimes startTimes = new RequestStartTimes(); //인터셉터마다 따로 둔다.
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
-
-        String requestURI = request.getRequestURI();
-
-        String uuid = UUID.randomUUID().toString();
-        request.setAttribute(LOG_ID, uuid);
-
-        log.info("REQUEST [{}][{}][{}][{}]", uuid, request.getDispatcherType(), requestURI, handler); //DispatcherType 로그 추가
+        request.setAttribute(LOG_ID, RequestIdFilter.get(request)); //요청마다 새로 만들지 않고 요청 id 필터가 정한 id 를 쓴다.
+        startTimes.start(request, System.nanoTime()); //Long 을 attribute 에 담지 않는다.
         return true;
     }
 
-    @Override
-    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) throws Exception {
-        log.info("postHandle [{}]", modelAndView);
-    }
-
     @Override
     public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
-        String requestURI = request.getRequestURI();
-        String logId = (String)request.getAttribute(LOG_ID);
-
-        log.info("RESPONSE [{}][{}][{}]", logId, request.getDispatcherType(), requestURI); //DispatcherType 로그 추가
+        long startNanos = startTimes.remove(request);
+        if (startNanos != RequestStartTimes.NONE) {
+            handlerLatencyRecorder.record(handler, System.nanoTime() - startNanos); //핸들러별 응답 시간 기록
+            accessLog.record(request, response, startNanos, ex); //예외가 있으면 샘플링하지 않고 남긴다.
+        }
 
         if (ex != null) {
             log.error("afterCompletion error!!", ex);
         }
     }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        startTimes.remove(request); //비동기로 넘어가면 afterCompletion 이 호출되지 않으므로 여기서 비운다.
+    }
 }
@@ -0,0 +1,38 @@
+package thespeace.springmvc2.itemservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import thespeace.springmvc2.itemservice.domain.item.HeapItemStore;
+import thespeace.springmvc2.itemservice.domain.item.ItemStore;
+import thespeace.springmvc2.itemservice.domain.item.OffHeapItemStore;
+
+/**
+ * <h2>상품 저장 방식 선택</h2>
+ * {@code itemservice.store} 설정으로 {@link ItemStore} 구현체를 선택한다.
+ * <ul>
+ *     <li>heap(기본) : {@link HeapItemStore}</li>
+ *     <li>offheap : {@link OffHeapItemStore}, 상품 수가 많아 힙 사용량과 GC 시간이 문제가 될 때 사용</li>
+ * </ul>
+ * <h2>offheap 사용 시 주의</h2>
+ * <ul>
+ *     <li>한 시점의 스냅샷이 없다. 목록 조회(findAll, findPage)는 조회 중인 수정을 일부만 반영할 수 있고,
+ *     영속화 로그 스냅샷도 전체를 복사하는 동안의 수정이 섞인다. (재생 시 version 으로 정리된다)</li>
+ *     <li>보조 인덱스는 여전히 힙에 있다. 힙 사용량은 인덱스만큼 남는다.</li>
+ * </ul>
+ */
+@Slf4j
+@Configuration
+public class ItemStoreConfig {
+
+    @Bean
+    public ItemStore itemStore(@Value("${itemservice.store:heap}") String type) {
+        log.info("item store type={}", type);
+        return switch (type) {
+            case "heap" -> new HeapItemStore();
+            case "offheap" -> new OffHeapItemStore();
+            default -> throw new IllegalArgumentException("unknown itemservice.store: " + type);
+        };
+    }
+}
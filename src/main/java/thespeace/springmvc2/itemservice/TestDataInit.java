@@ -2,6 +2,7 @@ package thespeace.springmvc2.itemservice;
 
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import thespeace.springmvc2.itemservice.domain.item.Item;
 import thespeace.springmvc2.itemservice.domain.item.ItemRepository;
@@ -9,6 +10,7 @@ import thespeace.springmvc2.itemservice.domain.item.ItemRepository;
 
 @Component
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "itemservice.wal.enabled", havingValue = "false", matchIfMissing = true) //영속화 로그를 사용하면 재생한 데이터를 그대로 사용
 public class TestDataInit {
 
     private final ItemRepository itemRepository;
@@ -0,0 +1,15 @@
+package thespeace.springmvc2.itemservice.domain.item;
+
+import thespeace.springmvc2.common.repository.CopyOnWriteEntityStore;
+
+/**
+ * <h1>힙 상품 저장소</h1>
+ * Item 객체를 힙에 보관한다. 수정할 때마다 복사본으로 새 맵을 만드는 {@link CopyOnWriteEntityStore}를 사용한다.<br>
+ * 조회는 락 없이 한 시점의 내용을 보고, 저장된 Item 은 수정되지 않으므로 뷰가 렌더링하는 도중 바뀌지 않는다.
+ */
+public class HeapItemStore extends CopyOnWriteEntityStore<Item> implements ItemStore {
+
+    public HeapItemStore() {
+        super(Item::copyOf);
+    }
+}
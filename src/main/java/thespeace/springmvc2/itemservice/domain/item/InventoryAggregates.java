@@ -0,0 +1,118 @@
+package thespeace.springmvc2.itemservice.domain.item;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <h1>재고 집계</h1>
+ * 상품 수, 총 재고 금액(가격 * 수량의 합), 최소/최대/평균 가격을 {@link ItemRepository}의 변경 알림으로 점진적으로 갱신한다.<br>
+ * 조회할 때 findAll() 로 전체 상품을 순회하지 않으므로 주기적으로 수집하는 메트릭 조회 비용이 상품 수와 무관하다.
+ * <ul>
+ *     <li>LongAdder : 여러 스레드가 동시에 더해도 경합이 적고, 락 없이 합계를 읽는다.</li>
+ *     <li>총 재고 금액은 long 으로 계산한다. int 로 곱하면 가격 1,000,000 * 수량 9,999 만으로도 범위를 넘는다.</li>
+ *     <li>가격별 상품 수를 정렬해서 보관하므로 가격이 수정되거나 상품이 사라져도 최소/최대 가격을 다시 계산하지 않는다.</li>
+ *     <li>각 값은 락 없이 따로 읽으므로, 수정과 동시에 조회하면 값들 사이에 순간적인 차이가 있을 수 있다.</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+public class InventoryAggregates implements ItemChangeListener {
+
+    private final ItemRepository itemRepository;
+
+    private final LongAdder itemCount = new LongAdder();
+    private final LongAdder totalValue = new LongAdder();
+    private final LongAdder priceSum = new LongAdder();
+    private final LongAdder pricedCount = new LongAdder();
+    private final ConcurrentSkipListMap<Integer, Long> priceCounts = new ConcurrentSkipListMap<>();
+
+    /**
+     * 이미 저장된 상품(테스트 데이터 등)을 한 번 반영한 뒤 변경 알림을 받는다.
+     */
+    @PostConstruct
+    public void init() {
+        itemRepository.findAll().forEach(this::add);
+        itemRepository.addListener(this);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        itemRepository.removeListener(this);
+    }
+
+    @Override
+    public void onSave(Item item) {
+        add(item);
+    }
+
+    @Override
+    public void onUpdate(Item before, Item after) {
+        remove(before);
+        add(after);
+    }
+
+    @Override
+    public void onClear() {
+        itemCount.reset();
+        totalValue.reset();
+        priceSum.reset();
+        pricedCount.reset();
+        priceCounts.clear();
+    }
+
+    public Snapshot snapshot() {
+        long priced = pricedCount.sum();
+        Map.Entry<Integer, Long> min = priceCounts.firstEntry();
+        Map.Entry<Integer, Long> max = priceCounts.lastEntry();
+        return new Snapshot(
+                itemCount.sum(),
+                totalValue.sum(),
+                min == null ? null : min.getKey(),
+                max == null ? null : max.getKey(),
+                priced == 0 ? null : (double) priceSum.sum() / priced);
+    }
+
+    private void add(Item item) {
+        itemCount.increment();
+        totalValue.add(valueOf(item));
+        Integer price = item.getPrice();
+        if (price != null) {
+            priceSum.add(price);
+            pricedCount.increment();
+            priceCounts.merge(price, 1L, (count, delta) -> count + delta == 0L ? null : count + delta);
+        }
+    }
+
+    private void remove(Item item) {
+        itemCount.decrement();
+        totalValue.add(-valueOf(item));
+        Integer price = item.getPrice();
+        if (price != null) {
+            priceSum.add(-price);
+            pricedCount.decrement();
+            //알림은 락 밖에서 오므로 같은 상품의 수정이 뒤바뀌어 추가보다 제거가 먼저 올 수 있다. 더하고 빼는 순서와 무관하게 0이 되면 지운다.
+            priceCounts.merge(price, -1L, (count, delta) -> count + delta == 0L ? null : count + delta);
+        }
+    }
+
+    private static long valueOf(Item item) {
+        if (item.getPrice() == null || item.getQuantity() == null) {
+            return 0L;
+        }
+        return (long) item.getPrice() * item.getQuantity();
+    }
+
+    /**
+     * @param minPrice     가격이 있는 상품이 없으면 null
+     * @param maxPrice     가격이 있는 상품이 없으면 null
+     * @param averagePrice 가격이 있는 상품이 없으면 null
+     */
+    public record Snapshot(long itemCount, long totalValue, Integer minPrice, Integer maxPrice, Double averagePrice) {
+    }
+}
@@ -6,12 +6,13 @@ import jakarta.validation.constraints.NotNull;
 import lombok.Data;
 import org.hibernate.validator.constraints.Range; //org.hibernate.validator은 하이버네이트 validator 구현체를 사용할 때만 제공되는 검증 기능, 실무에서도 하이버네이트 validator를 사용하므로 자유롭게 사용해도 된다.
 import org.hibernate.validator.constraints.ScriptAssert;
+import thespeace.springmvc2.common.repository.Identifiable;
 
 @Data
 //@ScriptAssert(lang = "javascript", script = "_this.price * _this.quantity >= 10000", message = "총합이 10000원 넘게 입력해주세요.")
 //ObjectError 처리 수행, 하지만 제약이 많고 복잡하여 실무 검증 기능이 해당 객체의 범위를 넘어서는 경우들도 종종 등장하는데, 그런 경우 즉각 대응이 어렵다.
 //자바 코드로 작성 권장!
-public class Item {
+public class Item implements Identifiable {
 
 //    @NotNull(groups = UpdateCheck.class) //수정 요구사항 추가
     private Long id;
@@ -27,6 +28,8 @@ public class Item {
 //    @Max(value = 9999, groups = SaveCheck.class) //최대 9999까지만 허용, 수정 요구사항은 무제한.
     private Integer quantity;
 
+    private Long version; //수정할 때마다 1 증가, 동시에 수정한 요청을 구분하기 위한 낙관적 락 버전
+
     public Item() {
     }
 
@@ -35,4 +38,14 @@ public class Item {
         this.price = price;
         this.quantity = quantity;
     }
+
+    /**
+     * 저장소가 보관하거나 수정할 복사본, 모든 필드를 그대로 복사한다.
+     */
+    public static Item copyOf(Item item) {
+        Item copy = new Item(item.getItemName(), item.getPrice(), item.getQuantity());
+        copy.setId(item.getId());
+        copy.setVersion(item.getVersion());
+        return copy;
+    }
 }
@@ -0,0 +1,12 @@
+package thespeace.springmvc2.itemservice.domain.item;
+
+import thespeace.springmvc2.common.repository.EntityChangeListener;
+
+/**
+ * <h2>상품 저장소 변경 알림</h2>
+ * {@link ItemRepository}의 save, update, clearStore 가 반영된 직후, 상품 락 밖에서 요청 스레드가 직접 호출한다.<br>
+ * 같은 상품을 동시에 수정하면 알림 순서가 변경 순서와 다를 수 있다. 수정할 때마다 version 이 1 오르므로 순서는 version 으로 판단한다.<br>
+ * onClear 는 clearStore 와 배타적으로 호출되므로, clearStore 전후의 알림 순서는 실제 순서와 같다.
+ */
+public interface ItemChangeListener extends EntityChangeListener<Item> {
+}
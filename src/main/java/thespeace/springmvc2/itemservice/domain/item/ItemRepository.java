@@ -1,41 +1,198 @@
 package thespeace.springmvc2.itemservice.domain.item;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import thespeace.springmvc2.common.repository.EntitySnapshot;
+import thespeace.springmvc2.common.repository.InMemoryRepository;
+import thespeace.springmvc2.common.repository.RepositoryMetrics;
+import thespeace.springmvc2.common.repository.SortedIndex;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Objects;
 
+/**
+ * <h2>상품 저장소</h2>
+ * id 발급, 동시성, 인덱스 갱신, 변경 알림은 {@link InMemoryRepository}가 담당한다.<br>
+ * 상품은 {@link ItemStore}에 id 순서로 보관한다. id 순서 덕분에 키셋 페이징이 가능하다.
+ * <h2>보조 인덱스</h2>
+ * 상품명 접두사, 가격 범위, 수량 범위 조회는 전체 상품을 스캔하지 않고 {@link SortedIndex}를 사용한다.<br>
+ * 인덱스는 save, update, clearStore 에서 함께 갱신된다.
+ * <h2>낙관적 락</h2>
+ * 상품은 수정할 때마다 version 이 1 증가한다. {@link #update(Long, Item, Long)}는 읽을 때의 version 과 현재 version 이 같을 때만 수정한다.<br>
+ * 전역 락 없이 상품 단위로 비교 후 수정하므로, 다른 상품의 수정은 서로 기다리지 않는다.
+ * <h2>변경 알림</h2>
+ * 등록된 {@link ItemChangeListener}에 변경 내용을 알린다. (예: 영속화 로그)
+ */
 @Repository
 public class ItemRepository {
 
-    private static final Map<Long, Item> store = new HashMap<>(); //static
-    private static long sequence = 0L; //static
+    private final InMemoryRepository<Item> repository;
+
+    private final SortedIndex<Item, String> itemNameIndex;
+    private final SortedIndex<Item, Integer> priceIndex;
+    private final SortedIndex<Item, Integer> quantityIndex;
+
+    public ItemRepository() {
+        this(new HeapItemStore());
+    }
+
+    @Autowired
+    public ItemRepository(ItemStore store) {
+        this.repository = new InMemoryRepository<>(store, Item::copyOf);
+        this.itemNameIndex = repository.addIndex(new SortedIndex<>(Item::getItemName));
+        this.priceIndex = repository.addIndex(new SortedIndex<>(Item::getPrice));
+        this.quantityIndex = repository.addIndex(new SortedIndex<>(Item::getQuantity));
+    }
 
     public Item save(Item item) {
-        item.setId(++sequence);
-        store.put(item.getId(), item);
-        return item;
+        item.setVersion(0L);
+        return repository.save(item);
     }
 
+    /**
+     * <h2>일괄 저장</h2>
+     * id를 한 번의 CAS 로 items 개수만큼 미리 발급받아 저장한다.
+     */
+    public List<Item> saveAll(List<Item> items) {
+        for (Item item : items) {
+            item.setVersion(0L);
+        }
+        return repository.saveAll(items);
+    }
+
+    /**
+     * @return 없는 상품이거나 id가 null 이면 null
+     */
     public Item findById(Long id) {
-        return store.get(id);
+        return id == null ? null : repository.findById(id);
     }
 
     public List<Item> findAll() {
-        return new ArrayList<>(store.values());
+        return repository.findAll();
+    }
+
+    /**
+     * <h2>키셋(커서) 페이징</h2>
+     * afterId 다음 id부터 최대 limit 개의 상품을 id 순서로 조회한다. afterId 가 null 이면 처음부터 조회.<br>
+     * 전체 상품을 복사하지 않고 id 순서 자료구조에서 필요한 만큼만 읽으므로 비용은 O(log n + limit)이다.
+     */
+    public List<Item> findPage(Long afterId, int limit) {
+        return repository.findPage(afterId, limit);
+    }
+
+    /**
+     * 상품명이 prefix 로 시작하는 상품을 상품명 순서로 조회
+     */
+    public List<Item> findByItemNamePrefix(String prefix) {
+        return repository.findAllById(SortedIndex.prefix(itemNameIndex, prefix));
+    }
+
+    /**
+     * <h2>상품명 접두사 조회, 키셋 페이징</h2>
+     * 상품명이 prefix 로 시작하고 가격이 minPrice ~ maxPrice 인 상품을, (afterName, afterId) 다음부터 최대 limit 개 상품명 순서로 조회한다.<br>
+     * 가격 조건은 상품명 인덱스를 읽으면서 적용하므로 조건에 맞는 상품이 limit 개 모이면 더 읽지 않는다. 커서가 null 이면 처음부터 조회.
+     */
+    public List<Item> findByItemNamePrefix(String prefix, Integer minPrice, Integer maxPrice, String afterName, Long afterId, int limit) {
+        if (minPrice != null && maxPrice != null && minPrice > maxPrice) {
+            return List.of();
+        }
+        boolean cursor = afterName != null && afterId != null;
+        return repository.findAllById(SortedIndex.prefix(itemNameIndex, prefix,
+                cursor ? afterName : null, cursor ? afterId : 0L, limit,
+                id -> isPriceBetween(repository.findById(id), minPrice, maxPrice)));
+    }
+
+    /**
+     * 가격이 minPrice ~ maxPrice 인 상품을 가격 순서로 조회, null 이면 해당 조건을 적용하지 않는다.
+     */
+    public List<Item> findByPriceBetween(Integer minPrice, Integer maxPrice) {
+        return repository.findAllById(priceIndex.range(minPrice, maxPrice));
+    }
+
+    /**
+     * <h2>가격 범위 조회, 키셋 페이징</h2>
+     * 가격이 minPrice ~ maxPrice 인 상품을 (afterPrice, afterId) 다음부터 최대 limit 개 가격 순서로 조회한다. 커서가 null 이면 처음부터 조회.
+     */
+    public List<Item> findByPriceBetween(Integer minPrice, Integer maxPrice, Integer afterPrice, Long afterId, int limit) {
+        boolean cursor = afterPrice != null && afterId != null;
+        return repository.findAllById(priceIndex.range(minPrice, maxPrice, cursor ? afterPrice : null, cursor ? afterId : 0L, limit));
+    }
+
+    /**
+     * 수량이 minQuantity ~ maxQuantity 인 상품을 수량 순서로 조회, null 이면 해당 조건을 적용하지 않는다.
+     */
+    public List<Item> findByQuantityBetween(Integer minQuantity, Integer maxQuantity) {
+        return repository.findAllById(quantityIndex.range(minQuantity, maxQuantity));
     }
 
     public void update(Long itemId, Item updateParam) {
-        Item findItem = findById(itemId);
+        //같은 상품을 동시에 수정하는 경우, 필드가 섞이지 않도록 해당 상품에 대해서만 원자적으로 수정한다.
+        repository.update(itemId, findItem -> apply(findItem, updateParam));
+    }
+
+    /**
+     * <h2>조건부 수정(낙관적 락)</h2>
+     * 현재 version 이 expectedVersion 과 같을 때만 수정하고 version 을 1 올린다.<br>
+     * 비교와 수정은 원자적으로 실행되므로, 같은 version 으로 동시에 수정하면 하나만 성공한다.
+     *
+     * @return 수정했으면 true, 상품이 없거나 그 사이 다른 요청이 먼저 수정했으면 false
+     */
+    public boolean update(Long itemId, Item updateParam, Long expectedVersion) {
+        return repository.update(itemId,
+                findItem -> Objects.equals(findItem.getVersion(), expectedVersion),
+                findItem -> apply(findItem, updateParam));
+    }
+
+    public void clearStore() {
+        repository.clear();
+    }
+
+    /**
+     * <h2>저장된 상품 복원</h2>
+     * 영속화 로그 재생처럼 이미 id가 있는 상품을 그대로 저장한다.<br>
+     * 이후 save 에서 id가 겹치지 않도록 sequence 를 복원한 id 이상으로 올린다.<br>
+     * 새 상품이면 onSave, 기존 상품을 교체하면 onUpdate 로 알린다. 영속화 로그는 재생이 끝난 뒤 등록되므로 다시 기록되지 않는다.
+     */
+    public void restore(Item item) {
+        repository.restore(item);
+    }
+
+    public void addListener(ItemChangeListener listener) {
+        repository.addListener(listener);
+    }
+
+    public void removeListener(ItemChangeListener listener) {
+        repository.removeListener(listener);
+    }
+
+    /**
+     * 현재 상품 전체의 스냅샷, 기본 저장소(heap)는 복사 없이 O(1)이다. 다른 저장소는 전체를 복사한다.({@link EntitySnapshot})
+     */
+    public EntitySnapshot<Item> snapshot() {
+        return repository.snapshot();
+    }
+
+    public RepositoryMetrics.Snapshot metrics() {
+        return repository.metrics();
+    }
+
+    private static void apply(Item findItem, Item updateParam) {
         findItem.setItemName(updateParam.getItemName());
         findItem.setPrice(updateParam.getPrice());
         findItem.setQuantity(updateParam.getQuantity());
+        findItem.setVersion(findItem.getVersion() == null ? 1L : findItem.getVersion() + 1);
     }
 
-    public void clearStore() {
-        store.clear();
+    private static boolean isPriceBetween(Item item, Integer minPrice, Integer maxPrice) {
+        if (item == null) {
+            return false;
+        }
+        if (minPrice == null && maxPrice == null) {
+            return true;
+        }
+        Integer price = item.getPrice();
+        return price != null
+                && (minPrice == null || price >= minPrice)
+                && (maxPrice == null || price <= maxPrice);
     }
-
 }
@@ -0,0 +1,15 @@
+package thespeace.springmvc2.itemservice.domain.item;
+
+import thespeace.springmvc2.common.repository.EntityStore;
+
+/**
+ * <h2>상품 저장 방식</h2>
+ * {@link ItemRepository}가 상품을 실제로 보관하는 방식을 추상화한다.<br>
+ * id 발급, 보조 인덱스, 변경 알림은 {@link ItemRepository}가 담당하고, 구현체는 id 순서로 상품을 보관하는 일만 한다.
+ * <ul>
+ *     <li>{@link HeapItemStore} : Item 객체를 그대로 힙에 보관(기본)</li>
+ *     <li>{@link OffHeapItemStore} : 필드를 힙 밖의 컬럼에 나누어 보관하고, 조회할 때만 Item 을 만든다.</li>
+ * </ul>
+ */
+public interface ItemStore extends EntityStore<Item> {
+}
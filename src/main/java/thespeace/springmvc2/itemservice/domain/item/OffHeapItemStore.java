@@ -0,0 +1,337 @@
+package thespeace.springmvc2.itemservice.domain.item;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * <h1>오프힙 컬럼 상품 저장소</h1>
+ * 상품이 천만 개 단위가 되면 Item 객체, Long/Integer 박싱 객체, 맵 엔트리가 상품당 100 byte 이상의 힙을 차지하고
+ * GC 가 이 객체들을 계속 추적해야 한다. 이 저장소는 상품 필드를 힙 밖(direct buffer)의 컬럼으로 나누어 보관한다.<br>
+ * {@link ItemRepository}의 보조 인덱스는 이 저장소를 써도 힙에 남는다. 인덱스마다 상품당 skip list 노드와 키 객체가 생기므로
+ * 힙 사용량이 줄어드는 것은 Item 객체와 id 맵 부분뿐이다. ({@code ItemStoreBenchmark}로 저장소 전체 비용을 측정)
+ *
+ * <h2>구조</h2>
+ * <ul>
+ *     <li>id 는 저장소가 순서대로 발급하므로 id 자체를 컬럼의 위치로 사용한다. (id 컬럼을 따로 두지 않는다)</li>
+ *     <li>컬럼은 {@value #CHUNK_SIZE}개 단위 청크로 나누어 필요할 때만 할당한다.</li>
+ *     <li>flags, price, quantity, version, 상품명 위치, 상품명 길이를 각각의 컬럼에 보관한다. 상품당 32 byte</li>
+ *     <li>상품명은 UTF-8 로 인코딩해서 문자열 아레나에 이어 붙인다. 수정 시 이전 상품명 공간은 재사용하지 않는다.</li>
+ *     <li>Item 은 조회할 때마다 새로 만든다. 반환된 Item 을 수정해도 저장소에는 반영되지 않는다.</li>
+ * </ul>
+ *
+ * <h2>동시성</h2>
+ * id 별로 {@value #STRIPES}개의 StampedLock 중 하나를 사용한다. 쓰기는 쓰기 락, 조회는 락 없이 낙관적으로 읽은 뒤
+ * 그 사이에 쓰기가 없었는지 검증하고, 쓰기가 있었으면 읽기 락으로 다시 읽는다.
+ *
+ * <h2>스냅샷 없음</h2>
+ * 힙 저장소와 달리 한 시점의 내용을 보존하지 않는다. findAll, findPage 는 상품을 하나씩 현재 컬럼에서 읽으므로
+ * 읽는 도중 저장/수정/삭제된 상품이 일부만 반영될 수 있다. 상품 하나의 필드는 섞이지 않는다.<br>
+ * {@link #snapshot()}도 같은 방식으로 전체를 복사하므로 O(n)이고 한 시점의 내용이 아니다.
+ */
+public class OffHeapItemStore implements ItemStore {
+
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int STRIPES = 64;
+
+    private static final int PRESENT = 1;
+    private static final int PRICE_NULL = 1 << 1;
+    private static final int QUANTITY_NULL = 1 << 2;
+    private static final int NAME_NULL = 1 << 3;
+    private static final int VERSION_NULL = 1 << 4;
+
+    private final StampedLock[] locks = new StampedLock[STRIPES];
+    private final Object chunkLock = new Object();
+    private volatile Chunk[] chunks = new Chunk[16]; //교체할 때마다 새 배열을 만들어 volatile 로 공개한다.
+    private final StringArena names = new StringArena();
+    private final AtomicLong maxId = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public OffHeapItemStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new StampedLock();
+        }
+    }
+
+    @Override
+    public Item findById(long id) {
+        StampedLock lock = lockFor(id);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                Item item = read(id);
+                if (lock.validate(stamp)) {
+                    return item;
+                }
+            } catch (RuntimeException e) {
+                //읽는 도중 값이 바뀌어 잘못된 위치를 읽은 경우, 아래에서 읽기 락으로 다시 읽는다.
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return read(id);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<Item> findPage(Long afterId, int limit) {
+        List<Item> page = new ArrayList<>(Math.min(limit, 1024));
+        long id = afterId == null ? 1L : afterId + 1;
+        long lastId = maxId.get();
+        while (id <= lastId && page.size() < limit) {
+            if (chunk(id) == null) {
+                id = ((id >>> CHUNK_SHIFT) + 1) << CHUNK_SHIFT; //비어있는 청크는 건너뛴다.
+                continue;
+            }
+            Item item = findById(id);
+            if (item != null) {
+                page.add(item);
+            }
+            id++;
+        }
+        return page;
+    }
+
+    @Override
+    public List<Item> findAll() {
+        return findPage(null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Item put(Item item) {
+        long id = item.getId();
+        StampedLock lock = lockFor(id);
+        long stamp = lock.writeLock();
+        try {
+            Chunk chunk = chunkForWrite(id);
+            int slot = (int) (id & CHUNK_MASK);
+            Item previous = chunk.isPresent(slot) ? materialize(chunk, slot, id) : null;
+            write(chunk, slot, item);
+            if (previous == null) {
+                size.incrementAndGet();
+            }
+            maxId.accumulateAndGet(id, Math::max);
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean update(long id, UnaryOperator<Item> updater) {
+        StampedLock lock = lockFor(id);
+        long stamp = lock.writeLock();
+        try {
+            Chunk chunk = chunk(id);
+            int slot = (int) (id & CHUNK_MASK);
+            if (chunk == null || !chunk.isPresent(slot)) {
+                return false;
+            }
+            Item updated = updater.apply(materialize(chunk, slot, id));
+            if (updated == null) {
+                return false;
+            }
+            write(chunk, slot, updated);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 모든 락을 잡고 청크와 아레나를 버린다. direct buffer 는 GC 가 참조를 정리할 때 해제된다.
+     */
+    @Override
+    public void clear() {
+        long[] stamps = new long[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stamps[i] = locks[i].writeLock();
+        }
+        try {
+            synchronized (chunkLock) {
+                chunks = new Chunk[16];
+            }
+            names.clear();
+            maxId.set(0L);
+            size.set(0);
+        } finally {
+            for (int i = 0; i < STRIPES; i++) {
+                locks[i].unlockWrite(stamps[i]);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * 컬럼과 문자열 아레나가 사용 중인 direct memory 크기(byte)
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk != null) {
+                bytes += Chunk.BYTES;
+            }
+        }
+        return bytes + names.allocatedBytes();
+    }
+
+    private Item read(long id) {
+        Chunk chunk = chunk(id);
+        int slot = (int) (id & CHUNK_MASK);
+        if (chunk == null || !chunk.isPresent(slot)) {
+            return null;
+        }
+        return materialize(chunk, slot, id);
+    }
+
+    private Item materialize(Chunk chunk, int slot, long id) {
+        int flags = chunk.flags.getInt(slot * Integer.BYTES);
+        String itemName = (flags & NAME_NULL) != 0 ? null
+                : names.read(chunk.nameOffsets.getLong(slot * Long.BYTES), chunk.nameLengths.getInt(slot * Integer.BYTES));
+        Integer price = (flags & PRICE_NULL) != 0 ? null : chunk.prices.getInt(slot * Integer.BYTES);
+        Integer quantity = (flags & QUANTITY_NULL) != 0 ? null : chunk.quantities.getInt(slot * Integer.BYTES);
+        Long version = (flags & VERSION_NULL) != 0 ? null : chunk.versions.getLong(slot * Long.BYTES);
+
+        Item item = new Item(itemName, price, quantity);
+        item.setId(id);
+        item.setVersion(version);
+        return item;
+    }
+
+    private void write(Chunk chunk, int slot, Item item) {
+        int flags = PRESENT;
+        if (item.getItemName() == null) {
+            flags |= NAME_NULL;
+        } else {
+            byte[] name = item.getItemName().getBytes(StandardCharsets.UTF_8);
+            chunk.nameOffsets.putLong(slot * Long.BYTES, names.append(name));
+            chunk.nameLengths.putInt(slot * Integer.BYTES, name.length);
+        }
+        if (item.getPrice() == null) {
+            flags |= PRICE_NULL;
+        } else {
+            chunk.prices.putInt(slot * Integer.BYTES, item.getPrice());
+        }
+        if (item.getQuantity() == null) {
+            flags |= QUANTITY_NULL;
+        } else {
+            chunk.quantities.putInt(slot * Integer.BYTES, item.getQuantity());
+        }
+        if (item.getVersion() == null) {
+            flags |= VERSION_NULL;
+        } else {
+            chunk.versions.putLong(slot * Long.BYTES, item.getVersion());
+        }
+        chunk.flags.putInt(slot * Integer.BYTES, flags); //flags 를 마지막에 기록
+    }
+
+    private StampedLock lockFor(long id) {
+        return locks[(int) (id & (STRIPES - 1))];
+    }
+
+    private Chunk chunk(long id) {
+        Chunk[] current = chunks;
+        int index = (int) (id >>> CHUNK_SHIFT);
+        return index < current.length ? current[index] : null;
+    }
+
+    private Chunk chunkForWrite(long id) {
+        Chunk chunk = chunk(id);
+        if (chunk != null) {
+            return chunk;
+        }
+        synchronized (chunkLock) {
+            int index = (int) (id >>> CHUNK_SHIFT);
+            Chunk[] current = chunks;
+            if (index < current.length && current[index] != null) {
+                return current[index];
+            }
+            Chunk[] next = Arrays.copyOf(current, Math.max(current.length, Integer.highestOneBit(index) << 1));
+            next[index] = new Chunk();
+            chunks = next;
+            return next[index];
+        }
+    }
+
+    private static ByteBuffer column(int bytesPerValue) {
+        return ByteBuffer.allocateDirect(CHUNK_SIZE * bytesPerValue).order(ByteOrder.nativeOrder());
+    }
+
+    private static final class Chunk {
+
+        static final long BYTES = (long) CHUNK_SIZE * (Integer.BYTES * 4 + Long.BYTES * 2);
+
+        final ByteBuffer flags = column(Integer.BYTES);
+        final ByteBuffer prices = column(Integer.BYTES);
+        final ByteBuffer quantities = column(Integer.BYTES);
+        final ByteBuffer versions = column(Long.BYTES);
+        final ByteBuffer nameOffsets = column(Long.BYTES);
+        final ByteBuffer nameLengths = column(Integer.BYTES);
+
+        boolean isPresent(int slot) {
+            return (flags.getInt(slot * Integer.BYTES) & PRESENT) != 0;
+        }
+    }
+
+    /**
+     * <h2>문자열 아레나</h2>
+     * 1MB 블록에 UTF-8 바이트를 이어 붙인다. 위치는 (블록 번호 << 20 | 블록 내 오프셋) 으로 표현한다.
+     */
+    private static final class StringArena {
+
+        private static final int BLOCK_SHIFT = 20;
+        private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+        private volatile ByteBuffer[] blocks = new ByteBuffer[0];
+        private int tail = BLOCK_SIZE; //현재 블록에서 다음에 기록할 위치, 처음에는 블록이 없으므로 가득 찬 상태
+
+        synchronized long append(byte[] bytes) {
+            if (bytes.length > BLOCK_SIZE) {
+                throw new IllegalArgumentException("itemName is too long: " + bytes.length + " bytes");
+            }
+            ByteBuffer[] current = blocks;
+            if (tail + bytes.length > BLOCK_SIZE) {
+                current = Arrays.copyOf(current, current.length + 1);
+                current[current.length - 1] = ByteBuffer.allocateDirect(BLOCK_SIZE);
+                blocks = current;
+                tail = 0;
+            }
+            long offset = ((long) (current.length - 1) << BLOCK_SHIFT) | tail;
+            current[current.length - 1].put(tail, bytes);
+            tail += bytes.length;
+            return offset;
+        }
+
+        String read(long offset, int length) {
+            ByteBuffer block = blocks[(int) (offset >>> BLOCK_SHIFT)];
+            byte[] bytes = new byte[length];
+            block.get((int) (offset & (BLOCK_SIZE - 1)), bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        synchronized void clear() {
+            blocks = new ByteBuffer[0];
+            tail = BLOCK_SIZE;
+        }
+
+        long allocatedBytes() {
+            return (long) blocks.length * BLOCK_SIZE;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package thespeace.springmvc2.itemservice.domain.item.wal;
+
+import thespeace.springmvc2.itemservice.domain.item.Item;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * <h2>상품 로그 레코드 인코딩/디코딩</h2>
+ * <blockquote><pre>
+ *     [length:4][crc32c:4][type:1][id:8][version:8][price:4][quantity:4][nameLength:4][name:UTF-8]
+ * </pre></blockquote>
+ * <ul>
+ *     <li>CLEAR 레코드는 type 까지만 기록한다.</li>
+ *     <li>null 은 price, quantity 에서 {@link Integer#MIN_VALUE}, version 에서 {@link Long#MIN_VALUE}, name 에서 길이 -1로 표현한다.</li>
+ *     <li>length, crc 가 맞지 않는 레코드(기록 도중 장애로 잘린 레코드)를 만나면 그 위치에서 재생을 멈춘다.</li>
+ * </ul>
+ */
+final class ItemLogCodec {
+
+    static final byte SAVE = 1;
+    static final byte UPDATE = 2;
+    static final byte CLEAR = 3;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int FIXED_BODY_SIZE = 1 + 8 + 8 + 4 + 4 + 4;
+    private static final int NULL_VALUE = Integer.MIN_VALUE;
+    private static final long NULL_VERSION = Long.MIN_VALUE;
+    private static final long MAX_WINDOW_SIZE = 1L << 28; //256MB 단위로 나누어 매핑
+
+    private ItemLogCodec() {
+    }
+
+    /**
+     * 레코드를 기록하는 데 필요한 최대 바이트 수
+     */
+    static int maxSize(String itemName) {
+        return HEADER_SIZE + FIXED_BODY_SIZE + (itemName == null ? 0 : itemName.length() * 3);
+    }
+
+    static void encode(ByteBuffer buffer, byte type, long id, Long version, String itemName, Integer price, Integer quantity) {
+        int start = buffer.position();
+        int bodyStart = start + HEADER_SIZE;
+        buffer.position(bodyStart);
+        buffer.put(type);
+        if (type != CLEAR) {
+            byte[] name = itemName == null ? null : itemName.getBytes(StandardCharsets.UTF_8);
+            buffer.putLong(id);
+            buffer.putLong(version == null ? NULL_VERSION : version);
+            buffer.putInt(price == null ? NULL_VALUE : price);
+            buffer.putInt(quantity == null ? NULL_VALUE : quantity);
+            buffer.putInt(name == null ? -1 : name.length);
+            if (name != null) {
+                buffer.put(name);
+            }
+        }
+        int end = buffer.position();
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(bodyStart).limit(end));
+        buffer.putInt(start, end - bodyStart);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * <h2>메모리 매핑 재생</h2>
+     * 파일을 메모리에 매핑해서 커널 버퍼 복사 없이 레코드를 순서대로 읽고, items 에 반영한다.
+     *
+     * @return 마지막으로 온전하게 읽은 레코드의 끝 위치, 이 위치 이후는 잘린 레코드이다.
+     */
+    static long replay(FileChannel channel, long position, Map<Long, Item> items) throws IOException {
+        long size = channel.size();
+        while (position < size) {
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, MAX_WINDOW_SIZE));
+            int consumed = replayWindow(window, items);
+            if (consumed == 0) {
+                break;
+            }
+            position += consumed;
+        }
+        return position;
+    }
+
+    /**
+     * @return 온전하게 읽은 바이트 수, 마지막 레코드가 윈도우 경계에 걸치면 그 레코드 앞까지만 읽는다.
+     */
+    private static int replayWindow(ByteBuffer window, Map<Long, Item> items) {
+        CRC32C crc = new CRC32C();
+        while (window.remaining() >= HEADER_SIZE) {
+            int recordStart = window.position();
+            int length = window.getInt();
+            int checksum = window.getInt();
+            if (length <= 0 || length > window.remaining()) {
+                return recordStart;
+            }
+
+            int bodyStart = window.position();
+            crc.reset();
+            crc.update(window.duplicate().limit(bodyStart + length));
+            if ((int) crc.getValue() != checksum) {
+                return recordStart;
+            }
+
+            apply(window, items);
+            window.position(bodyStart + length);
+        }
+        return window.position();
+    }
+
+    private static void apply(ByteBuffer body, Map<Long, Item> items) {
+        byte type = body.get();
+        if (type == CLEAR) {
+            items.clear();
+            return;
+        }
+
+        long id = body.getLong();
+        long version = body.getLong();
+        int price = body.getInt();
+        int quantity = body.getInt();
+        int nameLength = body.getInt();
+        String itemName = null;
+        if (nameLength >= 0) {
+            byte[] name = new byte[nameLength];
+            body.get(name);
+            itemName = new String(name, StandardCharsets.UTF_8);
+        }
+
+        //변경 알림은 락 밖에서 기록되므로 같은 상품의 레코드 순서가 바뀔 수 있다. 이미 더 높은 version 을 읽었으면 버린다.
+        Item applied = items.get(id);
+        if (applied != null && applied.getVersion() != null && version != NULL_VERSION && version < applied.getVersion()) {
+            return;
+        }
+
+        Item item = new Item(itemName, price == NULL_VALUE ? null : price, quantity == NULL_VALUE ? null : quantity);
+        item.setId(id);
+        item.setVersion(version == NULL_VERSION ? null : version);
+        items.put(id, item);
+    }
+}
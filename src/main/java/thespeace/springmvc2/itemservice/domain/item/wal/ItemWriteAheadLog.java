@@ -0,0 +1,404 @@
+package thespeace.springmvc2.itemservice.domain.item.wal;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import thespeace.springmvc2.common.repository.EntitySnapshot;
+import thespeace.springmvc2.itemservice.domain.item.Item;
+import thespeace.springmvc2.itemservice.domain.item.ItemChangeListener;
+import thespeace.springmvc2.itemservice.domain.item.ItemRepository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * <h1>상품 저장소 선행 기록 로그(Write-Ahead Log)</h1>
+ * {@code itemservice.wal.enabled=true} 일 때만 등록된다. 상품 저장소는 메모리에만 있으므로 재시작하면 모든 상품이 사라지는데,
+ * 변경 내용을 파일에 순서대로 남겨두고 기동 시점에 다시 재생해서 복원한다.
+ *
+ * <h2>기록 (그룹 커밋)</h2>
+ * <ul>
+ *     <li>save, update, clearStore 는 저장소에 반영된 뒤(상품 락 밖에서) 레코드를 큐에 넣고, 그 레코드가 fsync 될 때까지 기다린다.
+ *         반환된 변경은 디스크에 있다.</li>
+ *     <li>CLEAR 레코드는 clearStore 와 같은 배타 구간에서 큐에 들어간다. clearStore 전에 반영된 상품의 레코드는 모두 CLEAR 앞에,
+ *         이후의 레코드는 모두 뒤에 있으므로, 재생할 때 지운 상품이 되살아나지 않는다. clearStore 는 진행 중인 쓰기의 fsync 를 기다린다.</li>
+ *     <li>전용 쓰기 스레드가 큐에 쌓인 레코드를 한 번에 꺼내 하나의 버퍼로 인코딩하고, FileChannel 쓰기 한 번,
+ *         fsync 한 번으로 반영한 뒤 기다리던 요청을 모두 깨운다. fsync 중에 들어온 레코드는 다음 배치로 묶인다.
+ *         동시에 기다리는 요청이 많을수록 fsync 한 번을 여럿이 나눠 쓴다.</li>
+ *     <li>쓰기나 fsync 가 한 번이라도 실패하면 그 뒤의 변경은 받지 않는다. 기다리던 요청과 이후 요청은 예외로 끝난다.
+ *         (메모리에는 반영되었지만 디스크에 없는 변경을 성공으로 응답하지 않는다.) 디스크를 확인한 뒤 재시작해야 한다.</li>
+ * </ul>
+ *
+ * <h2>세그먼트와 스냅샷</h2>
+ * <ul>
+ *     <li>로그는 {@code items-<세대>.wal} 세그먼트 파일로 나누어 기록한다.</li>
+ *     <li>현재 세그먼트가 segment-size 를 넘으면 쓰기 스레드는 새 세그먼트로 교체하고 저장소 스냅샷({@link EntitySnapshot})만 잡는다.
+ *         기본 저장소(copy-on-write)에서는 O(1)이다. 스냅샷 파일은 별도 스레드(item-wal-compactor)가 기록하므로,
+ *         상품이 수백만 개여도 그동안 fsync 를 기다리는 요청이 멈추지 않는다.</li>
+ *     <li>스냅샷 파일을 제자리로 옮긴 뒤에야 이전 세그먼트를 삭제한다. 로그 전체 크기는 스냅샷 + 세그먼트 몇 개 정도로 유지된다.</li>
+ *     <li>스냅샷 기록이 실패해도 쓰기 실패가 아니다. 이전 세그먼트가 그대로 남아 있으므로 잃는 변경이 없고, 로그를 남긴 뒤 잠시 후 다시 시도한다.</li>
+ *     <li>스냅샷은 임시 파일에 기록한 뒤 원자적으로 교체하며, 스냅샷 이후 세그먼트의 세대를 헤더에 남긴다.
+ *         교체 도중 장애가 나도 스냅샷 이전 세대의 세그먼트는 재생하지 않는다.</li>
+ * </ul>
+ *
+ * <h2>재생</h2>
+ * 기동 시 스냅샷과 세그먼트를 메모리 매핑으로 읽어 순서대로 반영하고, 마지막 상태만 저장소에 복원한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "itemservice.wal.enabled", havingValue = "true")
+public class ItemWriteAheadLog implements ItemChangeListener {
+
+    private static final String SEGMENT_PREFIX = "items-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String SNAPSHOT_FILE = "items.snapshot";
+    private static final int QUEUE_CAPACITY = 100_000;
+    private static final int SNAPSHOT_PAGE_SIZE = 1000;
+    private static final long COMPACTION_RETRY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final ItemRepository itemRepository;
+    private final Path directory;
+    private final long segmentSize;
+
+    private final BlockingQueue<LogEntry> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20); //쓰기 스레드 전용
+    private ByteBuffer snapshotBuffer = ByteBuffer.allocateDirect(1 << 20); //스냅샷 스레드 전용
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "item-wal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private FileChannel segment;
+    private long generation;
+    private Thread writer;
+    private volatile boolean running;
+    private volatile IOException failure; //한 번 실패하면 더 받지 않는다.
+    private volatile boolean compacting; //스냅샷 기록 중
+    private volatile boolean compactionFailed;
+    private volatile long retryCompactionAt; //compactionFailed 일 때 다시 시도할 nanoTime
+
+    public ItemWriteAheadLog(ItemRepository itemRepository,
+                             @Value("${itemservice.wal.dir:./data/item-wal}") String directory,
+                             @Value("${itemservice.wal.segment-size:67108864}") long segmentSize) {
+        this.itemRepository = itemRepository;
+        this.directory = Path.of(directory);
+        this.segmentSize = segmentSize;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+
+        long startTime = System.nanoTime();
+        Map<Long, Item> items = new HashMap<>();
+        long snapshotGeneration = replaySnapshot(items);
+        long lastGeneration = snapshotGeneration;
+        for (Path path : listSegments()) {
+            long segmentGeneration = generationOf(path);
+            if (segmentGeneration < snapshotGeneration) {
+                Files.delete(path); //이미 스냅샷에 반영된 세그먼트
+                continue;
+            }
+            replaySegment(path, items);
+            lastGeneration = Math.max(lastGeneration, segmentGeneration);
+        }
+        items.values().forEach(itemRepository::restore);
+        log.info("item wal replayed items={}, elapsed={}ms", items.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+
+        openSegment(lastGeneration + 1);
+        itemRepository.addListener(this);
+
+        running = true;
+        writer = new Thread(this::writeLoop, "item-wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        itemRepository.removeListener(this);
+        running = false;
+        writer.join(); //큐에 남은 레코드를 모두 기록할 때까지 대기
+        compactor.shutdown();
+        compactor.awaitTermination(1, TimeUnit.MINUTES); //기록 중인 스냅샷은 마저 기록한다.
+        segment.close();
+    }
+
+    @Override
+    public void onSave(Item item) {
+        await(append(ItemLogCodec.SAVE, item));
+    }
+
+    /**
+     * 모두 큐에 넣고 마지막 레코드만 기다린다. 레코드는 순서대로 기록되므로 마지막이 fsync 되면 앞의 레코드도 모두 fsync 된 것이다.
+     */
+    @Override
+    public void onSaveAll(List<? extends Item> items) {
+        CompletableFuture<Void> last = null;
+        for (Item item : items) {
+            last = append(ItemLogCodec.SAVE, item);
+        }
+        if (last != null) {
+            await(last);
+        }
+    }
+
+    @Override
+    public void onUpdate(Item before, Item after) {
+        await(append(ItemLogCodec.UPDATE, after));
+    }
+
+    @Override
+    public void onClear() {
+        await(enqueue(new LogEntry(ItemLogCodec.CLEAR, 0L, null, null, null, null, new CompletableFuture<>())));
+    }
+
+    private CompletableFuture<Void> append(byte type, Item item) {
+        return enqueue(new LogEntry(type, item.getId(), item.getVersion(), item.getItemName(), item.getPrice(), item.getQuantity(), new CompletableFuture<>()));
+    }
+
+    /**
+     * 큐가 가득 차면 쓰기 스레드가 따라잡을 때까지 대기한다.(유실 대신 배압) 저장소 락 밖에서 호출되므로 다른 요청을 막지 않는다.
+     *
+     * @return 레코드가 fsync 되면 완료된다.
+     * @throws IllegalStateException 이전에 쓰기가 실패한 경우
+     */
+    private CompletableFuture<Void> enqueue(LogEntry entry) {
+        checkHealthy();
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("item wal enqueue interrupted", e);
+        }
+        if (failure != null) {
+            failPending(); //확인과 put 사이에 쓰기 스레드가 실패하고 끝났으면, 방금 넣은 레코드는 아무도 꺼내지 않는다.
+        }
+        return entry.written();
+    }
+
+    private void await(CompletableFuture<Void> written) {
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for item wal fsync", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("item wal write failed", e.getCause());
+        }
+    }
+
+    private void checkHealthy() {
+        if (failure != null) {
+            throw new IllegalStateException("item wal is not accepting writes after a write failure", failure);
+        }
+    }
+
+    private void failPending() {
+        List<LogEntry> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        for (LogEntry entry : pending) {
+            entry.written().completeExceptionally(failure);
+        }
+    }
+
+    private void writeLoop() {
+        List<LogEntry> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                LogEntry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+
+                for (LogEntry entry : batch) {
+                    buffer = write(segment, buffer, entry.type(), entry.id(), entry.version(), entry.itemName(), entry.price(), entry.quantity());
+                }
+                flush(segment, buffer);
+                segment.force(false);
+                for (LogEntry entry : batch) {
+                    entry.written().complete(null); //fsync 가 끝난 뒤에 깨운다.
+                }
+                batch.clear();
+
+                if (!compacting && (segment.size() >= segmentSize || compactionRetryDue())) {
+                    startCompaction();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                //어디까지 기록되었는지 알 수 없으므로 배치 전체를 실패로 알리고, 이후 변경은 받지 않는다.
+                log.error("item wal write failed, rejecting further writes. pending records={}", batch.size() + queue.size(), e);
+                failure = e;
+                for (LogEntry entry : batch) {
+                    entry.written().completeExceptionally(e);
+                }
+                failPending();
+                return;
+            }
+        }
+    }
+
+    /**
+     * <h2>스냅샷 + 세그먼트 정리</h2>
+     * 쓰기 스레드에서 새 세그먼트를 열고 저장소 스냅샷을 잡은 뒤, 파일 기록은 스냅샷 스레드에 넘긴다.<br>
+     * 레코드는 저장소에 반영된 뒤에야 큐에 들어오므로, 이전 세그먼트에 기록된 변경은 세그먼트를 교체한 뒤에 잡은 스냅샷에 모두(또는 더 새 값이) 들어 있다.
+     * 따라서 스냅샷 파일이 제자리에 놓이면 이전 세그먼트를 지워도 잃는 변경이 없다.<br>
+     * 스냅샷을 잡은 뒤의 변경은 새 세그먼트에 남는다. 레코드는 상품의 전체 값과 version 을 담고 있어서 스냅샷에 이미 반영된 변경을 다시 재생해도 결과가 같다.
+     */
+    private void startCompaction() throws IOException {
+        long snapshotGeneration = generation + 1;
+        segment.close();
+        openSegment(snapshotGeneration);
+        EntitySnapshot<Item> snapshot = itemRepository.snapshot();
+
+        compacting = true;
+        compactor.execute(() -> {
+            try {
+                writeSnapshot(snapshot, snapshotGeneration);
+                compactionFailed = false;
+                log.info("item wal compacted generation={}, items={}", snapshotGeneration, snapshot.size());
+            } catch (IOException | RuntimeException e) {
+                //이전 세그먼트는 남아 있으므로 재생에는 문제가 없다. 세그먼트가 쌓이지 않도록 잠시 후 다시 시도한다.
+                log.error("item wal compaction failed, retrying in {}s. generation={}",
+                        TimeUnit.NANOSECONDS.toSeconds(COMPACTION_RETRY_NANOS), snapshotGeneration, e);
+                retryCompactionAt = System.nanoTime() + COMPACTION_RETRY_NANOS;
+                compactionFailed = true;
+            } finally {
+                compacting = false;
+            }
+        });
+    }
+
+    private boolean compactionRetryDue() {
+        return compactionFailed && System.nanoTime() - retryCompactionAt >= 0;
+    }
+
+    /**
+     * 스냅샷 스레드에서 실행한다. 임시 파일에 기록하고 fsync 한 뒤 원자적으로 교체하고, 그다음 이전 세대의 세그먼트를 삭제한다.
+     */
+    private void writeSnapshot(EntitySnapshot<Item> snapshot, long snapshotGeneration) throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            snapshotBuffer.clear();
+            snapshotBuffer.putLong(snapshotGeneration);
+
+            Long after = null;
+            List<Item> page;
+            while (!(page = snapshot.findPage(after, SNAPSHOT_PAGE_SIZE)).isEmpty()) {
+                for (Item item : page) {
+                    snapshotBuffer = write(channel, snapshotBuffer, ItemLogCodec.SAVE, item.getId(), item.getVersion(), item.getItemName(), item.getPrice(), item.getQuantity());
+                }
+                after = page.get(page.size() - 1).getId();
+            }
+            flush(channel, snapshotBuffer);
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path path : listSegments()) {
+            if (generationOf(path) < snapshotGeneration) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * @return 레코드가 버퍼보다 크면 새로 할당한 버퍼
+     */
+    private static ByteBuffer write(FileChannel channel, ByteBuffer buffer, byte type, long id, Long version, String itemName, Integer price, Integer quantity) throws IOException {
+        int maxSize = ItemLogCodec.maxSize(itemName);
+        if (buffer.remaining() < maxSize) {
+            flush(channel, buffer);
+            if (buffer.capacity() < maxSize) {
+                buffer = ByteBuffer.allocateDirect(maxSize);
+            }
+        }
+        ItemLogCodec.encode(buffer, type, id, version, itemName, price, quantity);
+        return buffer;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private long replaySnapshot(Map<Long, Item> items) throws IOException {
+        Path path = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(path)) {
+            return 0L;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+            channel.read(header, 0);
+            ItemLogCodec.replay(channel, Long.BYTES, items);
+            return header.getLong(0);
+        }
+    }
+
+    private void replaySegment(Path path, Map<Long, Item> items) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long validLength = ItemLogCodec.replay(channel, 0L, items);
+            if (validLength < channel.size()) {
+                log.warn("item wal truncated torn records path={}, from={}, to={}", path, channel.size(), validLength);
+                channel.truncate(validLength);
+            }
+        }
+    }
+
+    private void openSegment(long generation) throws IOException {
+        this.generation = generation;
+        Path path = directory.resolve(SEGMENT_PREFIX + String.format("%019d", generation) + SEGMENT_SUFFIX);
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long generationOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * @param written fsync 가 끝나면 완료
+     */
+    private record LogEntry(byte type, long id, Long version, String itemName, Integer price, Integer quantity,
+                            CompletableFuture<Void> written) {
+    }
+}
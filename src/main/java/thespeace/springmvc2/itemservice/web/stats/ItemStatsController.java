@@ -0,0 +1,27 @@
+package thespeace.springmvc2.itemservice.web.stats;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import thespeace.springmvc2.itemservice.domain.item.InventoryAggregates;
+
+/**
+ * <h2>재고 집계 조회 API</h2>
+ * 점진적으로 갱신된 집계 값을 그대로 반환하므로 호출 비용이 상품 수와 무관하다. 메트릭 수집기가 자주 호출해도 된다.
+ */
+@RestController
+@RequestMapping("/api/items/stats")
+@RequiredArgsConstructor
+public class ItemStatsController {
+
+    private final InventoryAggregates inventoryAggregates;
+
+    /**
+     * @see <a href="http://localhost:8080/api/items/stats">test url</a>
+     */
+    @GetMapping
+    public InventoryAggregates.Snapshot stats() {
+        return inventoryAggregates.snapshot();
+    }
+}
@@ -0,0 +1,174 @@
+package thespeace.springmvc2.itemservice.web.validation;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.MessageSource;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import thespeace.springmvc2.itemservice.domain.item.Item;
+import thespeace.springmvc2.itemservice.domain.item.ItemRepository;
+import thespeace.springmvc2.itemservice.web.validation.form.ItemSaveForm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * <h1>상품 일괄 등록 API</h1>
+ * 수십만 건의 상품을 한 번에 등록한다. 요청 전체를 객체로 만들지 않고 스트리밍으로 처리하므로 파일 크기와 무관하게 메모리 사용량이 일정하다.
+ * <ul>
+ *     <li>요청 : JSON 배열 {@code [{...}, {...}]} 또는 한 줄에 하나씩 JSON 객체를 나열한 NDJSON</li>
+ *     <li>Jackson 스트리밍 파서로 상품 하나씩 읽고, {@link ItemSaveForm}의 Bean Validation 과 totalPriceMin 복합 룰을
+ *         단건 등록({@link ValidationItemControllerV4})과 똑같이 검증한다.</li>
+ *     <li>검증을 통과한 상품은 {@value #BATCH_SIZE}개씩 모아서 저장소에 일괄 저장한다.</li>
+ *     <li>응답 : NDJSON, 실패한 항목마다 순번과 오류를 바로 내려보내고, 마지막 줄에 전체 결과를 보낸다.</li>
+ * </ul>
+ * 한 항목의 타입 오류(예: price 에 문자)는 해당 항목만 실패 처리하고 나머지는 계속 처리한다.
+ * JSON 문법 자체가 깨진 경우에는 그 위치에서 처리를 멈춘다.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/validation/api/items")
+public class ValidationItemBulkApiController {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final ItemRepository itemRepository;
+    private final ObjectMapper objectMapper;
+    private final SpringValidatorAdapter validator;
+    private final MessageSource messageSource;
+
+    public ValidationItemBulkApiController(ItemRepository itemRepository, ObjectMapper objectMapper,
+                                           Validator validator, MessageSource messageSource) {
+        this.itemRepository = itemRepository;
+        this.objectMapper = objectMapper;
+        this.validator = new SpringValidatorAdapter(validator);
+        this.messageSource = messageSource;
+    }
+
+    /**
+     * @see <a href="http://localhost:8080/validation/api/items/bulk">test url</a>
+     * @see body {"itemName":"hello", "price":1000, "quantity": 10}\n{"itemName":"", "price":10, "quantity": 10}
+     */
+    @PostMapping("/bulk")
+    public void bulkAddItems(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        Locale locale = request.getLocale();
+
+        long total = 0;
+        long saved = 0;
+        long failed = 0;
+        List<Item> batch = new ArrayList<>(BATCH_SIZE);
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(request.getInputStream());
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null); //NDJSON, 줄바꿈은 항목마다 직접 기록
+
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+
+            while (token != null && token != JsonToken.END_ARRAY) {
+                long line = ++total;
+                JsonNode node = parser.readValueAsTree(); //항목 하나만 트리로 만든다.
+
+                BindingResult bindingResult = validate(node);
+                if (bindingResult.hasErrors()) {
+                    failed++;
+                    writeErrors(generator, line, bindingResult, locale);
+                } else {
+                    batch.add(toItem((ItemSaveForm) bindingResult.getTarget()));
+                    if (batch.size() >= BATCH_SIZE) {
+                        saved += flush(batch, generator);
+                    }
+                }
+                token = parser.nextToken();
+            }
+            saved += flush(batch, generator);
+
+            generator.writeStartObject();
+            generator.writeNumberField("total", total);
+            generator.writeNumberField("saved", saved);
+            generator.writeNumberField("failed", failed);
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        log.info("bulk add items total={}, saved={}, failed={}", total, saved, failed);
+    }
+
+    private BindingResult validate(JsonNode node) {
+        ItemSaveForm form;
+        try {
+            form = objectMapper.treeToValue(node, ItemSaveForm.class);
+        } catch (JsonProcessingException e) {
+            BindingResult bindingResult = new BeanPropertyBindingResult(new ItemSaveForm(), "item");
+            bindingResult.reject("typeMismatch", e.getOriginalMessage());
+            return bindingResult;
+        }
+
+        BindingResult bindingResult = new BeanPropertyBindingResult(form, "item");
+        validator.validate(form, bindingResult);
+
+        //특정 필드 예외가 아닌 전체 예외(글로벌 오류 처리)
+        if (form.getPrice() != null && form.getQuantity() != null) {
+            long resultPrice = (long) form.getPrice() * form.getQuantity();
+            if (resultPrice < 10000) {
+                bindingResult.reject("totalPriceMin", new Object[]{10000, resultPrice}, null);
+            }
+        }
+        return bindingResult;
+    }
+
+    private static Item toItem(ItemSaveForm form) {
+        return new Item(form.getItemName(), form.getPrice(), form.getQuantity());
+    }
+
+    /**
+     * 모은 상품을 저장하고, 그동안 쌓인 오류 응답을 클라이언트로 내보낸다.
+     */
+    private int flush(List<Item> batch, JsonGenerator generator) throws IOException {
+        int size = batch.size();
+        if (size > 0) {
+            itemRepository.saveAll(new ArrayList<>(batch));
+            batch.clear();
+        }
+        generator.flush();
+        return size;
+    }
+
+    private void writeErrors(JsonGenerator generator, long line, BindingResult bindingResult, Locale locale) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("line", line);
+        generator.writeArrayFieldStart("errors");
+        for (ObjectError error : bindingResult.getAllErrors()) {
+            generator.writeStartObject();
+            generator.writeStringField("code", error.getCode());
+            if (error instanceof FieldError fieldError) {
+                generator.writeStringField("field", fieldError.getField());
+            }
+            generator.writeStringField("message", messageSource.getMessage(error, locale));
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+}
@@ -23,9 +23,17 @@ public class ValidationItemControllerV1 {
     private final ItemRepository itemRepository;
 
     @GetMapping
-    public String items(Model model) {
-        List<Item> items = itemRepository.findAll();
+    public String items(@RequestParam(name = "after", required = false) Long after,
+                        @RequestParam(name = "size", defaultValue = "20") int size,
+                        Model model) {
+        size = Math.min(Math.max(size, 1), 100);
+        List<Item> items = itemRepository.findPage(after, size + 1); //다음 페이지 존재 여부 확인을 위해 1개 더 조회
+        if (items.size() > size) {
+            items = items.subList(0, size);
+            model.addAttribute("nextAfter", items.get(size - 1).getId());
+        }
         model.addAttribute("items", items);
+        model.addAttribute("size", size);
         return "validation/v1/items";
     }
 
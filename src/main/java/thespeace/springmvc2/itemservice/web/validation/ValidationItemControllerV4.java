@@ -4,6 +4,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
@@ -25,10 +26,48 @@ public class ValidationItemControllerV4 {
 
     private final ItemRepository itemRepository;
 
+    /**
+     * <h2>상품 목록, 검색 조건</h2>
+     * q(상품명 접두사), minPrice, maxPrice 는 모두 선택 조건이다.<br>
+     * 조건이 있으면 저장소의 보조 인덱스로 후보를 좁히고, 조건이 없으면 id 순서로 조회한다. 어느 경우든 size 만큼 키셋 페이징을 한다.
+     * <ul>
+     *     <li>조건 없음 : after(id) 다음부터 id 순서</li>
+     *     <li>q : (afterName, after) 다음부터 상품명 순서, 가격 조건은 읽으면서 적용</li>
+     *     <li>minPrice, maxPrice : (afterPrice, after) 다음부터 가격 순서</li>
+     * </ul>
+     * 다음 페이지 링크에 마지막 상품의 정렬 값과 id를 함께 넘긴다. minPrice 가 maxPrice 보다 크면 빈 목록이다.
+     */
     @GetMapping
-    public String items(Model model) {
-        List<Item> items = itemRepository.findAll();
+    public String items(@RequestParam(name = "q", required = false) String q,
+                        @RequestParam(name = "minPrice", required = false) Integer minPrice,
+                        @RequestParam(name = "maxPrice", required = false) Integer maxPrice,
+                        @RequestParam(name = "after", required = false) Long after,
+                        @RequestParam(name = "afterName", required = false) String afterName,
+                        @RequestParam(name = "afterPrice", required = false) Integer afterPrice,
+                        @RequestParam(name = "size", defaultValue = "20") int size,
+                        Model model) {
+        size = Math.min(Math.max(size, 1), 100);
+        boolean byName = StringUtils.hasText(q);
+        boolean byPrice = !byName && (minPrice != null || maxPrice != null);
+
+        //다음 페이지 존재 여부 확인을 위해 1개 더 조회
+        List<Item> items;
+        if (byName) {
+            items = itemRepository.findByItemNamePrefix(q, minPrice, maxPrice, afterName, after, size + 1);
+        } else if (byPrice) {
+            items = itemRepository.findByPriceBetween(minPrice, maxPrice, afterPrice, after, size + 1);
+        } else {
+            items = itemRepository.findPage(after, size + 1);
+        }
+        if (items.size() > size) {
+            items = items.subList(0, size);
+            Item last = items.get(size - 1);
+            model.addAttribute("nextAfter", last.getId());
+            model.addAttribute("nextAfterName", byName ? last.getItemName() : null);
+            model.addAttribute("nextAfterPrice", byPrice ? last.getPrice() : null);
+        }
         model.addAttribute("items", items);
+        model.addAttribute("size", size);
         return "validation/v4/items";
     }
 
@@ -87,7 +126,7 @@ public class ValidationItemControllerV4 {
     }
 
     @PostMapping("/{itemId}/edit")
-    public String edit(@PathVariable("itemId") Long itemId, @Validated @ModelAttribute("item") ItemUpdateForm form, BindingResult bindingResult) {
+    public String edit(@PathVariable("itemId") Long itemId, @Validated @ModelAttribute("item") ItemUpdateForm form, BindingResult bindingResult, Model model) {
 
         //특정 필드 예외가 아닌 전체 예외(글로벌 오류 처리)
         if (form.getPrice() != null && form.getQuantity() != null) {
@@ -107,7 +146,21 @@ public class ValidationItemControllerV4 {
         itemParam.setPrice(form.getPrice());
         itemParam.setQuantity(form.getQuantity());
 
-        itemRepository.update(itemId, itemParam);
+        //낙관적 락, 수정 화면을 연 뒤 다른 사용자가 먼저 수정했으면 글로벌 오류로 알린다.
+        //폼은 최신 값과 version 으로 바꾸고, 입력한 값은 옆에 보여준다. 그대로 다시 저장해도 다른 사용자의 수정을 덮어쓰지 않는다.
+        if (!itemRepository.update(itemId, itemParam, form.getVersion())) {
+            bindingResult.reject("optimisticLock");
+            model.addAttribute("rejected", itemParam);
+            Item latest = itemRepository.findById(itemId);
+            if (latest != null) {
+                form.setItemName(latest.getItemName());
+                form.setPrice(latest.getPrice());
+                form.setQuantity(latest.getQuantity());
+                form.setVersion(latest.getVersion());
+            }
+            log.info("errors={}", bindingResult);
+            return "validation/v4/editForm";
+        }
         return "redirect:/validation/v4/items/{itemId}";
     }
 
@@ -24,4 +24,8 @@ public class ItemUpdateForm {
 
     //수정에서는 수량을 자유롭게 변경할 수 있다.
     private Integer quantity;
+
+    //수정 화면을 열 때의 상품 version, 그 사이 다른 사용자가 수정했으면 수정하지 않는다.
+    @NotNull
+    private Long version;
 }
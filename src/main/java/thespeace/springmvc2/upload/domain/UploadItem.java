@@ -1,11 +1,12 @@
 package thespeace.springmvc2.upload.domain;
 
 import lombok.Data;
+import thespeace.springmvc2.common.repository.Identifiable;
 
 import java.util.List;
 
 @Data
-public class UploadItem {
+public class UploadItem implements Identifiable {
 
     private Long id;
     private String itemName;
@@ -1,23 +1,29 @@
 package thespeace.springmvc2.upload.domain;
 
 import org.springframework.stereotype.Repository;
+import thespeace.springmvc2.common.repository.InMemoryRepository;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 @Repository
 public class UploadItemRepository {
 
-    private final Map<Long, UploadItem> store = new HashMap<>();
-    private long sequence = 0L;
+    private final InMemoryRepository<UploadItem> repository = new InMemoryRepository<>(UploadItemRepository::copyOf);
 
     public UploadItem save(UploadItem uploadItem) {
-        uploadItem.setId(++sequence);
-        store.put(uploadItem.getId(), uploadItem);
-        return uploadItem;
+        return repository.save(uploadItem);
     }
 
     public UploadItem findById(Long id) {
-        return store.get(id);
+        return id == null ? null : repository.findById(id);
+    }
+
+    private static UploadItem copyOf(UploadItem uploadItem) {
+        UploadItem copy = new UploadItem();
+        copy.setId(uploadItem.getId());
+        copy.setItemName(uploadItem.getItemName());
+        copy.setAttachFile(uploadItem.getAttachFile());
+        copy.setImageFiles(uploadItem.getImageFiles() == null ? null : List.copyOf(uploadItem.getImageFiles()));
+        return copy;
     }
 }
@@ -0,0 +1,131 @@
+package thespeace.springmvc2.account.domain.login;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class KeyedRateLimiterTest {
+
+    static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    AtomicLong now = new AtomicLong(-5 * SECOND); //nanoTime 은 음수일 수 있다.
+    KeyedRateLimiter limiter = new KeyedRateLimiter(3, SECOND, 100, now::get);
+
+    @Test
+    void burstThenRefill() {
+        //when, then
+        assertThat(limiter.tryAcquire("a")).isZero();
+        assertThat(limiter.tryAcquire("a")).isZero();
+        assertThat(limiter.tryAcquire("a")).isZero();
+        assertThat(limiter.tryAcquire("a")).isEqualTo(SECOND); //다음 토큰까지 1초
+        assertThat(limiter.tryAcquire("b")).isZero(); //키마다 따로
+
+        now.addAndGet(SECOND);
+        assertThat(limiter.tryAcquire("a")).isZero();
+        assertThat(limiter.tryAcquire("a")).isPositive();
+    }
+
+    @Test
+    void rejectedDoesNotConsume() {
+        //given
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire("a");
+        }
+
+        //when
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("a");
+        }
+        now.addAndGet(SECOND);
+
+        //then
+        assertThat(limiter.tryAcquire("a")).isZero();
+    }
+
+    @Test
+    void evictIdleBuckets() {
+        //given
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire("key" + i);
+        }
+        assertThat(limiter.size()).isEqualTo(50);
+
+        //when (버킷이 다시 가득 찰 시간)
+        now.addAndGet(3 * SECOND);
+        limiter.tryAcquire("other");
+
+        //then
+        assertThat(limiter.size()).isEqualTo(1);
+    }
+
+    @Test
+    void overflowKeysShareBuckets() {
+        //given
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("key" + i);
+        }
+
+        //when
+        int allowed = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (limiter.tryAcquire("new" + i) == 0) {
+                allowed++;
+            }
+        }
+
+        //then, 넘친 키는 버킷 64개를 나누어 쓴다.
+        assertThat(limiter.size()).isEqualTo(100);
+        assertThat(allowed).isGreaterThan(3).isLessThanOrEqualTo(64 * 3);
+    }
+
+    @Test
+    void overflowDoesNotBlockUnrelatedKey() {
+        //given
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("key" + i);
+        }
+
+        //when, 넘친 키 하나가 자기 버킷을 모두 쓴다.
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("attacker")).isZero();
+        }
+
+        //then
+        assertThat(limiter.tryAcquire("attacker")).isPositive();
+        assertThat(limiter.tryAcquire("victim")).isZero(); //다른 넘친 키 버킷
+        assertThat(limiter.size()).isEqualTo(100);
+    }
+
+    @Test
+    void concurrent() throws InterruptedException {
+        //given
+        KeyedRateLimiter limiter = new KeyedRateLimiter(1_000, SECOND, 100, now::get);
+        AtomicInteger allowed = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+
+        //when
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    if (limiter.tryAcquire("a") == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        //then
+        assertThat(allowed.get()).isEqualTo(1_000);
+    }
+}
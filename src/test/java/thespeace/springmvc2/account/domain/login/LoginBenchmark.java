@@ -0,0 +1,75 @@
+package thespeace.springmvc2.account.domain.login;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+import thespeace.springmvc2.account.domain.member.Member;
+import thespeace.springmvc2.account.domain.member.MemberRepository;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * <h2>로그인 회원 조회 처리량 벤치마크</h2>
+ * 회원 N명을 저장한 뒤 임의의 loginId 로 로그인할 회원을 찾는 처리량을 비교한다.
+ * <ul>
+ *     <li>before : 이전 구현, 전체 회원을 복사해서({@code findAll()}) 스트림으로 찾는다. O(회원 수)</li>
+ *     <li>after : loginId 유일 인덱스로 찾는다. O(1)</li>
+ * </ul>
+ * 비밀번호 해시 검증은 {@link PasswordService}의 전용 스레드 풀이 처리량을 제한하므로, 회원 조회 비용만 비교한다.
+ * 테스트가 아니라 직접 실행하는 프로그램이다.
+ * <blockquote><pre>
+ *     java -cp ... LoginBenchmark 1000000 5
+ * </pre></blockquote>
+ */
+public class LoginBenchmark {
+
+    public static void main(String[] args) {
+        int members = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        //회원마다 남는 저장 로그 제외
+        ((Logger) LoggerFactory.getLogger(MemberRepository.class)).setLevel(Level.WARN);
+
+        MemberRepository memberRepository = new MemberRepository();
+        for (int i = 0; i < members; i++) {
+            Member member = new Member();
+            member.setLoginId("member" + i);
+            member.setName("member" + i);
+            member.setPassword("test!");
+            memberRepository.save(member);
+        }
+        Function<String, Optional<Member>> scan = loginId -> memberRepository.findAll().stream()
+                .filter(m -> m.getLoginId().equals(loginId))
+                .findFirst();
+
+        for (int round = 0; round < 2; round++) { //첫 번째는 워밍업
+            double before = run(seconds, members, loginId -> scan.apply(loginId)
+                    .filter(m -> m.getPassword().equals("test!"))
+                    .orElse(null));
+            double after = run(seconds, members, loginId -> memberRepository.findByLoginId(loginId)
+                    .filter(m -> m.getPassword().equals("test!"))
+                    .orElse(null));
+            if (round == 1) {
+                System.out.printf("members=%,d%n", members);
+                System.out.printf("before (scan): %,.1f lookups/s%n", before);
+                System.out.printf("after (index): %,.1f lookups/s%n", after);
+            }
+        }
+    }
+
+    private static double run(int seconds, int members, Function<String, Member> login) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        long count = 0;
+        while (System.nanoTime() < deadline) {
+            if (login.apply("member" + random.nextInt(members)) == null) {
+                throw new IllegalStateException("login failed");
+            }
+            count++;
+        }
+        return count / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,55 @@
+package thespeace.springmvc2.account.domain.login;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LoginRateLimiterTest {
+
+    static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    AtomicLong now = new AtomicLong();
+    LoginRateLimiter limiter = new LoginRateLimiter(
+            new KeyedRateLimiter(2, MINUTE, 100, now::get),
+            new KeyedRateLimiter(5, MINUTE, 100, now::get));
+
+    @Test
+    void limitByLoginId() {
+        //when, then
+        assertThat(limiter.tryAcquire("test", "10.0.0.1")).isZero();
+        assertThat(limiter.tryAcquire("test", "10.0.0.2")).isZero();
+        assertThat(limiter.tryAcquire("test", "10.0.0.3")).isPositive(); //IP 를 바꿔도 같은 계정은 제한
+        assertThat(limiter.tryAcquire("other", "10.0.0.3")).isZero();
+        assertThat(limiter.metrics().rejectedByLoginId()).isEqualTo(1);
+    }
+
+    @Test
+    void limitByAddress() {
+        //when
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire("member" + i, "10.0.0.1")).isZero();
+        }
+
+        //then (계정을 바꿔도 같은 IP 는 제한)
+        assertThat(limiter.tryAcquire("member5", "10.0.0.1")).isPositive();
+        assertThat(limiter.tryAcquire("member5", "10.0.0.2")).isZero();
+        assertThat(limiter.metrics().rejectedByAddress()).isEqualTo(1);
+    }
+
+    @Test
+    void truncateLongLoginId() {
+        //given
+        String prefix = "a".repeat(LoginRateLimiter.MAX_KEY_LENGTH);
+
+        //when
+        limiter.tryAcquire(prefix + "1", "10.0.0.1");
+        limiter.tryAcquire(prefix + "2", "10.0.0.2");
+
+        //then
+        assertThat(limiter.tryAcquire(prefix + "3", "10.0.0.3")).isPositive();
+        assertThat(limiter.metrics().loginIds()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,76 @@
+package thespeace.springmvc2.account.domain.login;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PasswordServiceTest {
+
+    PasswordService passwordService = new PasswordService(new Pbkdf2PasswordHasher(Pbkdf2PasswordHasher.MIN_ITERATIONS), 2, 4);
+
+    @AfterEach
+    void afterEach() {
+        passwordService.shutdown();
+    }
+
+    @Test
+    void hashAndMatches() {
+        //given
+        String hash = passwordService.hash("test!");
+
+        //when, then
+        assertThat(hash).isNotEqualTo("test!");
+        assertThat(passwordService.hash("test!")).isNotEqualTo(hash); //salt 가 달라서 해시도 다르다.
+        assertThat(passwordService.matches("test!", hash)).isTrue();
+        assertThat(passwordService.matches("wrong", hash)).isFalse();
+        assertThat(passwordService.matches("test!", "test!")).isFalse(); //해시 형식이 아니면 실패
+        assertThat(passwordService.metrics().completed()).isEqualTo(6);
+    }
+
+    @Test
+    void rejectWhenSaturated() throws Exception {
+        //given, 스레드 1개, 대기 큐 1개, 한 번 검증에 오래 걸리는 반복 횟수
+        PasswordService slowService = new PasswordService(new Pbkdf2PasswordHasher(2_000_000), 1, 1);
+        ExecutorService requests = Executors.newFixedThreadPool(8);
+
+        //when
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(requests.submit(() -> {
+                try {
+                    slowService.hash("test!");
+                    return true;
+                } catch (PasswordServiceBusyException e) {
+                    return false;
+                }
+            }));
+        }
+        int succeeded = 0;
+        for (Future<Boolean> result : results) {
+            succeeded += result.get(60, TimeUnit.SECONDS) ? 1 : 0;
+        }
+        requests.shutdown();
+        slowService.shutdown();
+
+        //then, 계산 중 1개 + 대기 1개를 넘는 요청은 기다리지 않고 거절된다.
+        assertThat(succeeded).isBetween(2, 7);
+        assertThat(slowService.metrics().rejected()).isEqualTo(8 - succeeded);
+    }
+
+    @Test
+    void calibrate() {
+        int iterations = Pbkdf2PasswordHasher.calibrate(Duration.ofMillis(20));
+
+        assertThat(iterations).isBetween(Pbkdf2PasswordHasher.MIN_ITERATIONS, Pbkdf2PasswordHasher.MAX_ITERATIONS);
+        assertThat(iterations % 1000).isZero();
+    }
+}
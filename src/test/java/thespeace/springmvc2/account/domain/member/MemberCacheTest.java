@@ -0,0 +1,132 @@
+package thespeace.springmvc2.account.domain.member;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class MemberCacheTest {
+
+    AtomicLong now = new AtomicLong(1_000_000);
+    MemberRepository memberRepository = new MemberRepository();
+    MemberCache memberCache = new MemberCache(memberRepository, Duration.ofSeconds(30), 100, now::get);
+
+    @Test
+    void findById() {
+        //given
+        Member member = memberRepository.save(member("memberA"));
+
+        //when
+        Member first = memberCache.findById(member.getId());
+        Member second = memberCache.findById(member.getId());
+
+        //then
+        assertThat(first).isEqualTo(member); //저장소는 복사본을 보관한다.
+        assertThat(second).isSameAs(first);
+        assertThat(memberCache.misses()).isEqualTo(1);
+        assertThat(memberCache.hits()).isEqualTo(1);
+        assertThat(memberCache.findById(999L)).isNull();
+    }
+
+    @Test
+    void ttl() {
+        //given
+        Member member = memberRepository.save(member("memberA"));
+        memberCache.findById(member.getId());
+
+        //when
+        now.addAndGet(Duration.ofSeconds(31).toMillis());
+        memberCache.findById(member.getId());
+
+        //then
+        assertThat(memberCache.misses()).isEqualTo(2);
+    }
+
+    @Test
+    void invalidateOnChange() {
+        //given
+        Member member = memberRepository.save(member("memberA"));
+        memberCache.findById(member.getId());
+
+        //when
+        memberRepository.clearStore();
+
+        //then
+        assertThat(memberCache.findById(member.getId())).isNull();
+    }
+
+    @Test
+    void findBySession() {
+        //given
+        Member member = memberRepository.save(member("memberA"));
+        memberCache.putSession("session-1", member.getId(), memberCache.generation());
+
+        //when
+        Member found = memberCache.findBySession("session-1");
+        memberCache.evictSession("session-1");
+
+        //then
+        assertThat(found).isSameAs(member);
+        assertThat(memberCache.findBySession("session-1")).isNull();
+        assertThat(memberCache.findBySession("session-2")).isNull();
+    }
+
+    @Test
+    void skipStalePut() {
+        //given
+        Member member = memberRepository.save(member("memberA"));
+        long generation = memberCache.generation();
+
+        //when (세션을 읽는 동안 로그아웃)
+        memberCache.evictSession("session-1");
+        memberCache.putSession("session-1", member.getId(), generation);
+
+        //then
+        assertThat(memberCache.findBySession("session-1")).isNull();
+    }
+
+    @Test
+    void otherKeyEvictionKeepsPut() {
+        //given
+        Member member = memberRepository.save(member("memberA"));
+        long generation = memberCache.generation();
+
+        //when (세션을 읽는 동안 다른 세션이 로그아웃)
+        memberCache.evictSession("session-2");
+        memberCache.putSession("session-1", member.getId(), generation);
+
+        //then
+        assertThat(memberCache.findBySession("session-1")).isEqualTo(member);
+        assertThat(memberCache.findBySession("session-2")).isNull();
+    }
+
+    @Test
+    void bounded() {
+        //given
+        Member member = memberRepository.save(member("memberA"));
+
+        //when
+        for (int i = 0; i < 1_000; i++) {
+            memberCache.putSession("session-" + i, member.getId(), memberCache.generation());
+        }
+
+        //then
+        int cached = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (memberCache.findBySession("session-" + i) != null) {
+                cached++;
+            }
+        }
+        assertThat(cached).isBetween(1, 100);
+    }
+
+    private Member member(String loginId) {
+        Member member = new Member();
+        member.setLoginId(loginId);
+        member.setName(loginId);
+        member.setPassword("test!");
+        return member;
+    }
+}
@@ -0,0 +1,90 @@
+package thespeace.springmvc2.account.domain.member;
+
+import org.junit.jupiter.api.Test;
+import thespeace.springmvc2.common.repository.DuplicateEntityException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemberRepositoryTest {
+
+    MemberRepository memberRepository = new MemberRepository();
+
+    @Test
+    void findByLoginId() {
+        //given
+        Member memberA = memberRepository.save(member("memberA"));
+        memberRepository.save(member("memberB"));
+
+        //when, then
+        assertThat(memberRepository.findByLoginId("memberA")).contains(memberA);
+        assertThat(memberRepository.findByLoginId("none")).isEmpty();
+    }
+
+    @Test
+    void duplicateLoginId() {
+        //given
+        memberRepository.save(member("memberA"));
+
+        //when, then
+        assertThatThrownBy(() -> memberRepository.save(member("memberA")))
+                .isInstanceOf(DuplicateEntityException.class);
+        assertThat(memberRepository.findAll()).hasSize(1);
+    }
+
+    @Test
+    void concurrentDuplicateLoginId() throws InterruptedException {
+        //given
+        int threadCount = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+
+        //when, 같은 loginId 로 동시에 가입
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                start.await();
+                try {
+                    memberRepository.save(member("memberA"));
+                } catch (DuplicateEntityException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        //then
+        assertThat(memberRepository.findAll()).hasSize(1); //하나만 저장되어야 한다.
+        assertThat(rejected).hasValue(threadCount - 1);
+    }
+
+    @Test
+    void clearStore() {
+        //given
+        memberRepository.save(member("memberA"));
+
+        //when
+        memberRepository.clearStore();
+
+        //then, 같은 loginId 로 다시 가입할 수 있어야 한다.
+        assertThat(memberRepository.findByLoginId("memberA")).isEmpty();
+        assertThat(memberRepository.save(member("memberA")).getId()).isNotNull();
+    }
+
+    private static Member member(String loginId) {
+        Member member = new Member();
+        member.setLoginId(loginId);
+        member.setName(loginId);
+        member.setPassword("test!");
+        return member;
+    }
+}
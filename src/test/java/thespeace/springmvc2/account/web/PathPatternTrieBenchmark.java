@@ -0,0 +1,85 @@
+package thespeace.springmvc2.account.web;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.util.PatternMatchUtils;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * <h2>로그인 체크 경로 판단 처리량 벤치마크</h2>
+ * 제외 패턴 N개(화이트 리스트)로 "로그인이 필요한 경로인가"를 판단하는 처리량을 비교한다.
+ * <ul>
+ *     <li>simpleMatch : 이전 필터 구현, {@code PatternMatchUtils.simpleMatch}로 패턴을 하나씩 비교한다.</li>
+ *     <li>PathPattern : 스프링 인터셉터의 include/exclude 방식, 요청마다 경로를 파싱하고 패턴을 하나씩 비교한다.</li>
+ *     <li>trie : {@link PathPatternTrie}, URI 를 한 번만 읽는다.</li>
+ * </ul>
+ * 테스트가 아니라 직접 실행하는 프로그램이다.
+ * <blockquote><pre>
+ *     java -cp ... PathPatternTrieBenchmark 300 3
+ * </pre></blockquote>
+ */
+public class PathPatternTrieBenchmark {
+
+    public static void main(String[] args) {
+        int patterns = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        List<String> whiteList = new ArrayList<>(List.of("/", "/account", "/members/add", "/login", "/logout", "/css/**"));
+        for (int i = 0; whiteList.size() < patterns; i++) {
+            switch (i % 3) {
+                case 0 -> whiteList.add("/public/page" + i);
+                case 1 -> whiteList.add("/static/v" + i + "/**");
+                default -> whiteList.add("/docs/*/section" + i);
+            }
+        }
+        String[] paths = {"/items/1/edit", "/login", "/css/bootstrap.min.css", "/public/page0",
+                "/docs/guide/section2", "/members/1", "/static/v4/app.js", "/unknown/path/deep/1"};
+
+        String[] simplePatterns = whiteList.stream().map(p -> p.replace("**", "*")).toArray(String[]::new);
+        List<PathPattern> pathPatterns = whiteList.stream().map(PathPatternParser.defaultInstance::parse).toList();
+        PathPatternTrie trie = new PathPatternTrie(List.of("/**"), whiteList);
+
+        for (int round = 0; round < 2; round++) { //첫 번째는 워밍업
+            double simple = run(seconds, paths, path -> !PatternMatchUtils.simpleMatch(simplePatterns, path));
+            double spring = run(seconds, paths, path -> {
+                PathContainer container = PathContainer.parsePath(path);
+                for (PathPattern pattern : pathPatterns) {
+                    if (pattern.matches(container)) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+            double compiled = run(seconds, paths, trie::matches);
+            if (round == 1) {
+                System.out.printf("patterns=%,d%n", whiteList.size());
+                System.out.printf("simpleMatch: %,.1f lookups/s%n", simple);
+                System.out.printf("PathPattern: %,.1f lookups/s%n", spring);
+                System.out.printf("trie: %,.1f lookups/s%n", compiled);
+            }
+        }
+    }
+
+    private static double run(int seconds, String[] paths, Predicate<String> needsLogin) {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        long start = System.nanoTime();
+        long count = 0;
+        int matched = 0;
+        while (System.nanoTime() < deadline) {
+            for (String path : paths) {
+                if (needsLogin.test(path)) {
+                    matched++;
+                }
+            }
+            count += paths.length;
+        }
+        if (matched == 0) {
+            throw new IllegalStateException("no path needs login");
+        }
+        return count / ((System.nanoTime() - start) / 1e9);
+    }
+}
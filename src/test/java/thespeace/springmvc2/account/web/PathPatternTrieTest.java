@@ -0,0 +1,140 @@
+package thespeace.springmvc2.account.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.RequestPath;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PathPatternTrieTest {
+
+    static final List<String> INCLUDES = List.of("/items/**");
+    static final List<String> EXCLUDES = List.of("/", "/account", "/members/add", "/login", "/logout",
+            "/css/**", "/*.ico", "/error/**", "/error-page/**");
+
+    @Test
+    void loginCheckPaths() {
+        //given
+        PathPatternTrie trie = new PathPatternTrie(INCLUDES, EXCLUDES);
+
+        //then
+        assertThat(trie.matches("/items")).isTrue();
+        assertThat(trie.matches("/items/")).isTrue();
+        assertThat(trie.matches("/items/1/edit")).isTrue();
+        assertThat(trie.matches("/items/favicon.ico")).isTrue(); //*.ico 는 첫 세그먼트만
+        assertThat(trie.matches("/")).isFalse();
+        assertThat(trie.matches("/favicon.ico")).isFalse();
+        assertThat(trie.matches("/itemsx")).isFalse();
+        assertThat(trie.matches("/account")).isFalse();
+        assertThat(trie.matches("/ctx/items/1", 4)).isTrue(); //context path 제외
+    }
+
+    /**
+     * 스프링은 디코딩하고 세그먼트 파라미터를 뺀 경로로 핸들러를 찾으므로, 같은 경로로 비교해야 로그인 체크를 우회할 수 없다.
+     */
+    @Test
+    void requestPath() {
+        //given
+        PathPatternTrie trie = new PathPatternTrie(INCLUDES, EXCLUDES);
+
+        //then
+        assertThat(trie.matches(path("/items;jsessionid=ABC123/1"))).isTrue();
+        assertThat(trie.matches(path("/items;x=1/1"))).isTrue();
+        assertThat(trie.matches(path("/%69tems/1"))).isTrue();
+        assertThat(trie.matches(path("/items/%31/edit"))).isTrue();
+        assertThat(trie.matches(path("/ctx/%69tems/1", "/ctx"))).isTrue();
+        assertThat(trie.matches(path("/items%2F1"))).isTrue(); //세그먼트 경계를 알 수 없으면 포함
+        assertThat(trie.matches(path("/login;jsessionid=ABC123"))).isFalse();
+        assertThat(trie.matches(path("/%6Cogin"))).isFalse();
+        assertThat(trie.matches(path("/css/%62ootstrap.min.css"))).isFalse();
+    }
+
+    @Test
+    void requestURI() {
+        //given
+        PathPatternTrie trie = new PathPatternTrie(INCLUDES, EXCLUDES);
+
+        //then, '%', ';'가 없으면 원문으로, 있으면 파싱한 경로로 비교한다.
+        assertThat(trie.matches("/ctx/items/1", "/ctx")).isTrue();
+        assertThat(trie.matches("/ctx/login", "/ctx")).isFalse();
+        assertThat(trie.matches("/items;jsessionid=ABC123/1", "")).isTrue();
+        assertThat(trie.matches("/%69tems/1", "")).isTrue();
+        assertThat(trie.matches("/login;jsessionid=ABC123", "")).isFalse();
+        assertThat(trie.matches("/ctx/%6Cogin", "/ctx")).isFalse();
+    }
+
+    static PathContainer path(String requestURI) {
+        return path(requestURI, "");
+    }
+
+    static PathContainer path(String requestURI, String contextPath) {
+        return RequestPath.parse(requestURI, contextPath).pathWithinApplication();
+    }
+
+    @Test
+    void whiteList() {
+        //given
+        PathPatternTrie trie = new PathPatternTrie(List.of("/**"),
+                List.of("/", "/account", "/members/add", "/login", "/logout", "/css/**"));
+
+        //then
+        assertThat(trie.matches("/")).isFalse();
+        assertThat(trie.matches("/login")).isFalse();
+        assertThat(trie.matches("/css/bootstrap.min.css")).isFalse();
+        assertThat(trie.matches("/css/a/b.css")).isFalse();
+        assertThat(trie.matches("/login/x")).isTrue();
+        assertThat(trie.matches("/members")).isTrue();
+        assertThat(trie.matches("/items/1")).isTrue();
+    }
+
+    @Test
+    void globSegment() {
+        //given
+        PathPatternTrie trie = new PathPatternTrie(List.of("/files/report-*-*.pdf", "/files/*/raw"), List.of());
+
+        //then
+        assertThat(trie.matches("/files/report-2024-01.pdf")).isTrue();
+        assertThat(trie.matches("/files/report--.pdf")).isTrue();
+        assertThat(trie.matches("/files/report-2024.pdf")).isFalse();
+        assertThat(trie.matches("/files/a/raw")).isTrue();
+        assertThat(trie.matches("/files//raw")).isFalse();
+        assertThat(trie.matches("/files/a/b/raw")).isFalse();
+    }
+
+    @Test
+    void invalidPattern() {
+        assertThatThrownBy(() -> new PathPatternTrie(List.of("items/**"), List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new PathPatternTrie(List.of("/**/items"), List.of()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * 스프링 인터셉터의 addPathPatterns/excludePathPatterns 와 같은 결과인지 확인한다.
+     */
+    @Test
+    void sameAsSpringPathPattern() {
+        //given
+        List<String> includes = List.of("/items/**", "/members/*", "/api/*/orders/**", "/*.html");
+        List<String> excludes = List.of("/items/add", "/members/add", "/api/v1/orders/**", "/css/**", "/*.ico");
+        PathPatternTrie trie = new PathPatternTrie(includes, excludes);
+        List<PathPattern> springIncludes = includes.stream().map(PathPatternParser.defaultInstance::parse).toList();
+        List<PathPattern> springExcludes = excludes.stream().map(PathPatternParser.defaultInstance::parse).toList();
+
+        List<String> paths = List.of("/", "/items", "/items/1", "/items/add", "/items/add/x", "/members", "/members/1",
+                "/members/add", "/members/1/edit", "/api/v1/orders", "/api/v2/orders", "/api/v2/orders/1",
+                "/api/v2/order", "/index.html", "/a/index.html", "/favicon.ico", "/css/items", "/unknown");
+
+        //then
+        for (String path : paths) {
+            PathContainer container = PathContainer.parsePath(path);
+            boolean expected = springIncludes.stream().anyMatch(p -> p.matches(container))
+                    && springExcludes.stream().noneMatch(p -> p.matches(container));
+            assertThat(trie.matches(path)).as(path).isEqualTo(expected);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package thespeace.springmvc2.account.web.session;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ClockSegmentTest {
+
+    @Test
+    void secondChance() {
+        //given
+        ClockSegment segment = new ClockSegment();
+        ManagedSession[] sessions = new ManagedSession[4];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = new ManagedSession("session-" + i, null, 0, 100);
+            segment.add(sessions[i]);
+        }
+
+        //when
+        sessions[0].touch(1000, 1000); //최근 사용
+
+        //then
+        assertThat(segment.nextVictim(null)).isSameAs(sessions[1]);
+        segment.remove(sessions[1]);
+        assertThat(segment.nextVictim(null)).isSameAs(sessions[2]);
+        segment.remove(sessions[2]);
+        assertThat(segment.nextVictim(null)).isSameAs(sessions[3]);
+        segment.remove(sessions[3]);
+        assertThat(segment.nextVictim(null)).isSameAs(sessions[0]); //한 번의 기회를 쓴 뒤
+    }
+
+    @Test
+    void reuseRemovedSlot() {
+        //given
+        ClockSegment segment = new ClockSegment();
+        ManagedSession first = new ManagedSession("first", null, 0, 100);
+        ManagedSession second = new ManagedSession("second", null, 0, 100);
+        segment.add(first);
+        segment.remove(first);
+
+        //when
+        segment.add(second);
+
+        //then
+        assertThat(second.slot).isEqualTo(0);
+        assertThat(first.slot).isEqualTo(-1);
+        assertThat(segment.nextVictim(null)).isSameAs(second);
+        segment.remove(second);
+        assertThat(segment.nextVictim(null)).isNull();
+    }
+}
@@ -0,0 +1,71 @@
+package thespeace.springmvc2.account.web.session;
+
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SessionCookieReaderTest {
+
+    @Test
+    void scan() {
+        String header = "theme=dark; xmySessionId=wrong; mySessionId = abc-123 ; JSESSIONID=\"F00D\"; empty=";
+
+        assertThat(SessionCookieReader.scan(header, "mySessionId")).isEqualTo("abc-123");
+        assertThat(SessionCookieReader.scan(header, "JSESSIONID")).isEqualTo("F00D");
+        assertThat(SessionCookieReader.scan(header, "theme")).isEqualTo("dark");
+        assertThat(SessionCookieReader.scan(header, "empty")).isEmpty();
+        assertThat(SessionCookieReader.scan(header, "my")).isNull();
+        assertThat(SessionCookieReader.scan("", "mySessionId")).isNull();
+        assertThat(SessionCookieReader.scan("mySessionId", "mySessionId")).isNull();
+    }
+
+    @Test
+    void cacheInRequestAttribute() {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Cookie", "mySessionId=abc");
+
+        //when
+        String first = SessionCookieReader.find(request, SessionManager.SESSION_COOKIE_NAME);
+        request.removeHeader("Cookie");
+        String second = SessionCookieReader.find(request, SessionManager.SESSION_COOKIE_NAME);
+
+        //then
+        assertThat(first).isEqualTo("abc");
+        assertThat(second).isSameAs(first); //헤더를 다시 읽지 않는다.
+    }
+
+    @Test
+    void cacheNotFound() {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Cookie", "theme=dark");
+
+        //when
+        String first = SessionCookieReader.find(request, SessionCookieReader.JSESSIONID);
+        request.removeHeader("Cookie");
+        request.addHeader("Cookie", "JSESSIONID=late");
+        String second = SessionCookieReader.find(request, SessionCookieReader.JSESSIONID);
+
+        //then
+        assertThat(first).isNull();
+        assertThat(second).isNull();
+    }
+
+    @Test
+    void fallbackToCookies() {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest() {
+            @Override
+            public String getHeader(String name) {
+                return null; //Cookie 헤더 없이 Cookie 객체만 있는 요청
+            }
+        };
+        request.setCookies(new Cookie("mySessionId", "abc"));
+
+        //then
+        assertThat(SessionCookieReader.find(request, SessionManager.SESSION_COOKIE_NAME)).isEqualTo("abc");
+    }
+}
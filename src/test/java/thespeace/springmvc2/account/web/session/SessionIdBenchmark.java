@@ -0,0 +1,67 @@
+package thespeace.springmvc2.account.web.session;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <h2>세션 id 생성 처리량 벤치마크</h2>
+ * 여러 스레드가 동시에 세션 id 를 만들 때의 처리량을 비교한다.
+ * <ul>
+ *     <li>before : 이전 구현, {@code UUID.randomUUID().toString()} (공유 SecureRandom)</li>
+ *     <li>after : {@link SessionIdGenerator}, 스레드별 ChaCha20 버퍼</li>
+ * </ul>
+ * 테스트가 아니라 직접 실행하는 프로그램이다.
+ * <blockquote><pre>
+ *     java -cp ... SessionIdBenchmark 64 5
+ * </pre></blockquote>
+ */
+public class SessionIdBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        SessionIdGenerator generator = new SessionIdGenerator();
+        for (int round = 0; round < 2; round++) { //첫 번째는 워밍업
+            double before = run(threads, seconds, () -> UUID.randomUUID().toString());
+            double after = run(threads, seconds, generator::next);
+            if (round == 1) {
+                System.out.printf("threads=%d%n", threads);
+                System.out.printf("before (UUID.randomUUID): %,.1f ids/s%n", before);
+                System.out.printf("after (SessionIdGenerator): %,.1f ids/s%n", after);
+            }
+        }
+    }
+
+    private static double run(int threads, int seconds, Supplier<String> ids) throws InterruptedException {
+        LongAdder count = new LongAdder();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                ready.countDown();
+                try {
+                    ready.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+                long local = 0;
+                while (System.nanoTime() < deadline) {
+                    if (ids.get().isEmpty()) {
+                        throw new IllegalStateException("empty id");
+                    }
+                    local++;
+                }
+                count.add(local);
+                done.countDown();
+            }).start();
+        }
+        ready.await();
+        long start = System.nanoTime();
+        done.await();
+        return count.sum() / ((System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,67 @@
+package thespeace.springmvc2.account.web.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SessionIdGeneratorTest {
+
+    SessionIdGenerator generator = new SessionIdGenerator();
+
+    @Test
+    void format() {
+        //when
+        String id = generator.next();
+
+        //then
+        assertThat(id).hasSize(SessionIdGenerator.ID_LENGTH).matches("[A-Za-z0-9_-]+");
+        assertThat(Base64.getUrlDecoder().decode(id)).hasSize(SessionIdGenerator.ID_BYTES);
+    }
+
+    @Test
+    void uniqueAcrossThreads() throws InterruptedException {
+        //given
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+
+        //when (버퍼를 여러 번 다시 채울 만큼)
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    ids.add(generator.next());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        //then
+        assertThat(ids).hasSize(8 * 20_000);
+    }
+
+    @Test
+    void bitsAreBalanced() {
+        //given
+        long ones = 0;
+        int count = 10_000;
+
+        //when
+        for (int i = 0; i < count; i++) {
+            for (byte b : Base64.getUrlDecoder().decode(generator.next())) {
+                ones += Integer.bitCount(b & 0xff);
+            }
+        }
+
+        //then (기댓값 640,000, 표준편차 400)
+        assertThat(ones).isBetween(636_000L, 644_000L);
+    }
+}
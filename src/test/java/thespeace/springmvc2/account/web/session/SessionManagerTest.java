@@ -7,6 +7,10 @@ import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import thespeace.springmvc2.account.domain.member.Member;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
 import static org.assertj.core.api.Assertions.*;
 
 public class SessionManagerTest {
@@ -33,5 +37,149 @@ public class SessionManagerTest {
         sessionManager.expire(request);
         Object expired = sessionManager.getSession(request);
         assertThat(expired).isNull();
+        assertThat(sessionManager.scheduledSize()).isZero();
+    }
+
+    @Test
+    void idleTimeout() {
+        //given
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager sessionManager = new SessionManager(Duration.ofMinutes(30), Duration.ofHours(12), 0, now::get);
+        MockHttpServletRequest active = login(sessionManager, new Member());
+        MockHttpServletRequest idle = login(sessionManager, new Member());
+
+        //when
+        now.addAndGet(Duration.ofMinutes(20).toMillis());
+        sessionManager.getSession(active); //사용 중인 세션은 만료 시각이 연장된다.
+        now.addAndGet(Duration.ofMinutes(15).toMillis());
+        sessionManager.expireSessions();
+
+        //then
+        assertThat(sessionManager.getSession(active)).isNotNull();
+        assertThat(sessionManager.getSession(idle)).isNull();
+        assertThat(sessionManager.size()).isEqualTo(1);
+        assertThat(sessionManager.metrics().expired()).isEqualTo(1);
+    }
+
+    @Test
+    void maxLifetime() {
+        //given
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager sessionManager = new SessionManager(Duration.ofMinutes(30), Duration.ofHours(1), 0, now::get);
+        MockHttpServletRequest request = login(sessionManager, new Member());
+
+        //when
+        for (int i = 0; i < 7; i++) { //10분마다 사용해도
+            now.addAndGet(Duration.ofMinutes(10).toMillis());
+            sessionManager.expireSessions();
+            sessionManager.getSession(request);
+        }
+
+        //then
+        assertThat(sessionManager.size()).isZero();
+        assertThat(sessionManager.getSession(request)).isNull();
+    }
+
+    @Test
+    void expireManySessions() {
+        //given
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager sessionManager = new SessionManager(Duration.ofSeconds(90), Duration.ofHours(12), 0, now::get);
+        for (int i = 0; i < 10_000; i++) {
+            sessionManager.createSession(new Member(), new MockHttpServletResponse());
+            now.addAndGet(10);
+        }
+
+        //when
+        now.addAndGet(Duration.ofSeconds(89).toMillis());
+        sessionManager.expireSessions();
+        int beforeDeadline = sessionManager.size();
+        now.addAndGet(Duration.ofSeconds(2).toMillis());
+        sessionManager.expireSessions();
+
+        //then
+        assertThat(beforeDeadline).isGreaterThan(0);
+        assertThat(sessionManager.size()).isZero();
+    }
+
+    @Test
+    void evictWhenOverBudget() {
+        //given
+        AtomicLong now = new AtomicLong(1_000_000);
+        long entryBytes = SessionSizeEstimator.estimate(newMember("member"));
+        SessionManager sessionManager = new SessionManager(Duration.ofMinutes(30), Duration.ofHours(12), entryBytes * 100, now::get);
+        for (int i = 0; i < 100; i++) {
+            login(sessionManager, newMember("member"));
+        }
+
+        //when
+        MockHttpServletRequest last = null;
+        for (int i = 0; i < 50; i++) {
+            last = login(sessionManager, newMember("member"));
+        }
+
+        //then
+        SessionManager.Metrics metrics = sessionManager.metrics();
+        assertThat(metrics.residentBytes()).isLessThanOrEqualTo(entryBytes * 100);
+        assertThat(metrics.evictions()).isEqualTo(50);
+        assertThat(metrics.sessions()).isEqualTo(100);
+        assertThat(sessionManager.scheduledSize()).isEqualTo(100); //밀려난 세션은 타이밍 휠에도 남지 않는다.
+        assertThat(sessionManager.getSession(last)).isNotNull(); //방금 만든 세션은 밀려나지 않는다.
+    }
+
+    @Test
+    void residentBytes() {
+        //given
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager sessionManager = new SessionManager(Duration.ofMinutes(30), Duration.ofHours(12), 0, now::get);
+        Member small = newMember("a");
+        Member large = newMember("a".repeat(1000));
+
+        //when
+        MockHttpServletRequest request = login(sessionManager, small);
+        login(sessionManager, large);
+        long resident = sessionManager.metrics().residentBytes();
+        sessionManager.expire(request);
+
+        //then
+        assertThat(SessionSizeEstimator.estimate(large)).isGreaterThan(SessionSizeEstimator.estimate(small) + 900);
+        assertThat(resident).isEqualTo(SessionSizeEstimator.estimate(small) + SessionSizeEstimator.estimate(large));
+        assertThat(sessionManager.metrics().residentBytes()).isEqualTo(SessionSizeEstimator.estimate(large));
+    }
+
+    @Test
+    void tokenMode() {
+        //given
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionTokenCodec codec = new SessionTokenCodec("test-secret".getBytes(StandardCharsets.UTF_8),
+                Duration.ofMinutes(30), Duration.ofSeconds(30), now::get);
+        SessionManager sessionManager = new SessionManager(Duration.ofMinutes(30), Duration.ofHours(12), 0, codec, now::get);
+
+        //when
+        MockHttpServletRequest request = login(sessionManager, newMember("member"));
+        Member member = (Member) sessionManager.getSession(request);
+
+        //then
+        assertThat(sessionManager.isTokenMode()).isTrue();
+        assertThat(member.getId()).isEqualTo(1L);
+        assertThat(member.getName()).isEqualTo("member");
+        assertThat(sessionManager.size()).isZero(); //서버에 보관하지 않는다.
+    }
+
+    private Member newMember(String name) {
+        Member member = new Member();
+        member.setId(1L);
+        member.setLoginId("test");
+        member.setName(name);
+        member.setPassword("pbkdf2-sha256$100000$salt$hash");
+        return member;
+    }
+
+    private MockHttpServletRequest login(SessionManager sessionManager, Member member) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sessionManager.createSession(member, response);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(response.getCookies());
+        return request;
     }
 }
@@ -0,0 +1,119 @@
+package thespeace.springmvc2.account.web.session;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import thespeace.springmvc2.account.domain.member.Member;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SessionPersistenceTest {
+
+    @TempDir
+    Path directory;
+
+    AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    void restoreAfterRestart() throws Exception {
+        //given
+        SessionManager sessionManager = newSessionManager();
+        SessionPersistence persistence = newPersistence(sessionManager, 4);
+        persistence.start();
+        List<MockHttpServletRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            requests.add(login(sessionManager, newMember(i)));
+        }
+        sessionManager.expire(requests.get(0)); //로그아웃
+        now.addAndGet(Duration.ofMinutes(10).toMillis());
+        sessionManager.getSession(requests.get(1)); //사용 시각 갱신
+        persistence.stop();
+
+        //when
+        now.addAndGet(Duration.ofMinutes(25).toMillis()); //사용한 세션만 idle timeout 전
+        SessionManager restarted = newSessionManager();
+        newPersistence(restarted, 8).start(); //샤드 수 변경
+
+        //then
+        assertThat(restarted.size()).isEqualTo(1);
+        Member member = (Member) restarted.getSession(requests.get(1));
+        assertThat(member.getLoginId()).isEqualTo("member1");
+        assertThat(restarted.getSession(requests.get(0))).isNull();
+        try (var files = Files.list(directory)) {
+            assertThat(files.filter(path -> path.getFileName().toString().endsWith(".log"))).hasSize(8);
+        }
+    }
+
+    @Test
+    void restoreAllShards() throws Exception {
+        //given
+        SessionManager sessionManager = newSessionManager();
+        SessionPersistence persistence = newPersistence(sessionManager, 16);
+        persistence.start();
+        for (int i = 0; i < 1000; i++) {
+            login(sessionManager, newMember(i));
+        }
+        persistence.flush();
+
+        //when
+        SessionManager restarted = newSessionManager();
+        newPersistence(restarted, 16).start();
+
+        //then
+        assertThat(persistence.writtenRecords()).isEqualTo(1000);
+        assertThat(restarted.size()).isEqualTo(1000);
+    }
+
+    @Test
+    void ignoreTornRecord() throws Exception {
+        //given
+        SessionManager sessionManager = newSessionManager();
+        SessionPersistence persistence = newPersistence(sessionManager, 1);
+        persistence.start();
+        MockHttpServletRequest request = login(sessionManager, newMember(1));
+        persistence.stop();
+        Path file = directory.resolve("sessions-0.log");
+        Files.write(file, new byte[]{1, 2, 3}, StandardOpenOption.APPEND); //기록 도중 장애
+
+        //when
+        SessionManager restarted = newSessionManager();
+        newPersistence(restarted, 1).start();
+
+        //then
+        assertThat(restarted.getSession(request)).isNotNull();
+    }
+
+    private SessionManager newSessionManager() {
+        return new SessionManager(Duration.ofMinutes(30), Duration.ofHours(12), 0, now::get);
+    }
+
+    private SessionPersistence newPersistence(SessionManager sessionManager, int shards) {
+        return new SessionPersistence(sessionManager, directory.toString(), shards, 60_000, 1 << 20);
+    }
+
+    private MockHttpServletRequest login(SessionManager sessionManager, Member member) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        sessionManager.createSession(member, response);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(response.getCookies());
+        return request;
+    }
+
+    private Member newMember(int i) {
+        Member member = new Member();
+        member.setId((long) i);
+        member.setLoginId("member" + i);
+        member.setName("회원" + i);
+        member.setPassword("pbkdf2-sha256$100000$salt$hash");
+        return member;
+    }
+}
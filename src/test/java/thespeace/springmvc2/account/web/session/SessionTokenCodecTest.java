@@ -0,0 +1,90 @@
+package thespeace.springmvc2.account.web.session;
+
+import org.junit.jupiter.api.Test;
+import thespeace.springmvc2.account.domain.member.Member;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SessionTokenCodecTest {
+
+    AtomicLong now = new AtomicLong(1_000_000);
+    SessionTokenCodec codec = new SessionTokenCodec("test-secret".getBytes(StandardCharsets.UTF_8),
+            Duration.ofMinutes(30), Duration.ofSeconds(30), now::get);
+
+    @Test
+    void issueAndVerify() {
+        //given
+        Member member = newMember();
+
+        //when
+        String token = codec.issue(member);
+        Member verified = codec.verify(token);
+
+        //then
+        assertThat(verified.getId()).isEqualTo(1L);
+        assertThat(verified.getLoginId()).isEqualTo("test");
+        assertThat(verified.getName()).isEqualTo("테스터");
+        assertThat(verified.getPassword()).isNull(); //토큰에 담지 않는다.
+        assertThat(token).doesNotContain("test!");
+    }
+
+    @Test
+    void tampered() {
+        //given
+        String token = codec.issue(newMember());
+        Member other = newMember();
+        other.setId(2L);
+        String otherPayload = codec.issue(other).split("\\.")[0];
+
+        //when
+        String forged = otherPayload + "." + token.split("\\.")[1];
+
+        //then
+        assertThat(codec.verify(forged)).isNull();
+        assertThat(codec.verify("invalid")).isNull();
+        assertThat(codec.verify("a.b")).isNull();
+        assertThat(new SessionTokenCodec("other-secret".getBytes(StandardCharsets.UTF_8),
+                Duration.ofMinutes(30), Duration.ofSeconds(30), now::get).verify(token)).isNull();
+    }
+
+    @Test
+    void expired() {
+        //given
+        String token = codec.issue(newMember());
+        assertThat(codec.verify(token)).isNotNull();
+
+        //when
+        now.addAndGet(Duration.ofMinutes(31).toMillis());
+
+        //then
+        assertThat(codec.verify(token)).isNull();
+    }
+
+    @Test
+    void cacheVerifiedToken() {
+        //given
+        String token = codec.issue(newMember());
+
+        //when
+        Member first = codec.verify(token);
+        Member second = codec.verify(token);
+
+        //then
+        assertThat(codec.cacheMisses()).isEqualTo(1);
+        assertThat(codec.cacheHits()).isEqualTo(1);
+        assertThat(second).isEqualTo(first).isNotSameAs(first);
+    }
+
+    private Member newMember() {
+        Member member = new Member();
+        member.setId(1L);
+        member.setLoginId("test");
+        member.setName("테스터");
+        member.setPassword("test!");
+        return member;
+    }
+}
@@ -0,0 +1,76 @@
+package thespeace.springmvc2.account.web.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void expireAtDeadline() {
+        //given
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            long deadline = 1 + random.nextInt(300_000); //상위 레벨까지 사용하도록
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+
+        //when
+        List<Long> late = new ArrayList<>();
+        int expired = 0;
+        for (long now = 1; now <= 300_000; now += 7) {
+            for (Long deadline : wheel.advance(now)) {
+                expired++;
+                if (deadline > now || now - deadline >= 7) {
+                    late.add(deadline); //일찍 나오거나, 지난 tick 에 나왔어야 하는 항목
+                }
+            }
+        }
+        expired += wheel.advance(300_000).size();
+
+        //then
+        assertThat(late).isEmpty();
+        assertThat(expired).isEqualTo(deadlines.size());
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cancel() {
+        //given
+        TimingWheel<String> wheel = new TimingWheel<>(1, 0);
+        TimingWheel.Timer<String> near = wheel.schedule("near", 10);
+        TimingWheel.Timer<String> far = wheel.schedule("far", 100_000); //상위 레벨
+        wheel.schedule("kept", 100_000);
+
+        //when
+        boolean cancelled = wheel.cancel(near) & wheel.cancel(far);
+        boolean again = wheel.cancel(far);
+
+        //then
+        assertThat(cancelled).isTrue();
+        assertThat(again).isFalse();
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance(100_000)).containsExactly("kept");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void pastDeadline() {
+        //given
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 10_000);
+
+        //when
+        wheel.schedule("past", 1_000);
+
+        //then
+        assertThat(wheel.advance(10_999)).isEmpty();
+        assertThat(wheel.advance(11_000)).containsExactly("past");
+    }
+}
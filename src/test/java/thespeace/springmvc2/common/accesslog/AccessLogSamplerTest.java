@@ -0,0 +1,159 @@
+package thespeace.springmvc2.common.accesslog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AccessLogSamplerTest {
+
+    static final long SECOND = 1_000_000_000L;
+
+    AtomicLong now = new AtomicLong(100 * SECOND);
+    AccessLogSampler sampler = new AccessLogSampler(new AccessLogSampler.Settings(true, 3, 500), 2, now::get);
+
+    @Test
+    void perSecondPerTemplate() {
+        //when 템플릿마다 1초에 3건
+        int items = 0;
+        int members = 0;
+        for (int i = 0; i < 10; i++) {
+            items += sampler.sample("/items/{itemId}", 200, 0, false) ? 1 : 0;
+            members += sampler.sample("/members/add", 200, 0, false) ? 1 : 0;
+        }
+
+        //then
+        assertThat(items).isEqualTo(3);
+        assertThat(members).isEqualTo(3);
+        assertThat(sampler.metrics().sampled()).isEqualTo(6);
+        assertThat(sampler.metrics().suppressed()).isEqualTo(14);
+    }
+
+    @Test
+    void resetEverySecond() {
+        //given
+        for (int i = 0; i < 3; i++) {
+            sampler.sample("/items", 200, 0, false);
+        }
+        assertThat(sampler.sample("/items", 200, 0, false)).isFalse();
+
+        //when
+        now.addAndGet(SECOND);
+
+        //then
+        assertThat(sampler.sample("/items", 200, 0, false)).isTrue();
+    }
+
+    @Test
+    void negativeClock() {
+        //given System.nanoTime() 은 음수일 수 있다.
+        AtomicLong negative = new AtomicLong(-100 * SECOND - 1);
+        AccessLogSampler sampler = new AccessLogSampler(new AccessLogSampler.Settings(true, 3, 500), 2, negative::get);
+
+        //when
+        int sampled = 0;
+        for (int i = 0; i < 10; i++) {
+            sampled += sampler.sample("/items", 200, 0, false) ? 1 : 0;
+        }
+        negative.addAndGet(SECOND);
+        boolean nextWindow = sampler.sample("/items", 200, 0, false);
+
+        //then
+        assertThat(sampled).isEqualTo(3);
+        assertThat(nextWindow).isTrue();
+    }
+
+    @Test
+    void alwaysKeepErrorsAndSlowRequests() {
+        //given 이번 창은 이미 다 채웠다.
+        for (int i = 0; i < 3; i++) {
+            sampler.sample("/items", 200, 0, false);
+        }
+
+        //when then
+        assertThat(sampler.sample("/items", 200, 0, true)).isTrue();
+        assertThat(sampler.sample("/items", 503, 0, false)).isTrue();
+        assertThat(sampler.sample("/items", 200, 500_000_000L, false)).isTrue();
+        assertThat(sampler.sample("/items", 200, 499_000_000L, false)).isFalse();
+        assertThat(sampler.metrics().errors()).isEqualTo(2);
+        assertThat(sampler.metrics().slow()).isEqualTo(1);
+    }
+
+    @Test
+    void limitTemplates() {
+        //given
+        sampler.sample("/a", 200, 0, false);
+        sampler.sample("/b", 200, 0, false);
+
+        //when maxTemplates(2)를 넘는 템플릿은 창 하나를 함께 쓴다.
+        int overflow = 0;
+        for (int i = 0; i < 10; i++) {
+            overflow += sampler.sample("/template/" + i, 200, 0, false) ? 1 : 0;
+        }
+
+        //then
+        assertThat(sampler.metrics().templates()).isEqualTo(2);
+        assertThat(overflow).isEqualTo(3);
+    }
+
+    @Test
+    void updateAtRuntime() {
+        //given
+        for (int i = 0; i < 3; i++) {
+            sampler.sample("/items", 200, 0, false);
+        }
+        assertThat(sampler.sample("/items", 200, 0, false)).isFalse();
+
+        //when 샘플링을 끄면 바로 모두 남긴다.
+        sampler.update(new AccessLogSampler.Settings(false, 3, 500));
+        assertThat(sampler.sample("/items", 200, 0, false)).isTrue();
+
+        //when 0 이면 오류와 느린 요청만
+        sampler.update(new AccessLogSampler.Settings(true, 0, 100));
+        now.addAndGet(SECOND);
+
+        //then
+        assertThat(sampler.sample("/items", 200, 0, false)).isFalse();
+        assertThat(sampler.sample("/items", 200, 100_000_000L, false)).isTrue();
+        assertThat(sampler.settings().slowThresholdMillis()).isEqualTo(100);
+    }
+
+    @Test
+    void rejectInvalidSettings() {
+        assertThatThrownBy(() -> sampler.update(new AccessLogSampler.Settings(true, -1, 500)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> sampler.update(new AccessLogSampler.Settings(true, 10, -1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(sampler.settings().perSecond()).isEqualTo(3); //이전 설정 유지
+    }
+
+    @Test
+    void concurrent() throws InterruptedException {
+        //given 여러 스레드가 같은 템플릿으로 동시에
+        AtomicInteger kept = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+
+        //when
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    if (sampler.sample("/items/{itemId}", 200, 0, false)) {
+                        kept.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        //then 시각이 그대로이므로 정확히 3건
+        assertThat(kept.get()).isEqualTo(3);
+    }
+}
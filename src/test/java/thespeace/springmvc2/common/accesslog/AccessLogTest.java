@@ -0,0 +1,144 @@
+package thespeace.springmvc2.common.accesslog;
+
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AccessLogTest {
+
+    @TempDir
+    Path dir;
+
+    AccessLogSampler allRequests = new AccessLogSampler(new AccessLogSampler.Settings(false, 0, 0), 100, System::nanoTime);
+
+    @Test
+    void format() throws Exception {
+        //given
+        Path file = dir.resolve("logs/access.log");
+        AccessLog accessLog = new AccessLog(file, 16, false, allRequests);
+        accessLog.start();
+
+        //when 2024-01-02T03:04:05.006Z, 12.345678ms
+        accessLog.record(1704164645006L, 12_345_678L, 200, "GET", DispatcherType.REQUEST, "node1-1-1", "/items/1");
+        accessLog.record(1704164645100L, 1_000L, 500, "PROPFIND", DispatcherType.ERROR, "node1-1-1", "/error-page/500\n한글");
+        accessLog.stop();
+
+        //then
+        assertThat(Files.readAllLines(file)).containsExactly(
+                "2024-01-02T03:04:05.006Z node1-1-1 REQUEST GET /items/1 200 12.345ms",
+                "2024-01-02T03:04:05.100Z node1-1-1 ERROR OTHER /error-page/500??? 500 0.001ms");
+    }
+
+    @Test
+    void writeConcurrently() throws Exception {
+        //given
+        Path file = dir.resolve("access.log");
+        AccessLog accessLog = new AccessLog(file, 64, true, allRequests);
+        accessLog.start();
+
+        //when 버퍼보다 훨씬 많은 이벤트를 여러 스레드에서 (block 정책)
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    accessLog.record(System.currentTimeMillis(), 1_000_000L, 200, "POST", DispatcherType.REQUEST, null, "/items/" + i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        accessLog.stop();
+
+        //then 하나도 버리지 않고, 여러 건씩 모아서 쓴다.
+        AccessLog.Metrics metrics = accessLog.metrics();
+        assertThat(Files.readAllLines(file)).hasSize(40_000).allMatch(line -> line.endsWith(" 200 1.000ms"));
+        assertThat(metrics.written()).isEqualTo(40_000);
+        assertThat(metrics.dropped()).isZero();
+        assertThat(metrics.pending()).isZero();
+        assertThat(metrics.batches()).isLessThan(40_000);
+    }
+
+    @Test
+    void dropWhenFull() throws Exception {
+        //given 쓰기 스레드가 시작하기 전이라 버퍼를 비우지 않는다.
+        Path file = dir.resolve("access.log");
+        AccessLog accessLog = new AccessLog(file, 4, false, allRequests);
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            accessLog.record(System.currentTimeMillis(), 0, 200, "GET", DispatcherType.REQUEST, null, "/items/" + i);
+        }
+
+        //then 버퍼에 남은 이벤트는 시작하면 쓴다.
+        assertThat(accessLog.metrics().pending()).isEqualTo(4);
+        assertThat(accessLog.metrics().dropped()).isEqualTo(6);
+
+        accessLog.start();
+        accessLog.stop();
+        assertThat(Files.readAllLines(file)).hasSize(4);
+        assertThat(accessLog.metrics().written()).isEqualTo(4);
+    }
+
+    @Test
+    void appendToExistingFile() throws Exception {
+        //given
+        Path file = dir.resolve("access.log");
+        Files.writeString(file, "previous\n");
+        AccessLog accessLog = new AccessLog(file, 4, false, allRequests);
+
+        //when
+        accessLog.start();
+        accessLog.record(System.currentTimeMillis(), 0, 302, "GET", DispatcherType.REQUEST, null, "/logout");
+        accessLog.stop();
+
+        //then
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).isEqualTo("previous");
+        assertThat(lines.get(1)).endsWith("Z - REQUEST GET /logout 302 0.000ms");
+    }
+
+    @Test
+    void sampleRequests() throws Exception {
+        //given 템플릿마다 1초에 1건, 100ms 이상은 항상
+        Path file = dir.resolve("access.log");
+        AccessLogSampler sampler = new AccessLogSampler(new AccessLogSampler.Settings(true, 1, 100), 100, () -> 0L);
+        AccessLog accessLog = new AccessLog(file, 16, false, sampler);
+        accessLog.start();
+
+        //when
+        for (int i = 0; i < 3; i++) {
+            accessLog.record(itemRequest(i), new MockHttpServletResponse(), System.nanoTime(), null);
+        }
+        accessLog.record(itemRequest(3), new MockHttpServletResponse(), System.nanoTime(), new IllegalStateException());
+        accessLog.record(itemRequest(4), new MockHttpServletResponse(), System.nanoTime() - 200_000_000L, null);
+        accessLog.stop();
+
+        //then 첫 요청, 예외, 느린 요청만 남는다.
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0)).contains(" /items/0 ");
+        assertThat(lines.get(1)).contains(" /items/3 ");
+        assertThat(lines.get(2)).contains(" /items/4 ");
+        assertThat(sampler.metrics().suppressed()).isEqualTo(2);
+    }
+
+    private MockHttpServletRequest itemRequest(int itemId) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/items/" + itemId);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/items/{itemId}");
+        return request;
+    }
+}
@@ -0,0 +1,85 @@
+package thespeace.springmvc2.common.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    @Test
+    void bucketIndex() {
+        //구간 번호는 값 순서대로 이어지고, 각 칸의 가장 큰 값은 그 칸에 들어간다.
+        int previous = -1;
+        for (long value = 0; value < 1_000_000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(index).isBetween(previous, previous + 1);
+            assertThat(LatencyHistogram.highestValueOf(index)).isGreaterThanOrEqualTo(value);
+            previous = index;
+        }
+        assertThat(LatencyHistogram.indexOf(LatencyHistogram.MAX_VALUE)).isEqualTo(LatencyHistogram.BUCKETS - 1);
+        assertThat(LatencyHistogram.highestValueOf(LatencyHistogram.BUCKETS - 1)).isEqualTo(LatencyHistogram.MAX_VALUE);
+    }
+
+    @Test
+    void percentiles() {
+        //given 1ms ~ 1000ms 를 하나씩
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(millis * 1_000_000L);
+        }
+
+        //when
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        //then (상대 오차 1/64 이내)
+        assertThat(snapshot.count()).isEqualTo(1000);
+        assertThat(snapshot.max()).isEqualTo(1_000_000_000L);
+        assertThat(snapshot.mean()).isEqualTo(500.5 * 1_000_000);
+        assertThat(snapshot.valueAt(50)).isBetween(500_000_000L, 508_000_000L);
+        assertThat(snapshot.valueAt(99)).isBetween(990_000_000L, 1_000_000_000L);
+        assertThat(snapshot.valueAt(99.9)).isBetween(999_000_000L, 1_000_000_000L);
+        assertThat(snapshot.valueAt(100)).isEqualTo(1_000_000_000L);
+    }
+
+    @Test
+    void outOfRange() {
+        //when
+        histogram.record(-1);
+        histogram.record(Long.MAX_VALUE);
+
+        //then
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.valueAt(50)).isZero();
+        assertThat(snapshot.max()).isEqualTo(LatencyHistogram.MAX_VALUE);
+        assertThat(new LatencyHistogram().snapshot().valueAt(99)).isZero();
+    }
+
+    @Test
+    void concurrentRecord() throws InterruptedException {
+        //given
+        List<Thread> threads = new ArrayList<>();
+
+        //when
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        //then
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.count()).isEqualTo(800_000);
+        assertThat(snapshot.max()).isEqualTo(99_999);
+    }
+}
@@ -0,0 +1,56 @@
+package thespeace.springmvc2.common.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RequestStartTimesTest {
+
+    RequestStartTimes startTimes = new RequestStartTimes();
+
+    @Test
+    void nestedDispatch() {
+        //given, 같은 스레드에서 forward 된 요청이 먼저 끝난다.
+        Object request = new Object();
+        Object forwarded = new Object();
+        startTimes.start(request, 100L);
+        startTimes.start(forwarded, 200L);
+
+        //when
+        long forwardedStart = startTimes.remove(forwarded);
+        long requestStart = startTimes.remove(request);
+
+        //then
+        assertThat(forwardedStart).isEqualTo(200L);
+        assertThat(requestStart).isEqualTo(100L);
+        assertThat(startTimes.remove(request)).isEqualTo(RequestStartTimes.NONE);
+    }
+
+    @Test
+    void separatedPerInstance() {
+        //given
+        Object request = new Object();
+        RequestStartTimes other = new RequestStartTimes();
+        startTimes.start(request, 100L);
+        other.start(request, 200L);
+
+        //when, then 같은 요청이라도 인스턴스마다 따로 보관한다.
+        assertThat(startTimes.remove(request)).isEqualTo(100L);
+        assertThat(other.remove(request)).isEqualTo(200L);
+    }
+
+    @Test
+    void unmatchedStartsAreDropped() {
+        //given, afterCompletion 이 호출되지 않은 항목이 계속 쌓인다.
+        for (int i = 0; i < 100; i++) {
+            startTimes.start(new Object(), i);
+        }
+        Object request = new Object();
+
+        //when
+        startTimes.start(request, 100L);
+
+        //then
+        assertThat(startTimes.remove(request)).isEqualTo(100L);
+    }
+}
@@ -0,0 +1,93 @@
+package thespeace.springmvc2.common.repository;
+
+import thespeace.springmvc2.itemservice.domain.item.HeapItemStore;
+import thespeace.springmvc2.itemservice.domain.item.Item;
+import thespeace.springmvc2.itemservice.domain.item.ItemRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <h2>저장 처리량 벤치마크</h2>
+ * {@link CopyOnWriteEntityStore}는 루트 하나를 CAS 로 교체하므로 쓰기가 사실상 한 줄로 처리된다.
+ * 스레드마다 저장만 반복해서 ConcurrentHashMap + AtomicLong 저장소(이전 ItemRepository)와 초당 저장 수를 비교한다.
+ * <ul>
+ *     <li>concurrentHashMap : 이전 ItemRepository 와 같은 방식, 기준값</li>
+ *     <li>copyOnWrite : {@link CopyOnWriteEntityStore}에 id만 발급해서 저장</li>
+ *     <li>itemRepository : 인덱스, 변경 알림까지 포함한 {@link ItemRepository#save(Item)}</li>
+ * </ul>
+ * 테스트가 아니라 직접 실행하는 프로그램이다. 앞의 한 번은 워밍업으로 버린다.
+ * <blockquote><pre>
+ *     java -cp ... CopyOnWriteEntityStoreBenchmark [threads] [seconds]
+ * </pre></blockquote>
+ */
+public class CopyOnWriteEntityStoreBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (int round = 0; round < 2; round++) {
+            boolean warmup = round == 0;
+            run("concurrentHashMap", threads, seconds, warmup, CopyOnWriteEntityStoreBenchmark::concurrentHashMap);
+            run("copyOnWrite", threads, seconds, warmup, CopyOnWriteEntityStoreBenchmark::copyOnWrite);
+            run("itemRepository", threads, seconds, warmup, CopyOnWriteEntityStoreBenchmark::itemRepository);
+        }
+    }
+
+    /**
+     * @param saverFactory 측정할 때마다 빈 저장소를 만들고, 상품 하나를 저장하는 동작을 반환한다.
+     */
+    private static void run(String name, int threads, int seconds, boolean warmup, Supplier<Runnable> saverFactory) throws InterruptedException {
+        Runnable save = saverFactory.get();
+        LongAdder operations = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                long count = 0;
+                while (System.nanoTime() < deadline) {
+                    save.run();
+                    count++;
+                }
+                operations.add(count);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        if (!warmup) {
+            System.out.printf("%-18s threads=%d, %,.0f saves/s%n", name, threads, operations.sum() / (double) seconds);
+        }
+    }
+
+    private static Runnable concurrentHashMap() {
+        Map<Long, Item> store = new ConcurrentHashMap<>();
+        AtomicLong sequence = new AtomicLong();
+        return () -> {
+            Item item = new Item("item", 10000, 10);
+            item.setId(sequence.incrementAndGet());
+            store.put(item.getId(), item);
+        };
+    }
+
+    private static Runnable copyOnWrite() {
+        HeapItemStore store = new HeapItemStore();
+        AtomicLong sequence = new AtomicLong();
+        return () -> {
+            Item item = new Item("item", 10000, 10);
+            item.setId(sequence.incrementAndGet());
+            store.put(item);
+        };
+    }
+
+    private static Runnable itemRepository() {
+        ItemRepository repository = new ItemRepository();
+        return () -> repository.save(new Item("item", 10000, 10));
+    }
+}
@@ -0,0 +1,149 @@
+package thespeace.springmvc2.common.repository;
+
+import thespeace.springmvc2.account.domain.item.AccountItem;
+import thespeace.springmvc2.account.domain.item.AccountItemRepository;
+import thespeace.springmvc2.account.domain.member.Member;
+import thespeace.springmvc2.account.domain.member.MemberRepository;
+import thespeace.springmvc2.itemservice.domain.item.Item;
+import thespeace.springmvc2.itemservice.domain.item.ItemRepository;
+import thespeace.springmvc2.upload.domain.UploadItem;
+import thespeace.springmvc2.upload.domain.UploadItemRepository;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * <h2>저장소 처리량 벤치마크</h2>
+ * 네 저장소 모두 {@link InMemoryRepository} 위에서 동작하므로 같은 부하로 함께 측정한다.<br>
+ * 저장소마다 미리 데이터를 채운 뒤, 스레드마다 조회 90%, 저장 5%, 수정 5% 를 정해진 시간 동안 반복하고 초당 처리량을 출력한다.<br>
+ * 테스트가 아니라 직접 실행하는 프로그램이다. 앞의 한 번은 워밍업으로 버린다.
+ * <blockquote><pre>
+ *     java -cp ... InMemoryRepositoryBenchmark [threads] [seconds]
+ * </pre></blockquote>
+ */
+public class InMemoryRepositoryBenchmark {
+
+    private static final int PRELOAD = 100_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        for (int round = 0; round < 2; round++) {
+            boolean warmup = round == 0;
+            run("ItemRepository", threads, seconds, warmup, itemRepository());
+            run("AccountItemRepository", threads, seconds, warmup, accountItemRepository());
+            run("MemberRepository", threads, seconds, warmup, memberRepository());
+            run("UploadItemRepository", threads, seconds, warmup, uploadItemRepository());
+        }
+    }
+
+    /**
+     * @param operation 0 ~ 99 사이 난수를 받아 조회/저장/수정 중 하나를 실행한다.
+     */
+    private static void run(String name, int threads, int seconds, boolean warmup, LongConsumer operation) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        for (int i = 0; i < threads; i++) {
+            new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long count = 0;
+                while (System.nanoTime() < deadline) {
+                    operation.accept(random.nextInt(100));
+                    count++;
+                }
+                operations.add(count);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        if (!warmup) {
+            System.out.printf("%-22s threads=%d, %,.0f ops/s%n", name, threads, operations.sum() / (double) seconds);
+        }
+    }
+
+    private static LongConsumer itemRepository() {
+        ItemRepository repository = new ItemRepository();
+        for (int i = 0; i < PRELOAD; i++) {
+            repository.save(new Item("item" + i, 10000, 10));
+        }
+        return dice -> {
+            long id = randomId();
+            if (dice < 90) {
+                repository.findById(id);
+            } else if (dice < 95) {
+                repository.save(new Item("item", 10000, 10));
+            } else {
+                repository.update(id, new Item("item" + dice, 20000, 20));
+            }
+        };
+    }
+
+    private static LongConsumer accountItemRepository() {
+        AccountItemRepository repository = new AccountItemRepository();
+        for (int i = 0; i < PRELOAD; i++) {
+            repository.save(new AccountItem("item" + i, 10000, 10));
+        }
+        return dice -> {
+            long id = randomId();
+            if (dice < 90) {
+                repository.findById(id);
+            } else if (dice < 95) {
+                repository.save(new AccountItem("item", 10000, 10));
+            } else {
+                repository.update(id, new AccountItem("item" + dice, 20000, 20));
+            }
+        };
+    }
+
+    private static LongConsumer memberRepository() {
+        MemberRepository repository = new MemberRepository();
+        for (int i = 0; i < PRELOAD; i++) {
+            repository.save(member("member" + i));
+        }
+        return dice -> {
+            if (dice < 95) {
+                repository.findById(randomId());
+            } else {
+                repository.save(member("member" + dice));
+            }
+        };
+    }
+
+    private static LongConsumer uploadItemRepository() {
+        UploadItemRepository repository = new UploadItemRepository();
+        for (int i = 0; i < PRELOAD; i++) {
+            repository.save(uploadItem("item" + i));
+        }
+        return dice -> {
+            if (dice < 95) {
+                repository.findById(randomId());
+            } else {
+                repository.save(uploadItem("item" + dice));
+            }
+        };
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, PRELOAD + 1);
+    }
+
+    private static Member member(String loginId) {
+        Member member = new Member();
+        member.setLoginId(loginId);
+        member.setName(loginId);
+        member.setPassword("test!");
+        return member;
+    }
+
+    private static UploadItem uploadItem(String itemName) {
+        UploadItem uploadItem = new UploadItem();
+        uploadItem.setItemName(itemName);
+        return uploadItem;
+    }
+}
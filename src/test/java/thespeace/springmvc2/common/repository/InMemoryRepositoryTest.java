@@ -0,0 +1,200 @@
+package thespeace.springmvc2.common.repository;
+
+import org.junit.jupiter.api.Test;
+import thespeace.springmvc2.account.domain.member.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryRepositoryTest {
+
+    InMemoryRepository<Member> repository = new InMemoryRepository<>(InMemoryRepositoryTest::copyOf);
+    SortedIndex<Member, String> nameIndex = repository.addIndex(new SortedIndex<>(Member::getName));
+
+    @Test
+    void concurrentSave() throws InterruptedException {
+        //given
+        int threadCount = 16;
+        int savePerThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        //when
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < savePerThread; j++) {
+                    repository.save(member("member"));
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        //then, id 순서로 빠짐없이 저장되어야 한다.
+        List<Member> all = repository.findAll();
+        assertThat(all).hasSize(threadCount * savePerThread);
+        assertThat(all.get(all.size() - 1).getId()).isEqualTo((long) threadCount * savePerThread);
+        assertThat(repository.metrics().saves()).isEqualTo(threadCount * savePerThread);
+    }
+
+    @Test
+    void clearDuringSave() throws InterruptedException {
+        //given
+        int threadCount = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount + 1);
+        for (int i = 0; i < threadCount; i++) {
+            int thread = i;
+            executor.submit(() -> {
+                for (int j = 0; j < 2000; j++) {
+                    repository.save(member("member" + thread + "-" + j));
+                }
+            });
+        }
+
+        //when, 저장하는 중에 계속 비운다.
+        executor.submit(() -> {
+            for (int j = 0; j < 200; j++) {
+                repository.clear();
+            }
+        });
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        //then, 저장소에 남은 엔티티는 모두 인덱스에도 있다.
+        for (Member member : repository.findAll()) {
+            assertThat(SortedIndex.prefix(nameIndex, member.getName())).contains(member.getId());
+        }
+        assertThat(nameIndex.range(null, null)).hasSize(repository.size());
+    }
+
+    @Test
+    void conditionalUpdate() {
+        //given
+        Member member = repository.save(member("memberA"));
+        List<String> updates = new ArrayList<>();
+        repository.addListener(new EntityChangeListener<>() {
+            @Override
+            public void onUpdate(Member before, Member after) {
+                updates.add(before.getName() + "->" + after.getName());
+            }
+        });
+
+        //when
+        boolean updated = repository.update(member.getId(), m -> m.getName().equals("memberA"), m -> m.setName("memberB"));
+        boolean conflict = repository.update(member.getId(), m -> m.getName().equals("memberA"), m -> m.setName("memberC"));
+
+        //then
+        assertThat(updated).isTrue();
+        assertThat(conflict).isFalse();
+        assertThat(repository.findById(member.getId()).getName()).isEqualTo("memberB");
+        assertThat(member.getName()).isEqualTo("memberA"); //저장된 인스턴스는 수정되지 않는다.
+        assertThat(SortedIndex.prefix(nameIndex, "memberA")).isEmpty();
+        assertThat(SortedIndex.prefix(nameIndex, "memberB")).containsExactly(member.getId());
+        assertThat(updates).containsExactly("memberA->memberB");
+        assertThat(repository.metrics().updateConflicts()).isEqualTo(1);
+    }
+
+    @Test
+    void notifyAfterPublish() {
+        //given
+        Member member = repository.save(member("memberA"));
+        List<String> observed = new ArrayList<>();
+        repository.addListener(new EntityChangeListener<>() {
+            @Override
+            public void onSaveAll(List<? extends Member> entities) {
+                observed.add("saveAll:" + entities.size());
+            }
+
+            @Override
+            public void onUpdate(Member before, Member after) {
+                //알림을 받는 시점에는 이미 저장소에서 수정된 값이 보여야 한다.(영속화 로그의 스냅샷이 이 값을 읽는다.)
+                observed.add("update:" + repository.findById(after.getId()).getName());
+            }
+        });
+
+        //when
+        repository.update(member.getId(), m -> m.setName("memberB"));
+        repository.saveAll(List.of(member("memberC"), member("memberD")));
+
+        //then
+        assertThat(observed).containsExactly("update:memberB", "saveAll:2");
+    }
+
+    @Test
+    void clearOrderedWithNotifications() throws InterruptedException {
+        //given, 알림 순서대로 재생한 결과가 저장소와 같아야 한다.(영속화 로그)
+        List<Long> replayed = new ArrayList<>();
+        repository.addListener(new EntityChangeListener<>() {
+            @Override
+            public void onSave(Member member) {
+                synchronized (replayed) {
+                    replayed.add(member.getId());
+                }
+            }
+
+            @Override
+            public void onClear() {
+                synchronized (replayed) {
+                    replayed.clear();
+                }
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        for (int i = 0; i < 4; i++) {
+            executor.submit(() -> {
+                for (int j = 0; j < 2000; j++) {
+                    repository.save(member("member"));
+                }
+            });
+        }
+
+        //when
+        executor.submit(() -> {
+            for (int j = 0; j < 20; j++) {
+                repository.clear();
+            }
+        });
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        //then
+        assertThat(replayed).containsExactlyInAnyOrderElementsOf(repository.findAll().stream().map(Member::getId).toList());
+    }
+
+    @Test
+    void snapshot() {
+        //given
+        Member member = repository.save(member("memberA"));
+        EntitySnapshot<Member> snapshot = repository.snapshot();
+
+        //when
+        repository.update(member.getId(), m -> m.setName("memberB"));
+        repository.clear();
+
+        //then
+        assertThat(snapshot.size()).isEqualTo(1);
+        assertThat(snapshot.findById(member.getId()).getName()).isEqualTo("memberA");
+        assertThat(repository.size()).isZero();
+        assertThat(repository.snapshot().version()).isGreaterThan(snapshot.version());
+    }
+
+    private static Member member(String name) {
+        Member member = new Member();
+        member.setLoginId(name);
+        member.setName(name);
+        member.setPassword("test!");
+        return member;
+    }
+
+    private static Member copyOf(Member member) {
+        Member copy = member(member.getName());
+        copy.setId(member.getId());
+        copy.setLoginId(member.getLoginId());
+        copy.setPassword(member.getPassword());
+        return copy;
+    }
+}
@@ -0,0 +1,83 @@
+package thespeace.springmvc2.common.requestid;
+
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RequestIdFilterTest {
+
+    RequestIdFilter filter = new RequestIdFilter(new RequestIdGenerator("node1"));
+
+    @Test
+    void generate() throws Exception {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/items");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<String> seen = new ArrayList<>();
+
+        //when
+        filter.doFilter(request, response, (req, res) -> seen.add(MDC.get(RequestIdFilter.MDC_KEY)));
+
+        //then 필터 안에서만 MDC 에 있다.
+        String requestId = RequestIdFilter.get(request);
+        assertThat(requestId).startsWith("node1-");
+        assertThat(seen).containsExactly(requestId);
+        assertThat(response.getHeader(RequestIdFilter.HEADER)).isEqualTo(requestId);
+        assertThat(MDC.get(RequestIdFilter.MDC_KEY)).isNull();
+    }
+
+    @Test
+    void sameIdOnErrorDispatch() throws Exception {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/error-ex");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<String> seen = new ArrayList<>();
+        filter.doFilter(request, response, (req, res) -> seen.add(MDC.get(RequestIdFilter.MDC_KEY)));
+
+        //when WAS 가 같은 request 로 오류 페이지를 다시 요청
+        request.setDispatcherType(DispatcherType.ERROR);
+        request.setRequestURI("/error-page/500");
+        filter.doFilter(request, response, (req, res) -> seen.add(MDC.get(RequestIdFilter.MDC_KEY)));
+
+        //then
+        assertThat(seen).hasSize(2).containsOnly(RequestIdFilter.get(request));
+    }
+
+    @Test
+    void acceptIncoming() throws Exception {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/items");
+        request.addHeader(RequestIdFilter.HEADER, "gateway-4f2a.9");
+
+        //when
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+        });
+
+        //then
+        assertThat(RequestIdFilter.get(request)).isEqualTo("gateway-4f2a.9");
+    }
+
+    @Test
+    void rejectInvalidIncoming() throws Exception {
+        //given 로그 위조, 헤더 주입을 막기 위해 허용하지 않는 문자나 너무 긴 값은 쓰지 않는다.
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/items");
+        request.addHeader(RequestIdFilter.HEADER, "abc\r\nSet-Cookie: x=1");
+
+        //when
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+        });
+
+        //then
+        assertThat(RequestIdFilter.get(request)).startsWith("node1-");
+        assertThat(RequestIdFilter.isValid("a".repeat(64))).isTrue();
+        assertThat(RequestIdFilter.isValid("a".repeat(65))).isFalse();
+        assertThat(RequestIdFilter.isValid("")).isFalse();
+    }
+}
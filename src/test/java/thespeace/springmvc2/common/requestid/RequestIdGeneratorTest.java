@@ -0,0 +1,71 @@
+package thespeace.springmvc2.common.requestid;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RequestIdGeneratorTest {
+
+    @Test
+    void sequencePerThread() {
+        //given
+        RequestIdGenerator generator = new RequestIdGenerator("node1");
+
+        //when
+        String first = generator.next();
+        String second = generator.next();
+
+        //then 같은 스레드는 같은 번호, 순번만 1씩 늘어난다.
+        assertThat(first).matches("node1-[0-9a-z]+-1");
+        assertThat(second).isEqualTo(first.substring(0, first.length() - 1) + "2");
+    }
+
+    @Test
+    void base36() {
+        RequestIdGenerator generator = new RequestIdGenerator("n");
+        String id = null;
+        for (int i = 0; i < 36 * 36; i++) {
+            id = generator.next();
+        }
+        assertThat(id).endsWith("-100");
+    }
+
+    @Test
+    void uniqueAcrossThreads() throws InterruptedException {
+        //given
+        RequestIdGenerator generator = new RequestIdGenerator("");
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+
+        //when
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    ids.add(generator.next());
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        //then 노드 이름을 지정하지 않으면 임의의 6자
+        assertThat(ids).hasSize(80_000);
+        assertThat(ids).allMatch(id -> id.matches("[0-9a-z]{6}-[0-9a-z]+-[0-9a-z]+"));
+    }
+
+    @Test
+    void invalidNode() {
+        assertThatThrownBy(() -> new RequestIdGenerator("node-1"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RequestIdGenerator("a".repeat(17)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,91 @@
+package thespeace.springmvc2.itemservice.domain.item;
+
+import org.junit.jupiter.api.Test;
+import thespeace.springmvc2.common.repository.EntitySnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HeapItemStoreTest {
+
+    HeapItemStore itemStore = new HeapItemStore();
+    ItemRepository itemRepository = new ItemRepository(itemStore);
+
+    @Test
+    void snapshotIsolation() {
+        //given
+        Item item = itemRepository.save(new Item("itemA", 10000, 10));
+        EntitySnapshot<Item> snapshot = itemStore.snapshot();
+
+        //when
+        itemRepository.update(item.getId(), new Item("itemB", 20000, 20));
+        itemRepository.save(new Item("itemC", 30000, 30));
+
+        //then
+        assertThat(snapshot.findAll()).hasSize(1);
+        assertThat(snapshot.findById(item.getId()).getItemName()).isEqualTo("itemA");
+        assertThat(itemStore.snapshot().version()).isGreaterThan(snapshot.version());
+        assertThat(item.getItemName()).isEqualTo("itemA"); //저장된 인스턴스는 수정되지 않는다.
+        assertThat(itemRepository.findById(item.getId()).getItemName()).isEqualTo("itemB");
+    }
+
+    /**
+     * 상품 목록을 렌더링(모든 필드 읽기)하는 동안 같은 상품들을 계속 수정한다.<br>
+     * 수정은 itemName, price, quantity 를 같은 값 k 로 맞추므로, 렌더링 도중 세 값이 서로 다르면 수정 중인 상품을 본 것이다.
+     */
+    @Test
+    void renderWhileWriting() throws Exception {
+        //given
+        int itemCount = 100;
+        for (int i = 0; i < itemCount; i++) {
+            itemRepository.save(new Item("0", 0, 0));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<Integer>> renders = new ArrayList<>();
+
+        //when
+        for (int w = 0; w < 4; w++) {
+            executor.submit(() -> {
+                for (int k = 1; running.get(); k++) {
+                    long id = 1 + k % itemCount;
+                    itemRepository.update(id, new Item(String.valueOf(k), k, k));
+                }
+                return null;
+            });
+        }
+        for (int r = 0; r < 4; r++) {
+            renders.add(executor.submit(() -> {
+                int rendered = 0;
+                for (int n = 0; n < 500; n++) {
+                    List<Item> items = itemRepository.findAll();
+                    for (Item item : items) {
+                        String name = item.getItemName();
+                        Thread.onSpinWait(); //렌더링 중 다른 작업
+                        assertThat(item.getPrice()).isEqualTo(Integer.parseInt(name));
+                        assertThat(item.getQuantity()).isEqualTo(item.getPrice());
+                        rendered++;
+                    }
+                    assertThat(items).hasSize(itemCount);
+                }
+                return rendered;
+            }));
+        }
+
+        //then
+        for (Future<Integer> render : renders) {
+            assertThat(render.get(30, TimeUnit.SECONDS)).isEqualTo(500 * itemCount);
+        }
+        running.set(false);
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,61 @@
+package thespeace.springmvc2.itemservice.domain.item;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InventoryAggregatesTest {
+
+    ItemRepository itemRepository = new ItemRepository();
+    InventoryAggregates inventoryAggregates = new InventoryAggregates(itemRepository);
+
+    @BeforeEach
+    void beforeEach() {
+        inventoryAggregates.init();
+    }
+
+    @Test
+    void saveAndUpdate() {
+        //given
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        itemRepository.save(new Item("itemB", 20000, 20));
+
+        //when
+        itemRepository.update(itemA.getId(), new Item("itemA", 30000, 10));
+
+        //then
+        InventoryAggregates.Snapshot snapshot = inventoryAggregates.snapshot();
+        assertThat(snapshot.itemCount()).isEqualTo(2);
+        assertThat(snapshot.totalValue()).isEqualTo(30000L * 10 + 20000L * 20);
+        assertThat(snapshot.minPrice()).isEqualTo(20000);
+        assertThat(snapshot.maxPrice()).isEqualTo(30000);
+        assertThat(snapshot.averagePrice()).isEqualTo(25000.0);
+    }
+
+    @Test
+    void totalValueDoesNotOverflowInt() {
+        //given
+        itemRepository.save(new Item("itemA", 1000000, 9999));
+        itemRepository.save(new Item("itemB", 1000000, 9999));
+
+        //then
+        assertThat(inventoryAggregates.snapshot().totalValue()).isEqualTo(2L * 1000000 * 9999);
+    }
+
+    @Test
+    void clearStore() {
+        //given
+        itemRepository.save(new Item("itemA", 10000, 10));
+
+        //when
+        itemRepository.clearStore();
+
+        //then
+        InventoryAggregates.Snapshot snapshot = inventoryAggregates.snapshot();
+        assertThat(snapshot.itemCount()).isZero();
+        assertThat(snapshot.totalValue()).isZero();
+        assertThat(snapshot.minPrice()).isNull();
+        assertThat(snapshot.averagePrice()).isNull();
+    }
+}
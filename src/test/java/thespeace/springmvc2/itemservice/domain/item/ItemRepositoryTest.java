@@ -4,6 +4,12 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -30,6 +36,12 @@ class ItemRepositoryTest {
         assertThat(findItem).isEqualTo(savedItem);
     }
 
+    @Test
+    void findByNullId() {
+        //when, then
+        assertThat(itemRepository.findById(null)).isNull();
+    }
+
     @Test
     void findAll() {
         //given
@@ -66,4 +78,175 @@ class ItemRepositoryTest {
         assertThat(findItem.getPrice()).isEqualTo(updateParam.getPrice());
         assertThat(findItem.getQuantity()).isEqualTo(updateParam.getQuantity());
     }
+
+    @Test
+    void findPage() {
+        //given
+        Item item1 = itemRepository.save(new Item("item1", 10000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 20000, 20));
+        Item item3 = itemRepository.save(new Item("item3", 30000, 30));
+
+        //when
+        List<Item> first = itemRepository.findPage(null, 2);
+        List<Item> second = itemRepository.findPage(first.get(first.size() - 1).getId(), 2);
+
+        //then
+        assertThat(first).containsExactly(item1, item2);
+        assertThat(second).containsExactly(item3);
+    }
+
+    @Test
+    void findByIndex() {
+        //given
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        Item itemB = itemRepository.save(new Item("itemB", 20000, 20));
+        Item other = itemRepository.save(new Item("other", 30000, 30));
+
+        //when, then
+        assertThat(itemRepository.findByItemNamePrefix("item")).containsExactly(itemA, itemB);
+        assertThat(itemRepository.findByPriceBetween(15000, 30000)).containsExactly(itemB, other);
+        assertThat(itemRepository.findByPriceBetween(null, 10000)).containsExactly(itemA);
+        assertThat(itemRepository.findByQuantityBetween(20, null)).containsExactly(itemB, other);
+    }
+
+    @Test
+    void findByReversedRange() {
+        //given
+        itemRepository.save(new Item("itemA", 10000, 10));
+
+        //when, then, 최소 가격이 최대 가격보다 크면 예외 대신 빈 목록
+        assertThat(itemRepository.findByPriceBetween(30000, 10000)).isEmpty();
+        assertThat(itemRepository.findByPriceBetween(30000, 10000, null, null, 10)).isEmpty();
+        assertThat(itemRepository.findByItemNamePrefix("item", 30000, 10000, null, null, 10)).isEmpty();
+    }
+
+    @Test
+    void findByPriceBetweenPage() {
+        //given, 같은 가격이 여러 개여도 id로 이어서 읽는다.
+        Item item1 = itemRepository.save(new Item("item1", 20000, 10));
+        Item item2 = itemRepository.save(new Item("item2", 10000, 10));
+        Item item3 = itemRepository.save(new Item("item3", 20000, 10));
+        itemRepository.save(new Item("item4", 90000, 10));
+
+        //when
+        List<Item> first = itemRepository.findByPriceBetween(10000, 50000, null, null, 2);
+        Item last = first.get(first.size() - 1);
+        List<Item> second = itemRepository.findByPriceBetween(10000, 50000, last.getPrice(), last.getId(), 2);
+
+        //then
+        assertThat(first).containsExactly(item2, item1);
+        assertThat(second).containsExactly(item3);
+    }
+
+    @Test
+    void findByItemNamePrefixPage() {
+        //given
+        Item itemA = itemRepository.save(new Item("itemA", 10000, 10));
+        itemRepository.save(new Item("itemB", 90000, 10)); //가격 조건에 맞지 않는 상품
+        Item itemC = itemRepository.save(new Item("itemC", 20000, 10));
+        Item itemD = itemRepository.save(new Item("itemD", 30000, 10));
+        itemRepository.save(new Item("other", 10000, 10));
+
+        //when
+        List<Item> first = itemRepository.findByItemNamePrefix("item", null, 50000, null, null, 2);
+        Item last = first.get(first.size() - 1);
+        List<Item> second = itemRepository.findByItemNamePrefix("item", null, 50000, last.getItemName(), last.getId(), 2);
+
+        //then, 걸러진 상품이 있어도 페이지 크기를 채운다.
+        assertThat(first).containsExactly(itemA, itemC);
+        assertThat(second).containsExactly(itemD);
+    }
+
+    @Test
+    void updateIndex() {
+        //given
+        Item item = itemRepository.save(new Item("itemA", 10000, 10));
+
+        //when
+        itemRepository.update(item.getId(), new Item("renamed", 50000, 10));
+
+        //then
+        assertThat(itemRepository.findByItemNamePrefix("item")).isEmpty();
+        assertThat(itemRepository.findByItemNamePrefix("ren")).extracting(Item::getId).containsExactly(item.getId());
+        assertThat(itemRepository.findByPriceBetween(null, 10000)).isEmpty();
+        assertThat(itemRepository.findByPriceBetween(50000, 50000)).extracting(Item::getId).containsExactly(item.getId());
+    }
+
+    @Test
+    void updateWithVersion() {
+        //given
+        Item item = itemRepository.save(new Item("itemA", 10000, 10));
+        Long version = itemRepository.findById(item.getId()).getVersion();
+
+        //when
+        boolean first = itemRepository.update(item.getId(), new Item("itemB", 20000, 20), version);
+        boolean second = itemRepository.update(item.getId(), new Item("itemC", 30000, 30), version); //같은 version 으로 다시 수정
+
+        //then
+        Item findItem = itemRepository.findById(item.getId());
+        assertThat(first).isTrue();
+        assertThat(second).isFalse();
+        assertThat(findItem.getItemName()).isEqualTo("itemB");
+        assertThat(findItem.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void concurrentUpdateWithVersion() throws InterruptedException {
+        //given
+        Item item = itemRepository.save(new Item("itemA", 10000, 10));
+        Long version = item.getVersion();
+        int threadCount = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Integer> winners = ConcurrentHashMap.newKeySet();
+
+        //when, 모두 같은 version 을 읽은 상태로 동시에 수정
+        for (int i = 0; i < threadCount; i++) {
+            int k = i;
+            executor.submit(() -> {
+                start.await();
+                if (itemRepository.update(item.getId(), new Item("item" + k, 10000 + k, 10), version)) {
+                    winners.add(k);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        //then
+        assertThat(winners).hasSize(1); //하나만 성공해야 한다.
+        Item findItem = itemRepository.findById(item.getId());
+        assertThat(findItem.getItemName()).isEqualTo("item" + winners.iterator().next());
+        assertThat(findItem.getVersion()).isEqualTo(version + 1);
+    }
+
+    @Test
+    void concurrentSave() throws InterruptedException {
+        //given
+        int threadCount = 32;
+        int savePerThread = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+        //when
+        for (int i = 0; i < threadCount; i++) {
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < savePerThread; j++) {
+                    ids.add(itemRepository.save(new Item("item", 10000, 10)).getId());
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        //then
+        assertThat(ids).hasSize(threadCount * savePerThread); //중복 발급된 id가 없어야 한다.
+        assertThat(itemRepository.findAll()).hasSize(threadCount * savePerThread); //유실된 상품이 없어야 한다.
+    }
 }
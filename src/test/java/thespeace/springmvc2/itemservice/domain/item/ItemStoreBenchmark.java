@@ -0,0 +1,79 @@
+package thespeace.springmvc2.itemservice.domain.item;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * <h2>힙 저장소 vs 오프힙 저장소 벤치마크</h2>
+ * 상품 N개를 저장한 뒤 힙 사용량, direct memory 사용량, 저장하는 동안의 GC 횟수/시간, 전체 GC 시간을 비교한다.<br>
+ * 실제 서비스와 같은 비용을 재도록 {@link ItemRepository}를 통해 저장한다. 보조 인덱스(상품명, 가격, 수량)는 두 저장소 모두 힙에 있으므로
+ * 오프힙 저장소를 써도 힙 사용량은 인덱스만큼 남는다.<br>
+ * 테스트가 아니라 직접 실행하는 프로그램이다. 저장소마다 별도 JVM 으로 실행해야 서로 영향을 주지 않는다.
+ * <blockquote><pre>
+ *     java -Xmx4g -cp ... ItemStoreBenchmark heap 10000000
+ *     java -Xmx4g -cp ... ItemStoreBenchmark offheap 10000000
+ * </pre></blockquote>
+ */
+public class ItemStoreBenchmark {
+
+    public static void main(String[] args) {
+        String type = args.length > 0 ? args[0] : "heap";
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        Supplier<ItemStore> storeFactory = "offheap".equals(type) ? OffHeapItemStore::new : HeapItemStore::new;
+
+        long heapBefore = usedHeap();
+        long[] gcBefore = gc();
+        long start = System.nanoTime();
+
+        ItemRepository itemRepository = new ItemRepository(storeFactory.get());
+        for (int i = 1; i <= count; i++) {
+            itemRepository.save(new Item("item" + i, 1000 + i % 1000, i % 9999));
+        }
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        long[] gcAfterLoad = gc();
+
+        //저장된 상태에서 Full GC 가 전체 객체를 추적하는 시간
+        long fullGcStart = System.nanoTime();
+        System.gc();
+        long fullGcMillis = (System.nanoTime() - fullGcStart) / 1_000_000;
+
+        long heapAfter = usedHeap();
+        long direct = directMemory();
+        System.out.printf("store=%s, items=%,d%n", type, count);
+        System.out.printf("load: %,d ms, gc count=%d, gc time=%,d ms%n", loadMillis, gcAfterLoad[0] - gcBefore[0], gcAfterLoad[1] - gcBefore[1]);
+        System.out.printf("heap: %,d bytes (%.1f bytes/item)%n", heapAfter - heapBefore, (double) (heapAfter - heapBefore) / count);
+        System.out.printf("direct: %,d bytes (%.1f bytes/item)%n", direct, (double) direct / count);
+        System.out.printf("total: %.1f bytes/item%n", (double) (heapAfter - heapBefore + direct) / count);
+        System.out.printf("full gc with store resident: %,d ms%n", fullGcMillis);
+
+        //벤치마크가 끝나기 전에 저장소가 수거되지 않도록 사용
+        System.out.println("sample=" + itemRepository.findById((long) count));
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long[] gc() {
+        long count = 0;
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += gc.getCollectionCount();
+            time += gc.getCollectionTime();
+        }
+        return new long[]{count, time};
+    }
+
+    private static long directMemory() {
+        List<BufferPoolMXBean> pools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+        return pools.stream()
+                .filter(pool -> "direct".equals(pool.getName()))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
@@ -0,0 +1,93 @@
+package thespeace.springmvc2.itemservice.domain.item;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapItemStoreTest {
+
+    OffHeapItemStore itemStore = new OffHeapItemStore();
+    ItemRepository itemRepository = new ItemRepository(itemStore);
+
+    @AfterEach
+    void afterEach() {
+        itemRepository.clearStore();
+    }
+
+    @Test
+    void save() {
+        //given
+        Item item = new Item("상품A", 10000, 10);
+
+        //when
+        Item savedItem = itemRepository.save(item);
+
+        //then
+        Item findItem = itemRepository.findById(savedItem.getId());
+        assertThat(findItem).isEqualTo(savedItem);
+        assertThat(findItem).isNotSameAs(savedItem); //조회할 때마다 새로 만든다.
+    }
+
+    @Test
+    void saveNullFields() {
+        //given
+        Item item = new Item(null, null, null);
+
+        //when
+        itemRepository.save(item);
+
+        //then
+        Item findItem = itemRepository.findById(item.getId());
+        assertThat(findItem.getItemName()).isNull();
+        assertThat(findItem.getPrice()).isNull();
+        assertThat(findItem.getQuantity()).isNull();
+    }
+
+    @Test
+    void updateItem() {
+        //given
+        Item savedItem = itemRepository.save(new Item("item1", 10000, 10));
+
+        //when
+        itemRepository.update(savedItem.getId(), new Item("item2", 20000, 30));
+
+        //then
+        Item findItem = itemRepository.findById(savedItem.getId());
+        assertThat(findItem.getItemName()).isEqualTo("item2");
+        assertThat(findItem.getPrice()).isEqualTo(20000);
+        assertThat(findItem.getQuantity()).isEqualTo(30);
+        assertThat(itemRepository.findByPriceBetween(20000, 20000)).containsExactly(findItem);
+    }
+
+    @Test
+    void findPageAcrossChunks() {
+        //given
+        for (int i = 0; i < 70000; i++) {
+            itemRepository.save(new Item("item" + i, 1000, 1));
+        }
+
+        //when
+        List<Item> page = itemRepository.findPage(65534L, 3);
+
+        //then
+        assertThat(page).extracting(Item::getId).containsExactly(65535L, 65536L, 65537L);
+        assertThat(itemStore.size()).isEqualTo(70000);
+    }
+
+    @Test
+    void clearStore() {
+        //given
+        Item item = itemRepository.save(new Item("item", 1000, 1));
+
+        //when
+        itemRepository.clearStore();
+
+        //then
+        assertThat(itemRepository.findById(item.getId())).isNull();
+        assertThat(itemRepository.findAll()).isEmpty();
+        assertThat(itemStore.offHeapBytes()).isZero();
+    }
+}
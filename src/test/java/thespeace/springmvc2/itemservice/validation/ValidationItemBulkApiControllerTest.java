@@ -0,0 +1,59 @@
+package thespeace.springmvc2.itemservice.validation;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ValidationItemBulkApiControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void bulkAddNdjson() throws Exception {
+        String body = """
+                {"itemName":"itemA", "price":10000, "quantity":10}
+                {"itemName":"", "price":10000, "quantity":10}
+                {"itemName":"itemC", "price":"abc", "quantity":10}
+                {"itemName":"itemD", "price":1000, "quantity":1}
+                """;
+
+        String result = mockMvc.perform(post("/validation/api/items/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = result.strip().split("\n");
+        assertThat(lines).hasSize(4);
+        assertThat(lines[0]).contains("\"line\":2", "\"field\":\"itemName\"");
+        assertThat(lines[1]).contains("\"line\":3", "typeMismatch");
+        assertThat(lines[2]).contains("\"line\":4", "totalPriceMin");
+        assertThat(lines[3]).isEqualTo("{\"total\":4,\"saved\":1,\"failed\":3}");
+    }
+
+    @Test
+    void bulkAddArray() throws Exception {
+        String body = """
+                [{"itemName":"itemA", "price":10000, "quantity":10},
+                 {"itemName":"itemB", "price":20000, "quantity":20}]
+                """;
+
+        String result = mockMvc.perform(post("/validation/api/items/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(result.strip()).isEqualTo("{\"total\":2,\"saved\":2,\"failed\":0}");
+    }
+}